@@ -0,0 +1,108 @@
+package university.bench;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import university.University;
+import university.UniversityServer;
+
+/**
+ * Load test of the embedded HTTP server, against localhost.
+ *
+ * Keeps a fixed number of requests in flight, mixing the endpoints
+ * (mostly single records, some study plans, averages and rankings),
+ * and reports the throughput and the latency percentiles.
+ *
+ * Run with {@code java -cp target/benchmarks.jar university.bench.LoadTest
+ * [requests] [concurrency] [serverThreads] [students]}.
+ */
+public class LoadTest {
+
+	public static void main(String[] args) throws Exception {
+		int requests = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+		int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4 * Runtime.getRuntime().availableProcessors();
+		int students = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+
+		Population population = new Population(students, 100, students * Population.PLAN / 2);
+		University u = population.build();
+		ExecutorService clientPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try(UniversityServer server = u.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), threads)) {
+			InetSocketAddress address = server.getAddress();
+			String base = "http://" + address.getHostString() + ":" + address.getPort();
+			HttpClient client = HttpClient.newBuilder().executor(clientPool).build();
+
+			run(client, base, population, requests / 10, concurrency);	// warm-up
+			long[] latencies = new long[requests];
+			long start = System.nanoTime();
+			int failed = run(client, base, population, latencies, concurrency);
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			Arrays.sort(latencies);
+			System.out.printf("%d requests, %d concurrent, %d server threads: %.0f req/s, %d failed%n",
+					requests, concurrency, threads, requests / seconds, failed);
+			System.out.printf("latency (ms): p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+					percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+					percentile(latencies, 99.9), latencies[latencies.length - 1] / 1e6);
+		} finally {
+			clientPool.shutdown();
+		}
+	}
+
+	private static int run(HttpClient client, String base, Population population, int requests, int concurrency) throws InterruptedException {
+		return run(client, base, population, new long[requests], concurrency);
+	}
+
+	/**
+	 * Sends the requests, keeping at most {@code concurrency} in flight
+	 *
+	 * @return number of failed requests
+	 */
+	private static int run(HttpClient client, String base, Population population, long[] latencies, int concurrency) throws InterruptedException {
+		Semaphore inFlight = new Semaphore(concurrency);
+		AtomicInteger failed = new AtomicInteger();
+		Random rnd = new Random(42);
+		for(int i=0; i<latencies.length; ++i) {
+			HttpRequest request = HttpRequest.newBuilder(URI.create(base + path(population, rnd))).build();
+			inFlight.acquire();
+			final int n = i;
+			long sent = System.nanoTime();
+			CompletableFuture<HttpResponse<Void>> response = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+			response.whenComplete((r, e) -> {
+				latencies[n] = System.nanoTime() - sent;
+				if(e != null || r.statusCode() != 200) failed.incrementAndGet();
+				inFlight.release();
+			});
+		}
+		inFlight.acquire(concurrency);
+		return failed.get();
+	}
+
+	private static String path(Population population, Random rnd) {
+		int student = Population.studentId(rnd.nextInt(population.students));
+		int course = Population.courseCode(rnd.nextInt(population.courses));
+		int r = rnd.nextInt(100);
+		if(r < 40) return "/student/" + student;
+		if(r < 60) return "/studentAvg/" + student;
+		if(r < 75) return "/course/" + course;
+		if(r < 85) return "/courseAvg/" + course;
+		if(r < 97) return "/studyPlan/" + student;
+		return "/topStudents?k=10";
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		int i = (int) Math.ceil(p / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6;
+	}
+}
@@ -0,0 +1,80 @@
+package university.bench;
+
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import university.University;
+
+/**
+ * Generator of synthetic, reproducible university populations.
+ * 
+ * Every student is registered to {@link #PLAN} courses spread evenly
+ * over the activated courses; exams are assigned to the registrations
+ * round-robin, student by student, with random passing grades.
+ */
+final class Population {
+	static final int PLAN = 5;
+	private static final long SEED = 42;
+
+	// keeps the configuration of the logger alive
+	private static final Logger logger = Logger.getLogger("University");
+
+	final int students;
+	final int courses;
+	final int exams;
+
+	Population(int students, int courses, int exams) {
+		if(courses < PLAN) throw new IllegalArgumentException("At least " + PLAN + " courses required");
+		if(exams > students * PLAN) throw new IllegalArgumentException("At most " + students * PLAN + " exams allowed");
+		this.students = students;
+		this.courses = courses;
+		this.exams = exams;
+	}
+
+	/**
+	 * Builds a new university holding the population, with logging disabled
+	 * 
+	 * @return the university
+	 */
+	University build() {
+		logger.setLevel(Level.OFF);
+		University u = new University("Benchmark University");
+		for(int i=0; i<students; ++i) u.enroll("First" + i, "Last" + i);
+		for(int i=0; i<courses; ++i) u.activate("Course" + i, "Teacher" + i % (courses/2 + 1));
+		for(int i=0; i<students; ++i) {
+			for(int k=0; k<PLAN; ++k) u.register(studentId(i), courseCode(i, k));
+		}
+		Random rnd = new Random(SEED);
+		for(int e=0; e<exams; ++e) {
+			int i = e % students;
+			u.exam(studentId(i), courseCode(i, e / students), grade(rnd));
+		}
+		return u;
+	}
+
+	/**
+	 * ID of the i-th student
+	 */
+	static int studentId(int i) {
+		return University.INITIAL_ID + i;
+	}
+
+	/**
+	 * Code of the i-th course
+	 */
+	static int courseCode(int i) {
+		return University.INITIAL_CODE + i;
+	}
+
+	/**
+	 * Code of the k-th course (0 to {@link #PLAN}-1) in the study plan of the i-th student
+	 */
+	int courseCode(int i, int k) {
+		return courseCode((i + k * (courses / PLAN)) % courses);
+	}
+
+	static int grade(Random rnd) {
+		return University.PASSING_GRADE + rnd.nextInt(University.MAX_GRADE - University.PASSING_GRADE + 1);
+	}
+}
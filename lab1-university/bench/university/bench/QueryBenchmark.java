@@ -0,0 +1,89 @@
+package university.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import university.CoEnrollment;
+import university.University;
+
+/**
+ * Benchmarks of the read-only operations of {@link University}
+ * on a synthetic population.
+ * 
+ * Each invocation queries the next student or course, so that
+ * the whole population is visited.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+	@Param({"10000", "100000"})
+	int students;
+
+	@Param({"100"})
+	int courses;
+
+	@Param({"50000"})
+	int exams;
+
+	private University university;
+	private int nextStudent;
+	private int nextCourse;
+
+	@Setup
+	public void setUp() {
+		university = new Population(students, courses, exams).build();
+	}
+
+	private int student() {
+		int i = nextStudent;
+		nextStudent = i + 1 == students ? 0 : i + 1;
+		return Population.studentId(i);
+	}
+
+	private int course() {
+		int i = nextCourse;
+		nextCourse = i + 1 == courses ? 0 : i + 1;
+		return Population.courseCode(i);
+	}
+
+	@Benchmark
+	public String studentAvg() {
+		return university.studentAvg(student());
+	}
+
+	@Benchmark
+	public String courseAvg() {
+		return university.courseAvg(course());
+	}
+
+	@Benchmark
+	public String topThreeStudents() {
+		return university.topThreeStudents();
+	}
+
+	@Benchmark
+	public String listAttendees() {
+		return university.listAttendees(course());
+	}
+
+	@Benchmark
+	public CoEnrollment coEnrollment() {
+		return university.coEnrollment();
+	}
+}
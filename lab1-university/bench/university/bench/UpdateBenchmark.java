@@ -0,0 +1,85 @@
+package university.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import university.University;
+
+/**
+ * Benchmarks of the operations that modify a {@link University}.
+ * 
+ * Since these operations change the state they measure, each iteration
+ * starts from a freshly generated population and performs a fixed batch
+ * of {@value #BATCH} operations (single-shot mode); the reported time
+ * is for the whole batch.
+ * 
+ * Registrations are made by {@value #BATCH}/{@link Population#PLAN}
+ * extra students, enrolled in the setup, so that none of them is a duplicate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = UpdateBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = UpdateBenchmark.BATCH)
+@Fork(1)
+public class UpdateBenchmark {
+	static final int BATCH = 10000;
+
+	@Param({"10000", "100000"})
+	int students;
+
+	@Param({"100"})
+	int courses;
+
+	@Param({"50000"})
+	int exams;
+
+	private Population population;
+	private University university;
+	private int firstExtra;
+	private int cursor;
+	private final Random rnd = new Random(7);
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		population = new Population(students, courses, exams);
+		university = population.build();
+		firstExtra = students;
+		for(int i=0; i<BATCH/Population.PLAN; ++i) {
+			university.enroll("Extra" + i, "Student" + i);
+		}
+		cursor = 0;
+	}
+
+	@Benchmark
+	public int enroll() {
+		int i = cursor++;
+		return university.enroll("First" + i, "Last" + i);
+	}
+
+	@Benchmark
+	public void register() {
+		int i = cursor++;
+		int student = firstExtra + i / Population.PLAN;
+		university.register(Population.studentId(student), population.courseCode(student, i % Population.PLAN));
+	}
+
+	@Benchmark
+	public void exam() {
+		int i = cursor++ % students;
+		university.exam(Population.studentId(i), population.courseCode(i, i % Population.PLAN), Population.grade(rnd));
+	}
+}
@@ -0,0 +1,148 @@
+package university;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Audit log of the operations performed through the {@link University} facade.
+ * 
+ * Messages are built only if the logger is enabled for {@link Level#INFO}:
+ * operations are recorded as {@link UniversityEvent}s and error messages
+ * are provided through {@link Supplier}s.
+ * 
+ * By default events are written synchronously by the calling thread.
+ * In asynchronous mode they are queued into a bounded lock-free ring buffer
+ * and written by a background thread; if the buffer is full the event is
+ * written by the calling thread, so that no event is lost.
+ */
+class AuditLog {
+	private static final int CAPACITY = 1 << 14;
+	private static final int BATCH = 256;
+	private static final long IDLE_NANOS = 100_000;
+
+	private final Logger logger;
+	private final Consumer<UniversityEvent> publisher = this::publish;
+	private volatile EventRing<UniversityEvent> ring;	// null when synchronous
+	private volatile boolean running;
+	private Thread writer;
+
+	AuditLog(Logger logger) {
+		this.logger = logger;
+	}
+
+	/**
+	 * Checks whether audit messages are actually written
+	 * 
+	 * @return {@code true} if the logger is enabled
+	 */
+	boolean isEnabled() {
+		return logger.isLoggable(Level.INFO);
+	}
+
+	void enrolled(int studentId, String first, String last) {
+		if(isEnabled()) log(UniversityEvent.enrolled(studentId, first, last));
+	}
+
+	void activated(int courseCode, String title, String teacher) {
+		if(isEnabled()) log(UniversityEvent.activated(courseCode, title, teacher));
+	}
+
+	void registered(int studentId, int courseCode) {
+		if(isEnabled()) log(UniversityEvent.registered(studentId, courseCode));
+	}
+
+	void examined(int studentId, int courseCode, int grade) {
+		if(isEnabled()) log(UniversityEvent.examined(studentId, courseCode, grade));
+	}
+
+	void withdrawn(int studentId, int courseCode) {
+		if(isEnabled()) log(UniversityEvent.withdrawn(studentId, courseCode));
+	}
+
+	void expelled(int studentId) {
+		if(isEnabled()) log(UniversityEvent.expelled(studentId));
+	}
+
+	/**
+	 * Writes an event, either immediately or through the background writer
+	 * 
+	 * @param e the event
+	 */
+	void log(UniversityEvent e) {
+		EventRing<UniversityEvent> r = ring;
+		if(r == null || ! r.offer(e)) {
+			publish(e);
+		}
+	}
+
+	/**
+	 * Writes a message that is built only if the logger is enabled.
+	 * Messages are always written synchronously.
+	 * 
+	 * @param message supplier of the message
+	 */
+	void log(Supplier<String> message) {
+		logger.info(message);
+	}
+
+	/**
+	 * Switches between synchronous and asynchronous mode.
+	 * When switching back to synchronous mode the pending events are written first.
+	 * 
+	 * @param asynchronous {@code true} to enable the background writer
+	 */
+	synchronized void setAsynchronous(boolean asynchronous) {
+		if(asynchronous == (writer != null)) return;
+		if(asynchronous) {
+			EventRing<UniversityEvent> r = new EventRing<>(CAPACITY);
+			running = true;
+			writer = new Thread(() -> drain(r), "university-audit");
+			writer.setDaemon(true);
+			ring = r;
+			writer.start();
+		} else {
+			EventRing<UniversityEvent> r = ring;
+			ring = null;
+			r.close();	// producers that read the ring before write their events themselves
+			running = false;
+			LockSupport.unpark(writer);
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			writer = null;
+		}
+	}
+
+	/**
+	 * Waits until all the queued events have been written
+	 */
+	void flush() {
+		EventRing<UniversityEvent> r = ring;
+		while(r != null && ! r.isEmpty()) {
+			LockSupport.parkNanos(IDLE_NANOS);
+		}
+	}
+
+	private void drain(EventRing<UniversityEvent> r) {
+		while(running) {
+			if(r.drain(publisher, BATCH) == 0) {
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+		// the ring is closed: producers that already claimed a slot are still publishing
+		while(! r.isEmpty()) {
+			if(r.drain(publisher, BATCH) == 0) {
+				Thread.yield();
+			}
+		}
+	}
+
+	private void publish(UniversityEvent e) {
+		logger.info(e.toString());
+	}
+}
@@ -0,0 +1,65 @@
+package university;
+
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Secondary index of the students sorted by increasing average grade.
+ * 
+ * The index is kept up to date incrementally, every time a student
+ * takes an exam, so that the students whose average is in a range
+ * can be counted in O(log n) and listed in O(log n + k).
+ * Students that have not taken any exam are not in the index.
+ * 
+ * Instances are thread-safe.
+ */
+class AverageIndex {
+	private final RankTree averages = new RankTree();
+
+	/**
+	 * Updates the position of a student after a change of its average
+	 * 
+	 * @param index	dense index of the student
+	 * @param s		the student
+	 */
+	synchronized void update(int index, Student s) {
+		double avg = s.average();
+		if(Student.isValid(avg)) {
+			averages.put(index, avg);
+		} else {
+			averages.remove(index);
+		}
+	}
+
+	/**
+	 * Removes a student from the index
+	 * 
+	 * @param index	dense index of the student
+	 */
+	synchronized void remove(int index) {
+		averages.remove(index);
+	}
+
+	/**
+	 * Counts the students whose average is in a range
+	 * 
+	 * @param min	minimum average (inclusive)
+	 * @param max	maximum average (inclusive)
+	 * @return number of students
+	 */
+	synchronized int count(double min, double max) {
+		if(min > max) return 0;
+		return averages.countBelow(max, true) - averages.countBelow(min, false);
+	}
+
+	/**
+	 * Lazy stream of the students whose average is in a range, by increasing average
+	 * 
+	 * @param min	minimum average (inclusive)
+	 * @param max	maximum average (inclusive)
+	 * @return dense indexes of the students
+	 */
+	IntStream range(double min, double max) {
+		return StreamSupport.intStream(new RangeSpliterator(this, averages, min, max), false);
+	}
+}
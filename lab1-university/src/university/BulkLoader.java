@@ -0,0 +1,460 @@
+package university;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Loader of students, courses, registrations and exams from CSV files.
+ * 
+ * The files are split in chunks of {@value #CHUNK_SIZE} bytes that are
+ * memory-mapped and parsed in parallel; each chunk handles the lines
+ * starting in it. Fields are decoded directly from the mapped bytes,
+ * only names and titles become strings.
+ * 
+ * The parsed rows are then validated and inserted chunk by chunk, 
+ * again in parallel, in three phases so that rows can refer to rows 
+ * of other files or chunks: students and courses first, then 
+ * registrations, then exams. Rows are inserted directly into the stores, 
+ * without logging; the rankings are rebuilt once at the end and the names
+ * of the new students and courses are indexed in bulk.
+ * 
+ * Since students and courses are stored in structures indexed by ID, the new
+ * IDs and codes may exceed the ones in use by at most {@value #SPREAD} times
+ * the rows defining them (at least {@value #MIN_SPREAD}), so that a single
+ * sparse ID cannot make the university allocate for millions of absent students.
+ * New student IDs must also follow the ones already assigned, as the slots of
+ * the expelled students are empty but their IDs must not be reused.
+ */
+final class BulkLoader {
+	private static final int CHUNK_SIZE = 8 << 20;
+	private static final int MAX_LINE = 1 << 16;
+	private static final int MAX_INDEX = 1 << 28;
+	private static final int SPREAD = 4;
+	private static final int MIN_SPREAD = 1 << 16;
+	private static final int MAX_FIELDS = 4;
+
+	private BulkLoader() {}
+
+	/**
+	 * Loads the rows of the files into a university
+	 * 
+	 * @param u			the university
+	 * @param listener	listener notified of the discarded lines
+	 * @param files		the CSV files
+	 * @return number of rows loaded
+	 * @throws IOException in case of read errors
+	 */
+	static long load(University u, ErrorListener listener, Path... files) throws IOException {
+		List<Chunk> chunks = new ArrayList<>();
+		for(int f=0; f<files.length; ++f) {
+			long size = Files.size(files[f]);
+			for(long from=0; from<size; from+=CHUNK_SIZE) {
+				chunks.add(new Chunk(files[f], f, from, Math.min(size, from + CHUNK_SIZE), size));
+			}
+		}
+		try {
+			chunks.parallelStream().forEach(Chunk::parse);
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		// line numbers, students and courses
+		int maxStudent = 0;
+		int maxCourse = 0;
+		long studentRows = 0;
+		long courseRows = 0;
+		long line = 0;
+		for(int i=0; i<chunks.size(); ++i) {
+			Chunk c = chunks.get(i);
+			if(i == 0 || chunks.get(i-1).fileIndex != c.fileIndex) line = 1;
+			c.firstLine = line;
+			line += c.lines;
+			maxStudent = Math.max(maxStudent, c.studentId.max() - University.INITIAL_ID);
+			maxCourse = Math.max(maxCourse, c.courseCode.max() - University.INITIAL_CODE);
+			studentRows += c.studentId.size();
+			courseRows += c.courseCode.size();
+		}
+		int firstStudent = u.studentSlots();
+		int studentLimit = limit(firstStudent, studentRows);
+		int courseLimit = limit(u.courseSlots(), courseRows);
+		AtomicLongArray students = new AtomicLongArray(Math.min(maxStudent, studentLimit) / 64 + 1);
+		AtomicLongArray courses = new AtomicLongArray(Math.min(maxCourse, courseLimit) / 64 + 1);
+		chunks.parallelStream().forEach(c -> c.loadStudentsAndCourses(u, students, firstStudent, studentLimit, courses, courseLimit));
+		u.indexStudents(chunks.stream().flatMapToInt(c -> c.addedStudents.stream()).toArray());
+		u.indexCourses(chunks.stream().flatMapToInt(c -> c.addedCourses.stream()).toArray());
+		chunks.parallelStream().forEach(c -> c.loadRegistrations(u));
+		chunks.parallelStream().forEach(c -> c.loadExams(u));
+		u.rebuildRanking();
+
+		List<Error> errors = new ArrayList<>();
+		long loaded = 0;
+		for(Chunk c : chunks) {
+			errors.addAll(c.errors);
+			loaded += c.loaded;
+		}
+		errors.sort(Comparator.comparingInt((Error e) -> e.chunk.fileIndex)
+							  .thenComparingLong(e -> e.chunk.firstLine + e.line));
+		for(Error e : errors) {
+			listener.offending(e.chunk.file, e.chunk.firstLine + e.line, e.text, e.reason);
+		}
+		return loaded;
+	}
+
+	/**
+	 * Upper bound of the dense indexes of the loaded students or courses
+	 * 
+	 * @param slots	indexes already in use
+	 * @param rows	number of rows defining students or courses
+	 * @return the first index not allowed
+	 */
+	private static int limit(int slots, long rows) {
+		return (int) Math.min(MAX_INDEX, slots + Math.max(MIN_SPREAD, SPREAD * rows));
+	}
+
+	/**
+	 * Marks an index as used
+	 * 
+	 * @return {@code false} if the index was already used
+	 */
+	private static boolean claim(AtomicLongArray used, int index) {
+		int word = index >>> 6;
+		long bit = 1L << index;
+		long old;
+		do {
+			old = used.get(word);
+			if((old & bit) != 0) return false;
+		} while(! used.compareAndSet(word, old, old | bit));
+		return true;
+	}
+
+	/**
+	 * Growable array of ints
+	 */
+	private static final class IntArray {
+		private int[] items = new int[16];
+		private int size;
+
+		void add(int value) {
+			if(size == items.length) items = Arrays.copyOf(items, size * 2);
+			items[size++] = value;
+		}
+
+		int get(int i) {
+			return items[i];
+		}
+
+		int size() {
+			return size;
+		}
+
+		IntStream stream() {
+			return Arrays.stream(items, 0, size);
+		}
+
+		int max() {
+			int max = 0;
+			for(int i=0; i<size; ++i) max = Math.max(max, items[i]);
+			return max;
+		}
+	}
+
+	/**
+	 * A discarded line
+	 */
+	private static final class Error {
+		final Chunk chunk;
+		final int line;		// relative to the first line of the chunk
+		final String text;
+		final String reason;
+
+		Error(Chunk chunk, int line, String text, String reason) {
+			this.chunk = chunk;
+			this.line = line;
+			this.text = text;
+			this.reason = reason;
+		}
+	}
+
+	/**
+	 * A portion of a file, and the rows parsed from it in columnar form
+	 */
+	private static final class Chunk {
+		final Path file;
+		final int fileIndex;
+		final long from;
+		final long to;
+		final long fileSize;
+		int lines;			// lines starting in the chunk
+		long firstLine;		// number of the first line in the file
+		int loaded;
+		final IntArray addedStudents = new IntArray();
+		final IntArray addedCourses = new IntArray();
+		final List<Error> errors = new ArrayList<>();
+
+		final IntArray studentId = new IntArray();
+		final List<String> studentFirst = new ArrayList<>();
+		final List<String> studentLast = new ArrayList<>();
+		final IntArray studentLine = new IntArray();
+		final IntArray courseCode = new IntArray();
+		final List<String> courseTitle = new ArrayList<>();
+		final List<String> courseTeacher = new ArrayList<>();
+		final IntArray courseLine = new IntArray();
+		final IntArray regStudent = new IntArray();
+		final IntArray regCourse = new IntArray();
+		final IntArray regLine = new IntArray();
+		final IntArray examStudent = new IntArray();
+		final IntArray examCourse = new IntArray();
+		final IntArray examGrade = new IntArray();
+		final IntArray examLine = new IntArray();
+
+		// parsing state
+		private MappedByteBuffer buffer;
+		private final int[] fieldStart = new int[MAX_FIELDS + 1];
+		private final int[] fieldEnd = new int[MAX_FIELDS + 1];
+		private byte[] scratch = new byte[256];
+
+		Chunk(Path file, int fileIndex, long from, long to, long fileSize) {
+			this.file = file;
+			this.fileIndex = fileIndex;
+			this.from = from;
+			this.to = to;
+			this.fileSize = fileSize;
+		}
+
+		void parse() {
+			try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+				long mapFrom = from == 0 ? 0 : from - 1;	// includes the end of the previous line
+				long mapTo = Math.min(fileSize, to + MAX_LINE);
+				buffer = ch.map(FileChannel.MapMode.READ_ONLY, mapFrom, mapTo - mapFrom);
+				int limit = buffer.limit();
+				int end = (int) (to - mapFrom);
+				int pos = 0;
+				if(from > 0) {			// the first line starting in the chunk
+					while(pos < limit && buffer.get(pos) != '\n') pos++;
+					pos++;
+				}
+				while(pos < end) {
+					int eol = pos;
+					while(eol < limit && buffer.get(eol) != '\n') eol++;
+					if(eol == limit && mapTo < fileSize) {
+						errors.add(new Error(this, lines, decode(pos, Math.min(limit, pos + 80)) + "...", "line too long"));
+						lines++;
+						break;
+					}
+					parseLine(pos, eol);
+					lines++;
+					pos = eol + 1;
+				}
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				buffer = null;
+			}
+		}
+
+		private void parseLine(int start, int end) {
+			if(end > start && buffer.get(end - 1) == '\r') end--;
+			if(end == start || buffer.get(start) == '#') return;	// empty line or comment
+
+			int n = 0;
+			int f = start;
+			for(int i=start; i<=end; ++i) {
+				if(i == end || buffer.get(i) == ',') {
+					if(n == fieldStart.length) {
+						error(start, end, "too many fields");
+						return;
+					}
+					fieldStart[n] = f;
+					fieldEnd[n] = i;
+					n++;
+					f = i + 1;
+				}
+			}
+			if(fieldEnd[0] - fieldStart[0] != 1) {
+				error(start, end, "invalid record type");
+				return;
+			}
+			byte type = buffer.get(start);
+			int fields = type == 'R' ? 3 : 4;
+			if(type != 'S' && type != 'C' && type != 'R' && type != 'E') {
+				error(start, end, "invalid record type");
+				return;
+			}
+			if(n != fields) {
+				error(start, end, "expected " + fields + " fields");
+				return;
+			}
+			int a = parseInt(1);
+			if(a < 0) {
+				error(start, end, "invalid number");
+				return;
+			}
+			switch(type) {
+			case 'S':
+			case 'C':
+				if(fieldEnd[2] == fieldStart[2] || fieldEnd[3] == fieldStart[3]) {
+					error(start, end, "empty name");
+					return;
+				}
+				if(type == 'S') {
+					studentId.add(a);
+					studentFirst.add(decode(fieldStart[2], fieldEnd[2]));
+					studentLast.add(decode(fieldStart[3], fieldEnd[3]));
+					studentLine.add(lines);
+				} else {
+					courseCode.add(a);
+					courseTitle.add(decode(fieldStart[2], fieldEnd[2]));
+					courseTeacher.add(decode(fieldStart[3], fieldEnd[3]));
+					courseLine.add(lines);
+				}
+				break;
+			case 'R':
+			case 'E':
+				int b = parseInt(2);
+				int g = type == 'E' ? parseInt(3) : 0;
+				if(b < 0 || g < 0) {
+					error(start, end, "invalid number");
+					return;
+				}
+				if(type == 'R') {
+					regStudent.add(a);
+					regCourse.add(b);
+					regLine.add(lines);
+				} else {
+					examStudent.add(a);
+					examCourse.add(b);
+					examGrade.add(g);
+					examLine.add(lines);
+				}
+				break;
+			default:
+			}
+		}
+
+		/**
+		 * Parses a non-negative number
+		 * 
+		 * @return the number or {@code -1} if invalid
+		 */
+		private int parseInt(int field) {
+			int from = fieldStart[field];
+			int to = fieldEnd[field];
+			if(to == from || to - from > 9) return -1;
+			int value = 0;
+			for(int i=from; i<to; ++i) {
+				int d = buffer.get(i) - '0';
+				if(d < 0 || d > 9) return -1;
+				value = value * 10 + d;
+			}
+			return value;
+		}
+
+		private String decode(int from, int to) {
+			int n = to - from;
+			if(n > scratch.length) scratch = new byte[Math.max(n, scratch.length * 2)];
+			for(int i=0; i<n; ++i) scratch[i] = buffer.get(from + i);
+			return new String(scratch, 0, n, StandardCharsets.UTF_8);
+		}
+
+		private void error(int start, int end, String reason) {
+			errors.add(new Error(this, lines, decode(start, end), reason));
+		}
+
+		void loadStudentsAndCourses(University u, AtomicLongArray students, int firstStudent, int studentLimit, AtomicLongArray courses, int courseLimit) {
+			for(int i=0; i<studentId.size(); ++i) {
+				int id = studentId.get(i);
+				int index = id - University.INITIAL_ID;
+				if(index < 0 || index >= studentLimit) {
+					discard(studentLine.get(i), "S," + id + "," + studentFirst.get(i) + "," + studentLast.get(i), "invalid student ID");
+				} else if(index < firstStudent || ! claim(students, index)) {	// assigned already, maybe to an expelled student
+					discard(studentLine.get(i), "S," + id + "," + studentFirst.get(i) + "," + studentLast.get(i), "duplicate student ID");
+				} else {
+					u.restoreStudent(id, studentFirst.get(i), studentLast.get(i));
+					addedStudents.add(index);
+					loaded++;
+				}
+			}
+			for(int i=0; i<courseCode.size(); ++i) {
+				int code = courseCode.get(i);
+				int index = code - University.INITIAL_CODE;
+				if(index < 0 || index >= courseLimit) {
+					discard(courseLine.get(i), "C," + code + "," + courseTitle.get(i) + "," + courseTeacher.get(i), "invalid course code");
+				} else if(u.courseAt(index) != null || ! claim(courses, index)) {
+					discard(courseLine.get(i), "C," + code + "," + courseTitle.get(i) + "," + courseTeacher.get(i), "duplicate course code");
+				} else {
+					u.restoreCourse(code, courseTitle.get(i), courseTeacher.get(i));
+					addedCourses.add(index);
+					loaded++;
+				}
+			}
+		}
+
+		void loadRegistrations(University u) {
+			for(int i=0; i<regStudent.size(); ++i) {
+				int s = regStudent.get(i);
+				int c = regCourse.get(i);
+				String reason = check(u, s, c);
+				if(reason == null && ! u.restoreRegistration(s, c)) {
+					reason = "duplicate registration";
+				}
+				if(reason != null) {
+					discard(regLine.get(i), "R," + s + "," + c, reason);
+				} else {
+					loaded++;
+				}
+			}
+		}
+
+		void loadExams(University u) {
+			int n = examStudent.size();
+			int[] students = new int[n];
+			int[] courses = new int[n];
+			int[] grades = new int[n];
+			int valid = 0;
+			for(int i=0; i<n; ++i) {
+				int s = examStudent.get(i);
+				int c = examCourse.get(i);
+				int g = examGrade.get(i);
+				String reason = check(u, s, c);
+				if(reason == null && g > University.MAX_GRADE) {
+					reason = "invalid grade";
+				}
+				if(reason == null && ! u.isRegistered(s - University.INITIAL_ID, c - University.INITIAL_CODE)) {
+					reason = "student not registered to the course";
+				}
+				if(reason != null) {
+					discard(examLine.get(i), "E," + s + "," + c + "," + g, reason);
+					continue;
+				}
+				students[valid] = s - University.INITIAL_ID;
+				courses[valid] = c - University.INITIAL_CODE;
+				grades[valid] = g;
+				valid++;
+			}
+			u.restoreExams(Arrays.copyOf(students, valid), Arrays.copyOf(courses, valid), Arrays.copyOf(grades, valid));
+			loaded += valid;
+		}
+
+		private static String check(University u, int studentId, int courseCode) {
+			if(u.studentAt(studentId - University.INITIAL_ID) == null) return "unknown student";
+			if(u.courseAt(courseCode - University.INITIAL_CODE) == null) return "unknown course";
+			return null;
+		}
+
+		private void discard(int line, String text, String reason) {
+			errors.add(new Error(this, line, text, reason));
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package university;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stream of the changes made to a {@link University}, published to any number of
+ * {@link Flow.Subscriber}s, obtained by means of {@link University#changes()}.
+ *
+ * The events are written once into a bounded broadcast ring buffer shared by all
+ * the subscribers, each of which reads it at its own pace through a private cursor.
+ * Operations claim the next sequence number with a single atomic increment and
+ * never wait for the subscribers; events are delivered in sequence order, which
+ * is the order of the operations on the same student or course.
+ *
+ * Each subscriber receives the events published after it subscribed, at most as
+ * many as it requested, on a task of the executor of the stream; a task delivers
+ * all the available events in a batch, up to {@value #BATCH}, before yielding.
+ * A subscriber that falls behind by more than the capacity of the buffer
+ * would miss events: it is cancelled and receives {@code onError}.
+ */
+final class ChangeStream implements Flow.Publisher<UniversityEvent> {
+	private static final int BATCH = 256;
+	private static final Subscription[] NONE = new Subscription[0];
+	private static final long WRITING = Long.MIN_VALUE;
+
+	private final AtomicReferenceArray<UniversityEvent> events;
+	private final AtomicLongArray published;	// sequence number of the event in each slot
+	private final int mask;
+	private final AtomicLong next = new AtomicLong();
+	private final Executor executor;
+	private volatile Subscription[] subscriptions = NONE;
+	private volatile boolean closed;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity	minimum capacity of the buffer, rounded up to a power of two
+	 * @param executor	runs the deliveries to the subscribers
+	 */
+	ChangeStream(int capacity, Executor executor) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		events = new AtomicReferenceArray<>(size);
+		published = new AtomicLongArray(size);
+		for(int i=0; i<size; ++i) published.set(i, i - size);	// as if written one lap before
+		mask = size - 1;
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super UniversityEvent> subscriber) {
+		if(subscriber == null) throw new NullPointerException("subscriber");
+		Subscription s = new Subscription(subscriber);
+		synchronized(this) {
+			if(! closed) {
+				s.cursor = next.get();
+				Subscription[] subs = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+				subs[subs.length - 1] = s;
+				subscriptions = subs;
+			}
+		}
+		subscriber.onSubscribe(s);
+		if(closed) s.complete();
+	}
+
+	/**
+	 * Checks whether there is any subscriber, so that events need not be built otherwise
+	 *
+	 * @return {@code true} if the events are delivered to someone
+	 */
+	boolean isActive() {
+		return subscriptions.length > 0;
+	}
+
+	void enrolled(int studentId, String first, String last) {
+		if(isActive()) publish(UniversityEvent.enrolled(studentId, first, last));
+	}
+
+	void activated(int courseCode, String title, String teacher) {
+		if(isActive()) publish(UniversityEvent.activated(courseCode, title, teacher));
+	}
+
+	void registered(int studentId, int courseCode) {
+		if(isActive()) publish(UniversityEvent.registered(studentId, courseCode));
+	}
+
+	void examined(int studentId, int courseCode, int grade) {
+		if(isActive()) publish(UniversityEvent.examined(studentId, courseCode, grade));
+	}
+
+	void withdrawn(int studentId, int courseCode) {
+		if(isActive()) publish(UniversityEvent.withdrawn(studentId, courseCode));
+	}
+
+	void expelled(int studentId) {
+		if(isActive()) publish(UniversityEvent.expelled(studentId));
+	}
+
+	/**
+	 * Publishes an event to the current subscribers
+	 *
+	 * @param e the event
+	 */
+	void publish(UniversityEvent e) {
+		Subscription[] subs = subscriptions;
+		if(subs.length == 0 || closed) return;
+		long seq = next.getAndIncrement();
+		int i = (int) seq & mask;
+		while(published.get(i) != seq - events.length()) {
+			Thread.onSpinWait();	// the previous lap is still being written by a slower operation
+		}
+		published.set(i, WRITING);
+		events.set(i, e);
+		published.set(i, seq);
+		for(Subscription s : subs) s.signal();
+	}
+
+	/**
+	 * Completes the subscriptions once they have received the events published so far;
+	 * later subscribers are completed immediately
+	 */
+	void close() {
+		Subscription[] subs;
+		synchronized(this) {
+			closed = true;
+			subs = subscriptions;
+		}
+		for(Subscription s : subs) s.signal();
+	}
+
+	private synchronized void remove(Subscription s) {
+		Subscription[] subs = subscriptions;
+		for(int i=0; i<subs.length; ++i) {
+			if(subs[i] == s) {
+				Subscription[] rest = new Subscription[subs.length - 1];
+				System.arraycopy(subs, 0, rest, 0, i);
+				System.arraycopy(subs, i + 1, rest, i, subs.length - i - 1);
+				subscriptions = rest;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Cursor of a subscriber on the buffer.
+	 *
+	 * Deliveries are serialized by a work-in-progress counter: the thread that
+	 * raises it from zero schedules a delivery task, which runs until no new
+	 * signal arrived meanwhile.
+	 */
+	private final class Subscription implements Flow.Subscription, Runnable {
+		private final Flow.Subscriber<? super UniversityEvent> subscriber;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private long cursor;	// sequence number of the next event, accessed by the delivery task only
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+
+		Subscription(Flow.Subscriber<? super UniversityEvent> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if(n <= 0) {
+				invalidRequest = new IllegalArgumentException("Non-positive request: " + n);
+			} else {
+				requested.getAndAccumulate(n, (r, k) -> r + k < 0 ? Long.MAX_VALUE : r + k);
+			}
+			signal();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			remove(this);
+		}
+
+		void signal() {
+			if(wip.getAndIncrement() != 0) return;
+			try {
+				executor.execute(this);
+			} catch(RejectedExecutionException e) {
+				fail(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				if(! deliver()) {
+					executor.execute(this);	// yields after a full batch, keeping the pending signals
+					return;
+				}
+				missed = wip.addAndGet(-missed);
+			} while(missed != 0);
+		}
+
+		/**
+		 * Delivers the available events, up to the requested number
+		 *
+		 * @return {@code false} if a full batch was delivered and more may follow
+		 */
+		private boolean deliver() {
+			if(cancelled) return true;
+			if(invalidRequest != null) {
+				fail(invalidRequest);
+				return true;
+			}
+			long r = requested.get();
+			long n = 0;
+			while(n < r && n < BATCH && ! cancelled) {
+				int i = (int) cursor & mask;
+				long seq = published.get(i);
+				if(seq > cursor) {
+					fail(new IllegalStateException("Subscriber fell behind the stream of changes"));
+					return true;
+				}
+				if(seq != cursor) break;	// not yet published, or being written
+				UniversityEvent e = events.get(i);
+				if(published.get(i) != cursor) continue;	// overwritten meanwhile: reported above
+				try {
+					subscriber.onNext(e);
+				} catch(Throwable t) {
+					fail(t);
+					return true;
+				}
+				cursor++;
+				n++;
+			}
+			if(n > 0 && r != Long.MAX_VALUE) requested.addAndGet(-n);
+			if(closed && ! cancelled && cursor == next.get()) complete();
+			return n < BATCH;
+		}
+
+		void complete() {
+			if(cancelled) return;
+			cancel();
+			subscriber.onComplete();
+		}
+
+		private void fail(Throwable t) {
+			if(cancelled) return;
+			cancel();
+			subscriber.onError(t);
+		}
+	}
+}
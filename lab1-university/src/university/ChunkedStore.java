@@ -0,0 +1,69 @@
+package university;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Growable storage for elements addressed by a dense index
+ * (e.g. {@code id - INITIAL_ID}).
+ * 
+ * Elements are kept in fixed size chunks that are allocated on demand,
+ * so there is no hard limit on the number of elements, growing never
+ * copies the stored elements (only the small chunk directory is resized),
+ * and the memory used is proportional to the number of stored elements.
+ * 
+ * The storage is thread-safe: reads are lock-free, while the allocation 
+ * of new chunks is synchronized and published through a volatile directory.
+ *
+ * @param <T> type of the stored elements
+ */
+class ChunkedStore<T> {
+	private static final int CHUNK_BITS = 12;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private volatile Object[] chunks = new Object[4];
+
+	/**
+	 * Stores an element at the given index
+	 * 
+	 * @param index index of the element
+	 * @param elem the element to be stored
+	 */
+	void set(int index, T elem) {
+		chunk(index >>> CHUNK_BITS).set(index & CHUNK_MASK, elem);
+	}
+
+	/**
+	 * Retrieves the element with the given index
+	 * 
+	 * @param index index of the element
+	 * @return the element or {@code null} if no element is stored at the index
+	 */
+	@SuppressWarnings("unchecked")
+	T get(int index) {
+		if(index < 0) return null;
+		Object[] dir = chunks;
+		int chunk = index >>> CHUNK_BITS;
+		if(chunk >= dir.length || dir[chunk] == null) return null;
+		return ((AtomicReferenceArray<T>) dir[chunk]).get(index & CHUNK_MASK);
+	}
+
+	@SuppressWarnings("unchecked")
+	private AtomicReferenceArray<T> chunk(int chunk) {
+		Object[] dir = chunks;
+		if(chunk < dir.length && dir[chunk] != null) {
+			return (AtomicReferenceArray<T>) dir[chunk];
+		}
+		synchronized(this) {
+			dir = chunks;
+			if(chunk >= dir.length || dir[chunk] == null) {
+				int length = chunk < dir.length ? dir.length : Math.max(chunk + 1, dir.length * 2);
+				dir = Arrays.copyOf(dir, length);
+				dir[chunk] = new AtomicReferenceArray<T>(CHUNK_SIZE);
+				chunks = dir;
+			}
+			return (AtomicReferenceArray<T>) dir[chunk];
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package university;
+
+/**
+ * Co-enrollment matrix of the courses of a university:
+ * for each pair of courses, the number of students registered to both.
+ * 
+ * The matrix is symmetric, only the upper triangle is stored;
+ * the diagonal holds the number of attendees of each course.
+ * 
+ * @see University#coEnrollment()
+ */
+public final class CoEnrollment {
+	private final int[] attendees;
+	private final int[] pairs;	// upper triangle, row by row
+
+	CoEnrollment(int[] attendees, int[] pairs) {
+		this.attendees = attendees;
+		this.pairs = pairs;
+	}
+
+	/**
+	 * Number of rows (and columns) of the matrix,
+	 * i.e. the number of courses activated when it was computed
+	 * 
+	 * @return number of courses
+	 */
+	public int numCourses() {
+		return attendees.length;
+	}
+
+	/**
+	 * Retrieves the number of students registered to both courses
+	 * 
+	 * @param code1	code of the first course
+	 * @param code2	code of the second course
+	 * @return number of common students, or the number of attendees 
+	 * 			if the codes are the same, {@code 0} for unknown courses
+	 */
+	public int count(int code1, int code2) {
+		int i = code1 - University.INITIAL_CODE;
+		int j = code2 - University.INITIAL_CODE;
+		int n = attendees.length;
+		if(i < 0 || j < 0 || i >= n || j >= n) return 0;
+		return get(i, j);
+	}
+
+	int get(int i, int j) {
+		if(i == j) return attendees[i];
+		if(i > j) return pairs[index(attendees.length, j, i)];
+		return pairs[index(attendees.length, i, j)];
+	}
+
+	/**
+	 * Position in the upper triangle of the pair of dense indexes {@code i < j}
+	 */
+	static int index(int n, int i, int j) {
+		return (int) (offset(n, i) + (j - i - 1));
+	}
+
+	/**
+	 * Position in the upper triangle of the first element of row {@code i}
+	 */
+	static long offset(int n, int i) {
+		return (long) i * (2L * n - i - 1) / 2;
+	}
+}
@@ -1,69 +1,148 @@
 package university;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+
 /**
- * Represents the description of a course
+ * Represents the description of a course.
+ * 
+ * The data of the course are kept either in a Java object ({@link HeapCourse})
+ * or in off-heap memory, accessed through a flyweight view ({@link OffHeapCourse}).
+ * 
+ * The attendees occupy slots of a list, managed as the study plan of a {@link Student}.
  */
-class Course {
+abstract class Course {
 	
 	private static final String SEPARATOR = ",";
-	private final int code;
-	private final String title;
-	private final String teacher;
-	private Student[] students;
-	private Exam[] exams;
-	private int nextExam=0;
-
-	public Course(int code, String title, String teacher) {
-		this.code = code;
-		this.title = title;
-		this.teacher = teacher;
-		this.students = new Student[University.MAX_STUDENTS_PER_COURSE];
-		this.exams = new Exam[University.MAX_COURSES_PER_STUDENT];
-	}
-	
+
+	public abstract int getCode();
+
+	public abstract String getTitle();
+
+	public abstract String getTeacher();
+
+	/**
+	 * Adds a student to the attendees
+	 * 
+	 * @param s the student
+	 * @return the slot of the student
+	 */
+	abstract int enroll(Student s);
+
+	/**
+	 * Removes a student from the attendees, leaving its slot free
+	 * 
+	 * @param slot the slot of the student
+	 */
+	abstract void withdraw(int slot);
+
+	/**
+	 * Drops the free slots of the attendees, moving the following students
+	 * 
+	 * @param moved notified of the new slot of each student moved
+	 */
+	abstract void compact(ObjIntConsumer<Student> moved);
+
+
+	/**
+	 * Number of attendees
+	 * 
+	 * @return number of students
+	 */
+	abstract int enrolledStudents();
+
+	/**
+	 * Attendees by slot, in order of registration unless slots were reused.
+	 * 
+	 * The list is a consistent view of the slots when the method is invoked:
+	 * students registered or withdrawn later may or may not be seen, but
+	 * compactions never move the students of the list.
+	 * 
+	 * @return the students, {@code null} in the free slots
+	 */
+	abstract List<Student> attendeeList();
+
+	abstract void addGrade(int grade);
+
+	abstract double average();
+
 	public String toString(){
-		return code + SEPARATOR + title + SEPARATOR + teacher;
+		return getCode() + SEPARATOR + getTitle() + SEPARATOR + getTeacher();
 	}
 
-	public void enroll(Student s) {
-		for (int i = 0; i < students.length; i++) {
-			if(students[i] == null){
-				students[i]=s;
-				break;
-			}
-		}
+	/**
+	 * Writes the description of the course, formatted as {@link #toString()}
+	 * 
+	 * @param out destination
+	 * @return the destination
+	 * @throws IOException in case of write errors
+	 */
+	Appendable appendTo(Appendable out) throws IOException {
+		return out.append(String.valueOf(getCode())).append(SEPARATOR).append(getTitle()).append(SEPARATOR).append(getTeacher());
 	}
-	
+
 	public String attendees(){
 		StringBuilder result = new StringBuilder();
 		
-		for(Student s : students){
-			if(s!=null){
-				result.append(s.toString()).append("\n");
-			}
+		for(Student s : attendeeList()){
+			if(s != null) result.append(s.toString()).append("\n");
 		}
 		return result.toString();
 	}
 
-	public void addExam(Exam exam) {
-		exams[nextExam++] = exam;
+	/**
+	 * Writes a page of the attendees, one per line
+	 * 
+	 * @param offset	position of the first attendee
+	 * @param limit		maximum number of attendees
+	 * @param out		destination of the list
+	 * @return number of attendees written
+	 * @throws IOException in case of write errors
+	 */
+	int attendees(int offset, int limit, Appendable out) throws IOException {
+		List<Student> list = attendeeList();
+		int skipped = 0;
+		int written = 0;
+		for(int i=0; i<list.size() && written<limit; ++i){
+			Student s = list.get(i);
+			if(s == null) continue;
+			if(skipped++ < offset) continue;
+			s.appendTo(out).append('\n');
+			written++;
+		}
+		return written;
 	}
-	
-	double average() {
-		if(nextExam==0) return Double.NaN;
-		double average = 0.0;
-		for(Exam e : exams) {
-			if(e==null) break;
-			average += e.getGrade();
+
+	/**
+	 * Lazy stream of the attendees registered so far
+	 * 
+	 * @return stream of students
+	 */
+	Stream<Student> attendeeStream() {
+		return attendeeList().stream().filter(Objects::nonNull);
+	}
+
+	/**
+	 * Dense indexes of the attendees registered so far
+	 * 
+	 * @return indexes of the students, in order of registration
+	 */
+	int[] attendeeIndexes() {
+		List<Student> list = attendeeList();
+		int n = list.size();
+		int[] result = new int[n];
+		int k = 0;
+		for(Student s : list) {
+			if(s != null) result[k++] = s.getId() - University.INITIAL_ID;
 		}
-		return average/nextExam;
+		return k == n ? result : Arrays.copyOf(result, k);
 	}
-	
+
 	public static boolean isValid(double x) {
 		return !Double.isNaN(x);
 	}
-	
-	public String getTitle() {
-		return this.title;
-	}
 }
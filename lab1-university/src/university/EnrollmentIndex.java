@@ -0,0 +1,250 @@
+package university;
+
+import java.util.Arrays;
+
+/**
+ * Index of the registrations of students to courses.
+ * 
+ * Each registration is encoded as a single {@code long} made of the
+ * dense index of the student (upper 32 bits) and of the course (lower 32 bits)
+ * and stored in an open addressing hash table with linear probing, 
+ * together with the slots that the registration occupies in the study plan
+ * of the student and in the attendees of the course, so that it can be
+ * removed from both in constant time.
+ * Lookups run in constant time and never allocate.
+ * 
+ * The set is split into independently locked stripes, selected by the
+ * hash of the key, so that concurrent operations seldom contend.
+ */
+class EnrollmentIndex {
+	private static final long EMPTY = -1L;
+	static final long NONE = -1L;
+	private static final int STRIPE_BITS = 6;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+	EnrollmentIndex() {
+		for(int i=0; i<stripes.length; ++i) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Records the registration of a student to a course
+	 * 
+	 * @param student dense index of the student
+	 * @param course  dense index of the course
+	 * @return {@code true} if the registration was not already present
+	 */
+	boolean add(int student, int course) {
+		long key = key(student, course);
+		long hash = hash(key);
+		return stripe(hash).add(key, (int) hash);
+	}
+
+	/**
+	 * Records the slots occupied by a registration
+	 * 
+	 * @param student		dense index of the student
+	 * @param course		dense index of the course
+	 * @param studentSlot	slot of the course in the study plan of the student
+	 * @param courseSlot	slot of the student in the attendees of the course
+	 */
+	void setSlots(int student, int course, int studentSlot, int courseSlot) {
+		long key = key(student, course);
+		long hash = hash(key);
+		stripe(hash).put(key, (int) hash, key(studentSlot, courseSlot));
+	}
+
+	/**
+	 * Retrieves the slots occupied by a registration
+	 * 
+	 * @param student dense index of the student
+	 * @param course  dense index of the course
+	 * @return the slots, to be decoded by {@link #studentSlot} and {@link #courseSlot},
+	 * 			or {@link #NONE} if the student is not registered
+	 */
+	long slots(int student, int course) {
+		long key = key(student, course);
+		long hash = hash(key);
+		return stripe(hash).get(key, (int) hash);
+	}
+
+	/**
+	 * Encodes the slots occupied by a registration
+	 * 
+	 * @param studentSlot	slot of the course in the study plan of the student
+	 * @param courseSlot	slot of the student in the attendees of the course
+	 * @return the slots, to be decoded by {@link #studentSlot} and {@link #courseSlot}
+	 */
+	static long pack(int studentSlot, int courseSlot) {
+		return key(studentSlot, courseSlot);
+	}
+
+	static int studentSlot(long slots) {
+		return (int) (slots >>> 32);
+	}
+
+	static int courseSlot(long slots) {
+		return (int) slots;
+	}
+
+	/**
+	 * Removes a registration
+	 * 
+	 * @param student dense index of the student
+	 * @param course  dense index of the course
+	 * @return the slots it occupied, or {@link #NONE} if the student was not registered
+	 */
+	long remove(int student, int course) {
+		long key = key(student, course);
+		long hash = hash(key);
+		return stripe(hash).remove(key, (int) hash);
+	}
+
+	/**
+	 * Checks whether a student is registered to a course
+	 * 
+	 * @param student dense index of the student
+	 * @param course  dense index of the course
+	 * @return {@code true} if the student is registered to the course
+	 */
+	boolean contains(int student, int course) {
+		long key = key(student, course);
+		long hash = hash(key);
+		return stripe(hash).contains(key, (int) hash);
+	}
+
+	/**
+	 * Number of registrations in the index
+	 * 
+	 * @return number of registrations
+	 */
+	int size() {
+		int size = 0;
+		for(Stripe s : stripes) {
+			size += s.size();
+		}
+		return size;
+	}
+
+	private Stripe stripe(long hash) {
+		return stripes[(int) (hash >>> (64 - STRIPE_BITS))];
+	}
+
+	private static long key(int student, int course) {
+		return ((long) student << 32) | (course & 0xFFFFFFFFL);
+	}
+
+	private static long hash(long key) {
+		// finalization step of MurmurHash3 to spread the dense indexes
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	/**
+	 * A portion of the hash table, guarded by its own lock
+	 */
+	private static class Stripe {
+		private long[] keys;
+		private long[] values;
+		private int size;
+		private int threshold;
+
+		Stripe() {
+			keys = new long[INITIAL_CAPACITY];
+			values = new long[INITIAL_CAPACITY];
+			Arrays.fill(keys, EMPTY);
+			threshold = INITIAL_CAPACITY / 2;
+		}
+
+		synchronized boolean add(long key, int hash) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			while(keys[i] != EMPTY) {
+				if(keys[i] == key) return false;
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = 0;
+			if(++size > threshold) {
+				rehash(keys.length * 2);
+			}
+			return true;
+		}
+
+		synchronized boolean contains(long key, int hash) {
+			return find(key, hash) >= 0;
+		}
+
+		synchronized long get(long key, int hash) {
+			int i = find(key, hash);
+			return i < 0 ? NONE : values[i];
+		}
+
+		synchronized void put(long key, int hash, long value) {
+			int i = find(key, hash);
+			if(i >= 0) values[i] = value;
+		}
+
+		synchronized long remove(long key, int hash) {
+			int i = find(key, hash);
+			if(i < 0) return NONE;
+			long value = values[i];
+			// backward shift: moves up the following keys of the cluster that would not be found anymore
+			int mask = keys.length - 1;
+			int j = i;
+			while(true) {
+				j = (j + 1) & mask;
+				if(keys[j] == EMPTY) break;
+				int home = (int) hash(keys[j]) & mask;
+				if(((j - home) & mask) >= ((j - i) & mask)) {
+					keys[i] = keys[j];
+					values[i] = values[j];
+					i = j;
+				}
+			}
+			keys[i] = EMPTY;
+			size--;
+			return value;
+		}
+
+		private int find(long key, int hash) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			while(keys[i] != EMPTY) {
+				if(keys[i] == key) return i;
+				i = (i + 1) & mask;
+			}
+			return -1;
+		}
+
+		synchronized int size() {
+			return size;
+		}
+
+		private void rehash(int capacity) {
+			long[] old = keys;
+			long[] oldValues = values;
+			keys = new long[capacity];
+			values = new long[capacity];
+			Arrays.fill(keys, EMPTY);
+			threshold = capacity / 2;
+			int mask = capacity - 1;
+			for(int k=0; k<old.length; ++k) {
+				if(old[k] == EMPTY) continue;
+				int i = (int) hash(old[k]) & mask;
+				while(keys[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = old[k];
+				values[i] = oldValues[k];
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package university;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Epoch-based publication of the snapshots of a university.
+ *
+ * Every operation that modifies the university runs between {@link #enter()}
+ * and {@link #exit(long)}, and records the change it made in the journal
+ * of the current epoch. Taking a snapshot closes the epoch: it waits only
+ * until the operations in progress complete, swaps the journal, and then,
+ * while the following operations proceed, applies the journal
+ * to the previous snapshot.
+ *
+ * Operations only touch a counter of their own thread stripe to enter
+ * and exit, so that they do not contend on the gate as long as no epoch
+ * is being closed.
+ *
+ * Changes are recorded only once the first snapshot has been taken,
+ * which is built from the whole state of the university.
+ * A journal holds at most {@value #JOURNAL_LIMIT} changes: past that limit,
+ * it is dropped and the next snapshot is built again from the whole state,
+ * so that the memory held by an epoch is bounded even if no snapshot is
+ * taken for a long time.
+ */
+class Epochs {
+	static final int JOURNAL_LIMIT = 1 << 20;
+
+	/**
+	 * Changes recorded during an epoch, in order
+	 */
+	private static final class Journal {
+		final Queue<UniversityEvent> events = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger size = new AtomicInteger();
+		volatile boolean overflown;
+
+		void add(UniversityEvent e) {
+			if(overflown) return;
+			if(size.incrementAndGet() > JOURNAL_LIMIT) {
+				overflown = true;
+				events.clear();		// the next snapshot does not need the events any more
+			} else {
+				events.add(e);
+			}
+		}
+
+		boolean isEmpty() {
+			return size.get() == 0;
+		}
+	}
+
+	/**
+	 * Gate shared by the operations and closed to end an epoch.
+	 *
+	 * Each operation increments the counter of a stripe selected by its thread,
+	 * then checks that the gate is open; closing the gate waits until all the
+	 * counters drop to zero. Operations arriving while the gate is closed
+	 * wait until it is opened again.
+	 */
+	private static final class Gate {
+		private static final int STRIPES = 64;
+		private static final int PADDING = 16;	// ints per cache line, so that stripes do not share lines
+
+		private final AtomicIntegerArray readers = new AtomicIntegerArray(STRIPES * PADDING);
+		private final ReentrantLock closer = new ReentrantLock();
+		private final Object door = new Object();	// waited on by the operations while the gate is closed
+		private volatile boolean closed;
+
+		long enter() {
+			int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+			while(true) {
+				readers.getAndIncrement(stripe);
+				if(! closed) return stripe;
+				readers.getAndDecrement(stripe);	// lets the closer proceed
+				boolean interrupted = false;
+				synchronized(door) {
+					while(closed) {
+						try {
+							door.wait();
+						} catch (InterruptedException e) {
+							interrupted = true;
+						}
+					}
+				}
+				if(interrupted) Thread.currentThread().interrupt();
+			}
+		}
+
+		void exit(long stamp) {
+			readers.getAndDecrement((int) stamp);
+		}
+
+		/**
+		 * Closes the gate and waits until the operations in progress complete
+		 */
+		void close() {
+			closer.lock();
+			closed = true;
+			for(int i=0; i<STRIPES; ++i) {
+				for(int spins=0; readers.get(i * PADDING) != 0; ++spins) {
+					if(spins < 100) Thread.onSpinWait(); else Thread.yield();
+				}
+			}
+		}
+
+		void open() {
+			synchronized(door) {
+				closed = false;
+				door.notifyAll();
+			}
+			closer.unlock();
+		}
+	}
+
+	private final Gate gate = new Gate();
+	private volatile Journal journal;	// null until the first snapshot
+	private UniversitySnapshot current;
+	private long epoch;
+
+	/**
+	 * Marks the beginning of an operation modifying the university
+	 *
+	 * @return the stamp to be passed to {@link #exit(long)}
+	 */
+	long enter() {
+		return gate.enter();
+	}
+
+	/**
+	 * Marks the end of an operation modifying the university
+	 *
+	 * @param stamp the stamp returned by {@link #enter()}
+	 */
+	void exit(long stamp) {
+		gate.exit(stamp);
+	}
+
+	void enrolled(int studentId, String first, String last) {
+		Journal j = journal;
+		if(j != null) j.add(UniversityEvent.enrolled(studentId, first, last));
+	}
+
+	void activated(int courseCode, String title, String teacher) {
+		Journal j = journal;
+		if(j != null) j.add(UniversityEvent.activated(courseCode, title, teacher));
+	}
+
+	void registered(int studentId, int courseCode, long slots) {
+		Journal j = journal;
+		if(j != null) j.add(UniversityEvent.registered(studentId, courseCode, slots));
+	}
+
+	void examined(int studentId, int courseCode, int grade) {
+		Journal j = journal;
+		if(j != null) j.add(UniversityEvent.examined(studentId, courseCode, grade));
+	}
+
+	void withdrawn(int studentId, int courseCode, long slots) {
+		Journal j = journal;
+		if(j != null) j.add(UniversityEvent.withdrawn(studentId, courseCode, slots));
+	}
+
+	void expelled(int studentId) {
+		Journal j = journal;
+		if(j != null) j.add(UniversityEvent.expelled(studentId));
+	}
+
+	/**
+	 * Runs an action while no operation is in progress, keeping the snapshots
+	 * 
+	 * @param <T> type of the result
+	 * @param action the action, that must not modify the university
+	 * @return the result of the action
+	 */
+	<T> T quiesce(Supplier<T> action) {
+		gate.close();
+		try {
+			return action.get();
+		} finally {
+			gate.open();
+		}
+	}
+
+	/**
+	 * Runs a change that is not recorded, excluding all the other operations,
+	 * and discards the snapshots
+	 * 
+	 * @param change the change
+	 */
+	void exclusive(Runnable change) {
+		exclusive(() -> {
+			change.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Runs a change that is not recorded, excluding all the other operations,
+	 * and discards the snapshots
+	 * 
+	 * @param <T> type of the result
+	 * @param change the change
+	 * @return the result of the change
+	 */
+	synchronized <T> T exclusive(Supplier<T> change) {
+		gate.close();
+		try {
+			return change.get();
+		} finally {
+			journal = null;
+			current = null;
+			gate.open();
+		}
+	}
+
+	/**
+	 * Closes the current epoch and returns its snapshot
+	 *
+	 * @param u the university
+	 * @return the snapshot including all the operations completed so far
+	 */
+	synchronized UniversitySnapshot snapshot(University u) {
+		Journal changes;
+		String rector;
+		gate.close();
+		try {
+			if(current == null || journal.overflown) {
+				current = UniversitySnapshot.of(u, ++epoch);
+				journal = new Journal();
+				return current;
+			}
+			changes = journal;
+			rector = u.getRector();
+			if(! changes.isEmpty()) journal = new Journal();
+		} finally {
+			gate.open();
+		}
+		if(changes.isEmpty() && rector == current.getRector()) return current;
+		current = current.apply(++epoch, rector, changes.events);
+		return current;
+	}
+}
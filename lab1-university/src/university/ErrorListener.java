@@ -0,0 +1,25 @@
+package university;
+
+import java.nio.file.Path;
+
+/**
+ * Error listener interface
+ * 
+ * It is used by {@link University#bulkLoad(ErrorListener, Path...)}
+ * to notify offending lines by calling the {@link #offending} method.
+ */
+public interface ErrorListener {
+	/**
+	 * Accepts an offending line during the load,
+	 * i.e. a line that caused an error and was discarded.
+	 * 
+	 * Lines are notified in order of file and line number,
+	 * by the thread that invoked the load.
+	 * 
+	 * @param file			the file containing the line
+	 * @param lineNumber	number of the line in the file (1-based)
+	 * @param line			the line that caused the error
+	 * @param reason		description of the error
+	 */
+	void offending(Path file, long lineNumber, String line, String reason);
+}
@@ -0,0 +1,91 @@
+package university;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free ring buffer with many producers and a single consumer.
+ * 
+ * Producers claim a slot by advancing the tail with a CAS and then publish
+ * the element in the slot; the consumer takes the elements in order,
+ * clearing each slot before advancing the head. Closing the buffer sets
+ * the sign bit of the tail, so that no slot can be claimed afterwards.
+ *
+ * @param <E> type of the elements
+ */
+class EventRing<E> {
+	private static final long CLOSED = Long.MIN_VALUE;
+
+	private final AtomicReferenceArray<E> slots;
+	private final int mask;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param capacity	minimum capacity, rounded up to a power of two
+	 */
+	EventRing(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		slots = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * Adds an element to the buffer, if there is room
+	 * 
+	 * @param e the element
+	 * @return {@code false} if the buffer is full or closed
+	 */
+	boolean offer(E e) {
+		long t;
+		do {
+			t = tail.get();
+			if((t & CLOSED) != 0 || t - head.get() > mask) return false;
+		} while(! tail.compareAndSet(t, t + 1));
+		slots.lazySet((int) t & mask, e);
+		return true;
+	}
+
+	/**
+	 * Removes the available elements, in order, passing them to a consumer.
+	 * Must be called by a single thread at a time.
+	 * 
+	 * @param sink	the consumer of the elements
+	 * @param max	maximum number of elements to be removed
+	 * @return number of removed elements
+	 */
+	int drain(Consumer<? super E> sink, int max) {
+		long h = head.get();
+		int n = 0;
+		while(n < max) {
+			int i = (int) h & mask;
+			E e = slots.get(i);
+			if(e == null) break;	// empty, or slot claimed but not yet published
+			slots.lazySet(i, null);
+			sink.accept(e);
+			head.lazySet(++h);	// the slot is reported free only once consumed
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Prevents any further addition; the elements already added
+	 * can still be removed
+	 */
+	void close() {
+		tail.getAndUpdate(t -> t | CLOSED);
+	}
+
+	/**
+	 * Checks whether all the claimed slots have been consumed
+	 * 
+	 * @return {@code true} if the buffer is empty
+	 */
+	boolean isEmpty() {
+		return head.get() == (tail.get() & ~CLOSED);
+	}
+}
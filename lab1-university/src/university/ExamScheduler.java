@@ -0,0 +1,219 @@
+package university;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Computation of the co-enrollment matrix and of the exam timetable.
+ * 
+ * The attendees of each course are represented as a sparse bitset over the
+ * dense indexes of the students: only the non-zero 64-bit words are stored,
+ * together with their position. The number of common students of two courses
+ * is the sum of the bit counts of the intersections of the words in the same
+ * position, so the cost depends on the number of words shared by the courses 
+ * rather than on the number of students.
+ * 
+ * To visit only the pairs of courses sharing at least a word, the words are
+ * also indexed by position (inverted index); the rows of the matrix are then
+ * filled in parallel by fork/join tasks, each one writing its own rows.
+ * 
+ * The timetable is computed by coloring the conflict graph (courses sharing 
+ * at least a student) with the DSatur heuristic.
+ */
+final class ExamScheduler {
+	private static final int ROWS_PER_TASK = 8;
+
+	private ExamScheduler() {}
+
+	/**
+	 * Computes the co-enrollment matrix
+	 * 
+	 * @param courses	the courses, by dense index ({@code null} if missing)
+	 * @return the matrix
+	 */
+	static CoEnrollment coEnrollment(Course[] courses) {
+		int n = courses.length;
+		int[][] positions = new int[n][];
+		long[][] words = new long[n][];
+		int[] attendees = new int[n];
+		IntStream.range(0, n).parallel().forEach(i -> {
+			int[] students = courses[i] == null ? new int[0] : courses[i].attendeeIndexes();
+			attendees[i] = students.length;
+			toBitSet(students, i, positions, words);
+		});
+
+		// inverted index: for each word position the courses (in increasing order) having that word
+		int numWords = 0;
+		for(int[] p : positions) {
+			if(p.length > 0) numWords = Math.max(numWords, p[p.length-1] + 1);
+		}
+		int[] start = new int[numWords + 1];
+		for(int[] p : positions) {
+			for(int w : p) start[w+1]++;
+		}
+		for(int w=0; w<numWords; ++w) start[w+1] += start[w];
+		int[] courseAt = new int[start[numWords]];
+		long[] wordAt = new long[start[numWords]];
+		int[] fill = Arrays.copyOf(start, numWords);
+		for(int i=0; i<n; ++i) {
+			for(int k=0; k<positions[i].length; ++k) {
+				int at = fill[positions[i][k]]++;
+				courseAt[at] = i;
+				wordAt[at] = words[i][k];
+			}
+		}
+
+		int[] pairs = new int[(int) CoEnrollment.offset(n, n)];
+		ForkJoinPool.commonPool().invoke(new Rows(0, n, n, positions, words, start, courseAt, wordAt, pairs));
+		return new CoEnrollment(attendees, pairs);
+	}
+
+	private static void toBitSet(int[] students, int i, int[][] positions, long[][] words) {
+		Arrays.sort(students);
+		int distinct = 0;
+		int last = -1;
+		for(int s : students) {
+			if(s >>> 6 != last) {
+				last = s >>> 6;
+				distinct++;
+			}
+		}
+		int[] p = new int[distinct];
+		long[] w = new long[distinct];
+		int k = -1;
+		last = -1;
+		for(int s : students) {
+			if(s >>> 6 != last) {
+				last = s >>> 6;
+				p[++k] = last;
+			}
+			w[k] |= 1L << s;
+		}
+		positions[i] = p;
+		words[i] = w;
+	}
+
+	/**
+	 * Fills the rows of the matrix in a range of courses
+	 */
+	private static final class Rows extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+		private final int n;
+		private final int[][] positions;
+		private final long[][] words;
+		private final int[] start;
+		private final int[] courseAt;
+		private final long[] wordAt;
+		private final int[] pairs;
+
+		Rows(int from, int to, int n, int[][] positions, long[][] words,
+			 int[] start, int[] courseAt, long[] wordAt, int[] pairs) {
+			this.from = from;
+			this.to = to;
+			this.n = n;
+			this.positions = positions;
+			this.words = words;
+			this.start = start;
+			this.courseAt = courseAt;
+			this.wordAt = wordAt;
+			this.pairs = pairs;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > ROWS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Rows(from, mid, n, positions, words, start, courseAt, wordAt, pairs),
+						  new Rows(mid, to, n, positions, words, start, courseAt, wordAt, pairs));
+				return;
+			}
+			for(int i=from; i<to; ++i) {
+				int row = (int) CoEnrollment.offset(n, i) - i - 1;	// row + j is the position of (i,j)
+				int[] p = positions[i];
+				long[] w = words[i];
+				for(int k=0; k<p.length; ++k) {
+					int end = start[p[k]+1];
+					// courses after i sharing the word; i itself is in the list
+					int at = Arrays.binarySearch(courseAt, start[p[k]], end, i) + 1;
+					for(; at<end; ++at) {
+						pairs[row + courseAt[at]] += Long.bitCount(w[k] & wordAt[at]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Assigns the courses to the slots, so that courses sharing at least
+	 * a student are in different slots.
+	 * 
+	 * At each step the course with the most distinct slots among its
+	 * neighbors (saturation) is assigned to the first free slot; ties are broken
+	 * by the number of conflicting courses and then by course index.
+	 * Courses having all the slots taken by their neighbors are left unscheduled.
+	 * 
+	 * @param matrix	the co-enrollment matrix
+	 * @param slots		number of slots
+	 * @return the timetable
+	 */
+	static ExamTimetable schedule(CoEnrollment matrix, int slots) {
+		int n = matrix.numCourses();
+		int[] degree = new int[n];
+		for(int i=0; i<n; ++i) {
+			for(int j=i+1; j<n; ++j) {
+				if(matrix.get(i, j) > 0) {
+					degree[i]++;
+					degree[j]++;
+				}
+			}
+		}
+
+		int[] slotOf = new int[n];
+		boolean[] done = new boolean[n];
+		int[] saturation = new int[n];
+		int wordsPerCourse = (slots + 63) >>> 6;
+		long[] used = new long[n * wordsPerCourse];	// slots taken by the neighbors
+
+		for(int step=0; step<n; ++step) {
+			int v = -1;
+			for(int i=0; i<n; ++i) {
+				if(done[i]) continue;
+				if(v < 0 || saturation[i] > saturation[v]
+						|| (saturation[i] == saturation[v] && degree[i] > degree[v])) {
+					v = i;
+				}
+			}
+			done[v] = true;
+			int slot = firstFree(used, v * wordsPerCourse, slots);
+			slotOf[v] = slot;
+			if(slot == ExamTimetable.UNSCHEDULED) continue;
+
+			int word = slot >>> 6;
+			long bit = 1L << slot;
+			for(int u=0; u<n; ++u) {
+				if(done[u] || matrix.get(v, u) == 0) continue;
+				int at = u * wordsPerCourse + word;
+				if((used[at] & bit) == 0) {
+					used[at] |= bit;
+					saturation[u]++;
+				}
+			}
+		}
+		return new ExamTimetable(slots, slotOf);
+	}
+
+	private static int firstFree(long[] used, int from, int slots) {
+		for(int s=0; s<slots; s+=64) {
+			long free = ~used[from + (s >>> 6)];
+			if(free != 0) {
+				int slot = s + Long.numberOfTrailingZeros(free);
+				return slot < slots ? slot : ExamTimetable.UNSCHEDULED;
+			}
+		}
+		return ExamTimetable.UNSCHEDULED;
+	}
+}
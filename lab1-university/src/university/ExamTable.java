@@ -0,0 +1,289 @@
+package university;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar storage of the exams.
+ * 
+ * Each exam is a row made of the dense index of the student, the dense
+ * index of the course, the grade, and optionally the time it was recorded;
+ * each attribute is stored in a separate primitive array (column),
+ * so that analytics can scan the grades in tight loops.
+ * 
+ * Rows are only appended: appending is synchronized while readers 
+ * never lock; a reader must read {@link #size()} before {@link #columns()},
+ * then the first {@code size} rows of the columns are stable.
+ */
+class ExamTable {
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int SCAN_LEAF = 1 << 14;	// rows scanned by a single task
+
+	/**
+	 * The columns of the table.
+	 * The arrays are replaced by larger copies when the table grows.
+	 */
+	static final class Columns {
+		final int[] student;
+		final int[] course;
+		final int[] grade;
+		final long[] time;	// null if timestamps are not recorded
+
+		Columns(int[] student, int[] course, int[] grade, long[] time) {
+			this.student = student;
+			this.course = course;
+			this.grade = grade;
+			this.time = time;
+		}
+
+		Columns resize(int capacity, boolean timestamps) {
+			long[] t = null;
+			if(timestamps) {
+				t = time == null ? new long[capacity] : Arrays.copyOf(time, capacity);
+			}
+			return new Columns(Arrays.copyOf(student, capacity),
+							   Arrays.copyOf(course, capacity),
+							   Arrays.copyOf(grade, capacity),
+							   t);
+		}
+
+		int capacity() {
+			return grade.length;
+		}
+	}
+
+	private volatile Columns columns = new Columns(new int[INITIAL_CAPACITY], new int[INITIAL_CAPACITY],
+												   new int[INITIAL_CAPACITY], null);
+	private volatile int size;
+
+	/**
+	 * Appends a new exam
+	 * 
+	 * @param student	dense index of the student
+	 * @param course	dense index of the course
+	 * @param grade		grade (0-30)
+	 * @return the row number of the exam
+	 */
+	synchronized int add(int student, int course, int grade) {
+		Columns cols = columns;
+		int row = size;
+		if(row == cols.capacity()) {
+			cols = cols.resize(row * 2, cols.time != null);
+			columns = cols;
+		}
+		cols.student[row] = student;
+		cols.course[row] = course;
+		cols.grade[row] = grade;
+		if(cols.time != null) cols.time[row] = System.currentTimeMillis();
+		size = row + 1; // publishes the row to the readers
+		return row;
+	}
+
+	/**
+	 * Appends a batch of exams, without timestamps
+	 * 
+	 * @param student	dense indexes of the students
+	 * @param course	dense indexes of the courses
+	 * @param grade		grades (0-30)
+	 */
+	synchronized void addAll(int[] student, int[] course, int[] grade) {
+		Columns cols = columns;
+		int row = size;
+		int n = grade.length;
+		if(row + n > cols.capacity()) {
+			cols = cols.resize(Math.max(row + n, row * 2), cols.time != null);
+			columns = cols;
+		}
+		System.arraycopy(student, 0, cols.student, row, n);
+		System.arraycopy(course, 0, cols.course, row, n);
+		System.arraycopy(grade, 0, cols.grade, row, n);
+		size = row + n; // publishes the rows to the readers
+	}
+
+	/**
+	 * Enables or disables the recording of the time of the exams.
+	 * Exams recorded while disabled have time {@code 0}.
+	 * 
+	 * @param enabled {@code true} to record the time
+	 */
+	synchronized void setTimestamps(boolean enabled) {
+		Columns cols = columns;
+		if(enabled != (cols.time != null)) {
+			columns = cols.resize(cols.capacity(), enabled);
+		}
+	}
+
+	/**
+	 * Number of exams
+	 * 
+	 * @return number of rows
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Current columns of the table, to be read after {@link #size()}
+	 * 
+	 * @return the columns
+	 */
+	Columns columns() {
+		return columns;
+	}
+
+	/**
+	 * Stream of the row numbers, it can be made parallel to scan the columns
+	 * 
+	 * @return row numbers
+	 */
+	IntStream rows() {
+		return IntStream.range(0, size);
+	}
+
+	/**
+	 * Computes the distribution of the grades for a course
+	 * 
+	 * @param course	dense index of the course
+	 * @return the number of exams for each grade (0-30)
+	 */
+	int[] histogram(int course) {
+		int n = size;
+		Columns cols = columns;
+		int[] courses = cols.course;
+		int[] grades = cols.grade;
+		int[] histogram = new int[University.MAX_GRADE + 1];
+		for(int i=0; i<n; ++i) {
+			if(courses[i] == course) histogram[grades[i]]++;
+		}
+		return histogram;
+	}
+
+	/**
+	 * Computes the distribution of the grades of every course in a single scan.
+	 * The scan is split among the threads of the common fork/join pool,
+	 * each of which counts the grades of its rows in a private array.
+	 * 
+	 * @param numCourses	supplier of the current number of courses
+	 * @return the number of exams for each course and grade,
+	 * 			at index {@code course * (MAX_GRADE + 1) + grade}
+	 */
+	int[] histograms(IntSupplier numCourses) {
+		int n = size;
+		Columns cols = columns;
+		int[] courses = cols.course;
+		int[] grades = cols.grade;
+		int k = numCourses.getAsInt();	// read after the size, so it covers all the scanned rows
+		int[] result = null;
+		for(int[] counts : scan(n, () -> new int[k * (University.MAX_GRADE + 1)], (counts, from, to) -> {
+			for(int i=from; i<to; ++i) {
+				counts[courses[i] * (University.MAX_GRADE + 1) + grades[i]]++;
+			}
+		})) {
+			if(result == null) {
+				result = counts;
+			} else {
+				for(int i=0; i<result.length; ++i) result[i] += counts[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes sum and count of the grades of every course in a single scan.
+	 * The scan is split among the threads of the common fork/join pool,
+	 * each of which sums the grades of its rows in a private array.
+	 * 
+	 * @param numCourses	supplier of the current number of courses
+	 * @return an array with sum (at index {@code 2*course}) and 
+	 * 			count (at index {@code 2*course+1}) for each course
+	 */
+	long[] sumsByCourse(IntSupplier numCourses) {
+		int n = size;
+		Columns cols = columns;
+		int[] courses = cols.course;
+		int[] grades = cols.grade;
+		int k = numCourses.getAsInt();	// read after the size, so it covers all the scanned rows
+		long[] result = null;
+		for(long[] sums : scan(n, () -> new long[2 * k], (sums, from, to) -> {
+			for(int i=from; i<to; ++i) {
+				int c = courses[i];
+				sums[2*c] += grades[i];
+				sums[2*c+1]++;
+			}
+		})) {
+			if(result == null) {
+				result = sums;
+			} else {
+				for(int i=0; i<result.length; ++i) result[i] += sums[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Accumulates a range of rows
+	 */
+	private interface RowScanner<A> {
+		void scan(A accumulator, int from, int to);
+	}
+
+	/**
+	 * Scans the first rows in parallel, splitting them in ranges of at least
+	 * {@value #SCAN_LEAF} rows for load balancing; the ranges scanned by the
+	 * same thread share an accumulator, so that the memory used is proportional
+	 * to the number of threads rather than to the number of ranges.
+	 * 
+	 * @param n				number of rows
+	 * @param accumulator	creates an empty accumulator
+	 * @param scanner		accumulates a range of rows
+	 * @return the accumulators, at least one
+	 */
+	private static <A> Collection<A> scan(int n, Supplier<A> accumulator, RowScanner<A> scanner) {
+		Map<Thread, A> accumulators = new ConcurrentHashMap<>();
+		int threshold = Math.max(SCAN_LEAF, n / (4 * ForkJoinPool.getCommonPoolParallelism()));
+		ForkJoinPool.commonPool().invoke(new ScanTask<>(accumulators, accumulator, scanner, 0, n, threshold));
+		return accumulators.values();
+	}
+
+	/**
+	 * Scans a range of rows, splitting it in halves until it is small enough
+	 */
+	private static final class ScanTask<A> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Map<Thread, A> accumulators;
+		private final Supplier<A> accumulator;
+		private final RowScanner<A> scanner;
+		private final int from;
+		private final int to;
+		private final int threshold;
+
+		ScanTask(Map<Thread, A> accumulators, Supplier<A> accumulator, RowScanner<A> scanner, int from, int to, int threshold) {
+			this.accumulators = accumulators;
+			this.accumulator = accumulator;
+			this.scanner = scanner;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= threshold) {
+				// a thread runs a single range at a time, so it can update its accumulator without locking
+				A acc = accumulators.computeIfAbsent(Thread.currentThread(), t -> accumulator.get());
+				scanner.scan(acc, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ScanTask<>(accumulators, accumulator, scanner, from, mid, threshold),
+					  new ScanTask<>(accumulators, accumulator, scanner, mid, to, threshold));
+		}
+	}
+}
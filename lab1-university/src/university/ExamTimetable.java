@@ -0,0 +1,75 @@
+package university;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assignment of the exams of the courses to the slots of an exam session,
+ * such that no student has two exams in the same slot.
+ * 
+ * Courses that could not be assigned to any slot without conflicts
+ * are left unscheduled.
+ * 
+ * @see University#examTimetable(int)
+ */
+public final class ExamTimetable {
+	/**
+	 * Slot of the courses that could not be scheduled
+	 */
+	public static final int UNSCHEDULED = -1;
+
+	private final int slots;
+	private final int[] slotOf;	// by dense index of the course
+
+	ExamTimetable(int slots, int[] slotOf) {
+		this.slots = slots;
+		this.slotOf = slotOf;
+	}
+
+	/**
+	 * Number of available slots
+	 * 
+	 * @return number of slots
+	 */
+	public int getSlots() {
+		return slots;
+	}
+
+	/**
+	 * Retrieves the slot assigned to the exam of a course
+	 * 
+	 * @param code	code of the course
+	 * @return slot (0-based) or {@link #UNSCHEDULED}
+	 */
+	public int slotOf(int code) {
+		int i = code - University.INITIAL_CODE;
+		if(i < 0 || i >= slotOf.length) return UNSCHEDULED;
+		return slotOf[i];
+	}
+
+	/**
+	 * Retrieves the courses whose exam is in a slot
+	 * 
+	 * @param slot	slot (0-based), or {@link #UNSCHEDULED}
+	 * @return codes of the courses, in increasing order
+	 */
+	public List<Integer> coursesIn(int slot) {
+		List<Integer> result = new ArrayList<>();
+		for(int i=0; i<slotOf.length; ++i) {
+			if(slotOf[i] == slot) result.add(University.INITIAL_CODE + i);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether all the courses have been scheduled
+	 * 
+	 * @return {@code true} if there are no unscheduled courses
+	 */
+	public boolean isComplete() {
+		for(int s : slotOf) {
+			if(s == UNSCHEDULED) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,133 @@
+package university;
+
+/**
+ * Distribution of a set of grades (0-30), as computed by {@link University#gradeReport()}.
+ *
+ * The distribution is kept as the number of exams for each grade, from which
+ * all the statistics are derived exactly in constant time.
+ * Statistics of an empty distribution are {@code NaN}.
+ *
+ * Instances are immutable.
+ */
+public final class GradeDistribution {
+	private final int[] counts;
+	private final int count;
+	private final double mean;
+	private final double variance;
+
+	/**
+	 * @param counts	number of exams for each grade, it is not copied
+	 */
+	GradeDistribution(int[] counts) {
+		this.counts = counts;
+		long n = 0;
+		long sum = 0;
+		for(int grade=0; grade<counts.length; ++grade) {
+			n += counts[grade];
+			sum += (long) grade * counts[grade];
+		}
+		count = (int) n;
+		mean = n == 0 ? Double.NaN : sum / (double) n;
+		double squares = 0;
+		for(int grade=0; grade<counts.length; ++grade) {
+			squares += counts[grade] * (grade - mean) * (grade - mean);
+		}
+		variance = n == 0 ? Double.NaN : squares / n;
+	}
+
+	/**
+	 * Number of exams
+	 *
+	 * @return number of grades
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Number of exams for each grade
+	 *
+	 * @return an array with the number of exams for each grade (0-30)
+	 */
+	public int[] histogram() {
+		return counts.clone();
+	}
+
+	/**
+	 * Average grade
+	 *
+	 * @return the mean
+	 */
+	public double mean() {
+		return mean;
+	}
+
+	/**
+	 * Population standard deviation of the grades
+	 *
+	 * @return the standard deviation
+	 */
+	public double standardDeviation() {
+		return Math.sqrt(variance);
+	}
+
+	/**
+	 * Median grade, i.e. the middle grade or the mean of the two middle grades
+	 *
+	 * @return the median
+	 */
+	public double median() {
+		if(count == 0) return Double.NaN;
+		return (grade((count + 1) / 2) + grade(count / 2 + 1)) / 2.0;
+	}
+
+	/**
+	 * Percentile of the grades, by the nearest-rank method: the lowest grade
+	 * such that at least {@code p} percent of the exams have that grade or a lower one
+	 *
+	 * @param p	the percentage (0-100)
+	 * @return the percentile
+	 * @throws IllegalArgumentException if the percentage is out of range
+	 */
+	public double percentile(double p) {
+		if(!(p >= 0 && p <= 100)) throw new IllegalArgumentException("Invalid percentage: " + p);
+		if(count == 0) return Double.NaN;
+		return grade(Math.max(1, (int) Math.ceil(p / 100 * count)));
+	}
+
+	/**
+	 * Fraction of the exams with a passing grade, i.e. at least {@link University#PASSING_GRADE}
+	 *
+	 * @return the pass rate (0.0-1.0)
+	 */
+	public double passRate() {
+		if(count == 0) return Double.NaN;
+		int passed = 0;
+		for(int grade=University.PASSING_GRADE; grade<counts.length; ++grade) {
+			passed += counts[grade];
+		}
+		return passed / (double) count;
+	}
+
+	/**
+	 * Retrieves the grade in a given position of the sorted grades
+	 *
+	 * @param rank	position, from 1 to {@link #count()}
+	 * @return the grade
+	 */
+	private int grade(int rank) {
+		int seen = 0;
+		for(int grade=0; grade<counts.length; ++grade) {
+			seen += counts[grade];
+			if(seen >= rank) return grade;
+		}
+		return counts.length - 1;
+	}
+
+	@Override
+	public String toString() {
+		if(count == 0) return "no exams";
+		return String.format("%d exams, mean %.1f, sd %.1f, median %.1f, pass rate %.0f%%",
+				count, mean, standardDeviation(), median(), 100 * passRate());
+	}
+}
@@ -0,0 +1,103 @@
+package university;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Distribution of the grades of every course, of every teacher, and of the whole
+ * university, computed by {@link University#gradeReport()} in a single scan of the exams.
+ *
+ * The report includes all the courses activated when it was computed,
+ * even those without exams, and reflects the exams recorded so far;
+ * it is not updated by the following exams.
+ *
+ * Instances are immutable.
+ */
+public final class GradeReport {
+	private final Map<Integer,GradeDistribution> courses;
+	private final Map<String,GradeDistribution> teachers;
+	private final GradeDistribution overall;
+
+	GradeReport(Map<Integer,GradeDistribution> courses, Map<String,GradeDistribution> teachers, GradeDistribution overall) {
+		this.courses = Collections.unmodifiableMap(courses);
+		this.teachers = Collections.unmodifiableMap(teachers);
+		this.overall = overall;
+	}
+
+	/**
+	 * Builds the report from the number of exams of each course and grade
+	 *
+	 * @param u			the university
+	 * @param counts	number of exams at index {@code course * (MAX_GRADE + 1) + grade}
+	 * @return the report
+	 */
+	static GradeReport of(University u, int[] counts) {
+		final int grades = University.MAX_GRADE + 1;
+		Map<Integer,GradeDistribution> courses = new TreeMap<>();
+		Map<String,int[]> byTeacher = new TreeMap<>();
+		int[] all = new int[grades];
+		for(int i=0; i*grades<counts.length; ++i) {
+			Course c = u.courseAt(i);
+			if(c == null) continue;
+			int[] histogram = new int[grades];
+			System.arraycopy(counts, i * grades, histogram, 0, grades);
+			courses.put(c.getCode(), new GradeDistribution(histogram));
+			int[] teacher = byTeacher.computeIfAbsent(c.getTeacher(), t -> new int[grades]);
+			for(int g=0; g<grades; ++g) {
+				teacher[g] += histogram[g];
+				all[g] += histogram[g];
+			}
+		}
+		Map<String,GradeDistribution> teachers = new TreeMap<>();
+		byTeacher.forEach((teacher, histogram) -> teachers.put(teacher, new GradeDistribution(histogram)));
+		return new GradeReport(courses, teachers, new GradeDistribution(all));
+	}
+
+	/**
+	 * Retrieves the distribution of the grades of a course
+	 *
+	 * @param code	code of the course
+	 * @return the distribution, or {@code null} if the course is not in the report
+	 */
+	public GradeDistribution course(int code) {
+		return courses.get(code);
+	}
+
+	/**
+	 * Retrieves the distribution of the grades of all the courses held by a teacher
+	 *
+	 * @param teacher	name of the teacher
+	 * @return the distribution, or {@code null} if the teacher holds no course
+	 */
+	public GradeDistribution teacher(String teacher) {
+		return teachers.get(teacher);
+	}
+
+	/**
+	 * Distributions of the grades of the courses
+	 *
+	 * @return an unmodifiable map from the course code to the distribution, sorted by code
+	 */
+	public Map<Integer,GradeDistribution> courses() {
+		return courses;
+	}
+
+	/**
+	 * Distributions of the grades of the teachers
+	 *
+	 * @return an unmodifiable map from the name of the teacher to the distribution, sorted by name
+	 */
+	public Map<String,GradeDistribution> teachers() {
+		return teachers;
+	}
+
+	/**
+	 * Distribution of all the grades of the university
+	 *
+	 * @return the distribution
+	 */
+	public GradeDistribution overall() {
+		return overall;
+	}
+}
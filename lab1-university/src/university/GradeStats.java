@@ -0,0 +1,88 @@
+package university;
+
+/**
+ * Running aggregates of a set of grades.
+ * 
+ * The aggregates are updated every time a grade is added, so that
+ * average, variance, minimum and maximum are available in constant time
+ * without scanning the exams.
+ * 
+ * Instances are thread-safe.
+ */
+class GradeStats {
+	private int count;
+	private long sum;
+	private long sumOfSquares;
+	private int min = Integer.MAX_VALUE;
+	private int max = Integer.MIN_VALUE;
+
+	/**
+	 * Adds a new grade to the aggregates
+	 * 
+	 * @param grade the grade
+	 */
+	synchronized void add(int grade) {
+		count++;
+		sum += grade;
+		sumOfSquares += (long) grade * grade;
+		if(grade < min) min = grade;
+		if(grade > max) max = grade;
+	}
+
+	/**
+	 * Number of grades
+	 * 
+	 * @return number of grades
+	 */
+	synchronized int count() {
+		return count;
+	}
+
+	/**
+	 * Sum of the grades
+	 * 
+	 * @return sum of grades
+	 */
+	synchronized long sum() {
+		return sum;
+	}
+
+	/**
+	 * Average of the grades
+	 * 
+	 * @return the average or {@code NaN} if there are no grades
+	 */
+	synchronized double average() {
+		if(count==0) return Double.NaN;
+		return sum / (double) count;
+	}
+
+	/**
+	 * Population variance of the grades
+	 * 
+	 * @return the variance or {@code NaN} if there are no grades
+	 */
+	synchronized double variance() {
+		if(count==0) return Double.NaN;
+		double avg = average();
+		return Math.max(0.0, sumOfSquares / (double) count - avg * avg);
+	}
+
+	/**
+	 * Lowest grade
+	 * 
+	 * @return the lowest grade or {@code -1} if there are no grades
+	 */
+	synchronized int min() {
+		return count==0 ? -1 : min;
+	}
+
+	/**
+	 * Highest grade
+	 * 
+	 * @return the highest grade or {@code -1} if there are no grades
+	 */
+	synchronized int max() {
+		return count==0 ? -1 : max;
+	}
+}
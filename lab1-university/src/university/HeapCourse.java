@@ -0,0 +1,114 @@
+package university;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Course whose data are stored in the Java heap
+ */
+class HeapCourse extends Course {
+	
+	private static final Student[] NO_STUDENTS = new Student[0];
+	private static final int[] NO_SLOTS = new int[0];
+	private static final int MIN_CAPACITY = 4;
+	private final int code;
+	private final String title;
+	private final String teacher;
+	private volatile Student[] students = NO_STUDENTS;
+	private volatile int numStudents=0;	// slots in use, including the free ones
+	private int enrolled;
+	private int[] free = NO_SLOTS;	// stack of the free slots
+	private int numFree;
+	private final GradeStats grades = new GradeStats();
+
+	public HeapCourse(int code, String title, String teacher) {
+		this.code = code;
+		this.title = title;
+		this.teacher = teacher;
+	}
+	
+	@Override
+	synchronized int enroll(Student s) {
+		enrolled++;
+		if(numFree > 0) {
+			int slot = free[--numFree];
+			Student[] ary = students;
+			ary[slot] = s;
+			students = ary; // publishes the student to the lock-free readers
+			return slot;
+		}
+		Student[] ary = students;
+		int n = numStudents;
+		if(n == ary.length){
+			ary = Arrays.copyOf(ary, Math.max(MIN_CAPACITY, ary.length*2));
+		}
+		ary[n] = s;
+		students = ary;
+		numStudents = n + 1; // publishes the student to the lock-free readers
+		return n;
+	}
+
+	@Override
+	synchronized void withdraw(int slot) {
+		students[slot] = null;
+		if(numFree == free.length) free = Arrays.copyOf(free, Math.max(MIN_CAPACITY, free.length*2));
+		free[numFree++] = slot;
+		enrolled--;
+	}
+
+	@Override
+	synchronized void compact(ObjIntConsumer<Student> moved) {
+		if(numFree == 0) return;
+		Student[] old = students;
+		int n = numStudents;
+		Student[] ary = new Student[Math.max(MIN_CAPACITY, enrolled)];
+		int k = 0;
+		for(int i=0; i<n; ++i) {
+			if(old[i] == null) continue;
+			if(k != i) moved.accept(old[i], k);
+			ary[k++] = old[i];
+		}
+		students = ary;	// a new array: the lists obtained before are not changed
+		numStudents = k;
+		free = NO_SLOTS;
+		numFree = 0;
+	}
+
+	@Override
+	synchronized int enrolledStudents() {
+		return enrolled;
+	}
+
+	@Override
+	List<Student> attendeeList() {
+		int n = numStudents;	// read first: the array holds at least n slots, unless compacted meanwhile
+		Student[] ary = students;
+		return Arrays.asList(ary).subList(0, Math.min(n, ary.length));
+	}
+
+	@Override
+	void addGrade(int grade) {
+		grades.add(grade);
+	}
+	
+	@Override
+	double average() {
+		return grades.average();
+	}
+
+	@Override
+	public int getCode() {
+		return code;
+	}
+
+	@Override
+	public String getTitle() {
+		return this.title;
+	}
+
+	@Override
+	public String getTeacher() {
+		return this.teacher;
+	}
+}
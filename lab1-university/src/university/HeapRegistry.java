@@ -0,0 +1,43 @@
+package university;
+
+/**
+ * Registry keeping students and courses as Java objects
+ */
+class HeapRegistry implements Registry {
+	private final ChunkedStore<Student> students = new ChunkedStore<>();
+	private final ChunkedStore<Course> courses = new ChunkedStore<>();
+
+	@Override
+	public Student student(int index) {
+		return students.get(index);
+	}
+
+	@Override
+	public Course course(int index) {
+		return courses.get(index);
+	}
+
+	@Override
+	public Student addStudent(int id, String first, String last) {
+		Student s = new HeapStudent(id, first, last);
+		students.set(id - University.INITIAL_ID, s);
+		return s;
+	}
+
+	@Override
+	public Course addCourse(int code, String title, String teacher) {
+		Course c = new HeapCourse(code, title, teacher);
+		courses.set(code - University.INITIAL_CODE, c);
+		return c;
+	}
+
+	@Override
+	public void removeStudent(int index) {
+		students.set(index, null);
+	}
+
+	@Override
+	public void reclaim() {
+		// removed students are collected once unreachable
+	}
+}
@@ -0,0 +1,121 @@
+package university;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Student whose data are stored in the Java heap
+ */
+class HeapStudent extends Student {
+	
+	private static final Course[] NO_COURSES = new Course[0];
+	private static final int[] NO_SLOTS = new int[0];
+	private static final int MIN_CAPACITY = 4;
+	private final int ID;
+	private final String first;
+	private final String last;
+	
+	private volatile Course[] courses = NO_COURSES;
+	private volatile int numCourses=0;	// slots in use, including the free ones
+	private int enrolled;
+	private int[] free = NO_SLOTS;	// stack of the free slots
+	private int numFree;
+	private final GradeStats grades = new GradeStats();
+	
+	public HeapStudent(int id, String first, String last) {
+		this.ID = id;
+		this.first = first;
+		this.last = last;
+	}
+	
+	@Override
+	synchronized int enroll(Course c){
+		enrolled++;
+		if(numFree > 0) {
+			int slot = free[--numFree];
+			Course[] ary = courses;
+			ary[slot] = c;
+			courses = ary; // publishes the course to the lock-free readers
+			return slot;
+		}
+		Course[] ary = courses;
+		int n = numCourses;
+		if(n == ary.length){
+			ary = Arrays.copyOf(ary, Math.max(MIN_CAPACITY, ary.length*2));
+		}
+		ary[n] = c;
+		courses = ary;
+		numCourses = n + 1; // publishes the course to the lock-free readers
+		return n;
+	}
+
+	@Override
+	synchronized void withdraw(int slot) {
+		courses[slot] = null;
+		if(numFree == free.length) free = Arrays.copyOf(free, Math.max(MIN_CAPACITY, free.length*2));
+		free[numFree++] = slot;
+		enrolled--;
+	}
+
+	@Override
+	synchronized void compact(ObjIntConsumer<Course> moved) {
+		if(numFree == 0) return;
+		Course[] old = courses;
+		int n = numCourses;
+		Course[] ary = new Course[Math.max(MIN_CAPACITY, enrolled)];
+		int k = 0;
+		for(int i=0; i<n; ++i) {
+			if(old[i] == null) continue;
+			if(k != i) moved.accept(old[i], k);
+			ary[k++] = old[i];
+		}
+		courses = ary;	// a new array: the lists obtained before are not changed
+		numCourses = k;
+		free = NO_SLOTS;
+		numFree = 0;
+	}
+
+	@Override
+	synchronized int enrolledCourses() {
+		return enrolled;
+	}
+
+	@Override
+	List<Course> courseList() {
+		int n = numCourses;	// read first: the array holds at least n slots, unless compacted meanwhile
+		Course[] ary = courses;
+		return Arrays.asList(ary).subList(0, Math.min(n, ary.length));
+	}
+
+	@Override
+	synchronized void addGrade(int grade) {
+		grades.add(grade);
+	}
+	
+	@Override
+	double average() {
+		return grades.average();
+	}
+
+	@Override
+	public int getId() {
+		return ID;
+	}
+	
+	@Override
+	public synchronized double getScore() {
+		return score(grades.average(), grades.count(), enrolled);
+	}
+
+	@Override
+	public String getLast() {
+		return last;
+	}
+
+	@Override
+	public String getFirst() {
+		return first;
+	}
+
+}
@@ -0,0 +1,116 @@
+package university;
+
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Ranking of the students by decreasing score.
+ * 
+ * The ranking is kept up to date incrementally, every time the
+ * score of a student changes, so that the best students, the rank,
+ * and the percentile of a student are available in O(log n),
+ * as well as the number of students whose score is in a range.
+ * Students that have not taken any exam have no score and are not ranked.
+ * Students with the same score are ranked by increasing ID.
+ * 
+ * Instances are thread-safe.
+ */
+class Leaderboard {
+	private final RankTree ranking = new RankTree();
+
+	/**
+	 * Updates the position of a student after a change of its score
+	 * 
+	 * @param index	dense index of the student
+	 * @param s		the student
+	 */
+	synchronized void update(int index, Student s) {
+		double score = s.getScore();
+		if(Student.isValid(score)) {
+			ranking.put(index, -score);
+		} else {
+			ranking.remove(index);
+		}
+	}
+
+	/**
+	 * Removes a student from the ranking
+	 * 
+	 * @param index	dense index of the student
+	 */
+	synchronized void remove(int index) {
+		ranking.remove(index);
+	}
+
+	/**
+	 * Number of ranked students
+	 * 
+	 * @return number of students having a score
+	 */
+	synchronized int size() {
+		return ranking.size();
+	}
+
+	/**
+	 * Retrieves the students with the highest score
+	 * 
+	 * @param k maximum number of students
+	 * @return dense indexes of the students in order of decreasing score
+	 */
+	synchronized int[] top(int k) {
+		int n = Math.max(0, Math.min(k, ranking.size()));
+		int[] top = new int[n];
+		for(int i=0; i<n; ++i) {
+			top[i] = ranking.select(i);
+		}
+		return top;
+	}
+
+	/**
+	 * Position of a student in the ranking
+	 * 
+	 * @param index dense index of the student
+	 * @return rank of the student (1 for the best one), or {@code -1} if not ranked
+	 */
+	synchronized int rankOf(int index) {
+		int rank = ranking.rank(index);
+		return rank < 0 ? -1 : rank + 1;
+	}
+
+	/**
+	 * Percentile of a student in the ranking, i.e. the percentage of ranked
+	 * students whose position is the same or lower than the given student.
+	 * 
+	 * @param index dense index of the student
+	 * @return the percentile (100 for the best one), or {@code NaN} if not ranked
+	 */
+	synchronized double percentile(int index) {
+		int rank = rankOf(index);
+		if(rank < 0) return Double.NaN;
+		int n = ranking.size();
+		return 100.0 * (n - rank + 1) / n;
+	}
+
+	/**
+	 * Counts the students whose score is in a range
+	 * 
+	 * @param min	minimum score (inclusive)
+	 * @param max	maximum score (inclusive)
+	 * @return number of students
+	 */
+	synchronized int count(double min, double max) {
+		if(min > max) return 0;
+		return ranking.countBelow(-min, true) - ranking.countBelow(-max, false);
+	}
+
+	/**
+	 * Lazy stream of the students whose score is in a range, in ranking order
+	 * 
+	 * @param min	minimum score (inclusive)
+	 * @param max	maximum score (inclusive)
+	 * @return dense indexes of the students
+	 */
+	IntStream range(double min, double max) {
+		return StreamSupport.intStream(new RangeSpliterator(this, ranking, -max, -min), false);
+	}
+}
@@ -0,0 +1,92 @@
+package university;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Flyweight view of a course stored in an {@link OffHeapRegistry}
+ */
+class OffHeapCourse extends Course {
+	private final OffHeapRegistry registry;
+	private final int index;
+
+	OffHeapCourse(OffHeapRegistry registry, int index) {
+		this.registry = registry;
+		this.index = index;
+	}
+
+	@Override
+	public int getCode() {
+		return University.INITIAL_CODE + index;
+	}
+
+	@Override
+	public String getTitle() {
+		return registry.courses.name1(index);
+	}
+
+	@Override
+	public String getTeacher() {
+		return registry.courses.name2(index);
+	}
+
+	@Override
+	int enroll(Student s) {
+		return registry.courses.add(index, s.getId() - University.INITIAL_ID);
+	}
+
+	@Override
+	void withdraw(int slot) {
+		registry.courses.remove(index, slot);
+	}
+
+	@Override
+	void compact(ObjIntConsumer<Student> moved) {
+		registry.courses.compact(index, (student, slot) -> moved.accept(new OffHeapStudent(registry, student), slot));
+	}
+
+	@Override
+	int enrolledStudents() {
+		return registry.courses.live(index);
+	}
+
+	@Override
+	List<Student> attendeeList() {
+		int[] items = registry.courses.items(index);
+		return new AbstractList<Student>() {
+			@Override
+			public Student get(int i) {
+				return items[i] < 0 ? null : new OffHeapStudent(registry, items[i]);
+			}
+
+			@Override
+			public int size() {
+				return items.length;
+			}
+		};
+	}
+
+	@Override
+	int[] attendeeIndexes() {
+		int[] items = registry.courses.items(index);
+		int n = items.length;
+		int[] result = new int[n];
+		int k = 0;
+		for(int student : items) {
+			if(student >= 0) result[k++] = student;
+		}
+		return k == n ? result : Arrays.copyOf(result, k);
+	}
+
+	@Override
+	void addGrade(int grade) {
+		registry.courses.addGrade(index, grade);
+	}
+
+	@Override
+	double average() {
+		return registry.courses.average(index);
+	}
+}
@@ -0,0 +1,166 @@
+package university;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Growable memory outside the Java heap, addressed by a {@code long} offset.
+ * 
+ * The memory is made of direct buffers of fixed size (chunks) allocated on demand;
+ * a value never spans two chunks as long as it is aligned to its size.
+ * Memory can either be addressed directly, after {@link #ensure(long) ensuring}
+ * that it exists, or obtained by bump allocation of blocks ({@link #allocate(int)});
+ * blocks can be {@link #free(long, int) freed} and are then kept in a free list
+ * per size, from which the following allocations of the same size are served.
+ * 
+ * Accesses are not synchronized, except for the acquire/release methods 
+ * that can be used to publish the data written to other threads.
+ * Address {@code 0} is never returned by {@link #allocate(int)}, 
+ * so it can be used as a null reference.
+ */
+class OffHeapMemory {
+	static final int CHUNK_BITS = 24;
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+	private long top = 8;	// first free address for allocate()
+	private final Map<Integer, Long> free = new HashMap<>();	// size -> first free block, linked through its first word
+
+	/**
+	 * Allocates a block of memory
+	 * 
+	 * @param bytes	size of the block, at most {@link #CHUNK_SIZE}
+	 * @return the address of the block, aligned to 8 bytes
+	 */
+	synchronized long allocate(int bytes) {
+		if(bytes > CHUNK_SIZE) throw new IllegalArgumentException("Block too large: " + bytes + " bytes");
+		bytes = (bytes + 7) & ~7;
+		Long head = free.get(bytes);
+		if(head != null) {
+			long next = getLong(head);
+			if(next == 0) free.remove(bytes); else free.put(bytes, next);
+			return head;
+		}
+		if((top & CHUNK_MASK) + bytes > CHUNK_SIZE) {		// the block would span two chunks
+			top = (top | CHUNK_MASK) + 1;
+		}
+		long address = top;
+		top += bytes;
+		ensure(top - 1);
+		return address;
+	}
+
+	/**
+	 * Frees a block, that can then be returned by {@link #allocate(int)}.
+	 * 
+	 * Lock-free readers may still be reading the block: they must check,
+	 * after reading, that the reference they followed is still current.
+	 * 
+	 * @param address	address of the block
+	 * @param bytes		size of the block, as passed to {@link #allocate(int)}
+	 */
+	synchronized void free(long address, int bytes) {
+		bytes = (bytes + 7) & ~7;
+		Long head = free.get(bytes);
+		putLong(address, head == null ? 0 : head);
+		free.put(bytes, address);
+	}
+
+	/**
+	 * Makes sure that the memory up to the given address exists
+	 * 
+	 * @param address	the address
+	 */
+	void ensure(long address) {
+		int chunk = (int) (address >>> CHUNK_BITS);
+		if(chunk < chunks.length) return;
+		synchronized(this) {
+			ByteBuffer[] ary = chunks;
+			if(chunk < ary.length) return;
+			ByteBuffer[] bigger = Arrays.copyOf(ary, chunk + 1);
+			for(int i=ary.length; i<bigger.length; ++i) {
+				bigger[i] = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.nativeOrder());
+			}
+			chunks = bigger;
+		}
+	}
+
+	/**
+	 * Total size of the chunks
+	 * 
+	 * @return number of bytes
+	 */
+	long capacity() {
+		return (long) chunks.length << CHUNK_BITS;
+	}
+
+	byte getByte(long address) {
+		return chunk(address).get(offset(address));
+	}
+
+	void putByte(long address, byte value) {
+		chunk(address).put(offset(address), value);
+	}
+
+	int getInt(long address) {
+		return chunk(address).getInt(offset(address));
+	}
+
+	void putInt(long address, int value) {
+		chunk(address).putInt(offset(address), value);
+	}
+
+	long getLong(long address) {
+		return chunk(address).getLong(offset(address));
+	}
+
+	void putLong(long address, long value) {
+		chunk(address).putLong(offset(address), value);
+	}
+
+	/**
+	 * Reads an int, the following reads see the writes made before
+	 * the corresponding {@link #putIntRelease}
+	 */
+	int getIntAcquire(long address) {
+		return (int) INTS.getAcquire(chunk(address), offset(address));
+	}
+
+	/**
+	 * Writes an int, publishing the writes made before it
+	 */
+	void putIntRelease(long address, int value) {
+		INTS.setRelease(chunk(address), offset(address), value);
+	}
+
+	/**
+	 * Reads a long, the following reads see the writes made before
+	 * the corresponding {@link #putLongRelease}
+	 */
+	long getLongAcquire(long address) {
+		return (long) LONGS.getAcquire(chunk(address), offset(address));
+	}
+
+	/**
+	 * Writes a long, publishing the writes made before it
+	 */
+	void putLongRelease(long address, long value) {
+		LONGS.setRelease(chunk(address), offset(address), value);
+	}
+
+	private ByteBuffer chunk(long address) {
+		return chunks[(int) (address >>> CHUNK_BITS)];
+	}
+
+	private static int offset(long address) {
+		return (int) address & CHUNK_MASK;
+	}
+}
@@ -0,0 +1,49 @@
+package university;
+
+/**
+ * Registry keeping students and courses in off-heap memory.
+ * 
+ * Students and courses are fixed-width records ({@link OffHeapTable}), 
+ * names and lists are stored in a shared arena; lookups return short-lived
+ * flyweight views over the records, so that the Java heap does not grow
+ * with the population.
+ */
+class OffHeapRegistry implements Registry {
+	private final OffHeapMemory arena = new OffHeapMemory();
+	final OffHeapTable students = new OffHeapTable(arena);
+	final OffHeapTable courses = new OffHeapTable(arena);
+
+	@Override
+	public Student student(int index) {
+		return students.exists(index) ? new OffHeapStudent(this, index) : null;
+	}
+
+	@Override
+	public Course course(int index) {
+		return courses.exists(index) ? new OffHeapCourse(this, index) : null;
+	}
+
+	@Override
+	public Student addStudent(int id, String first, String last) {
+		int index = id - University.INITIAL_ID;
+		students.create(index, first, last);
+		return new OffHeapStudent(this, index);
+	}
+
+	@Override
+	public Course addCourse(int code, String title, String teacher) {
+		int index = code - University.INITIAL_CODE;
+		courses.create(index, title, teacher);
+		return new OffHeapCourse(this, index);
+	}
+
+	@Override
+	public void removeStudent(int index) {
+		students.delete(index);
+	}
+
+	@Override
+	public void reclaim() {
+		students.reclaim();
+	}
+}
@@ -0,0 +1,84 @@
+package university;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Flyweight view of a student stored in an {@link OffHeapRegistry}
+ */
+class OffHeapStudent extends Student {
+	private final OffHeapRegistry registry;
+	private final int index;
+
+	OffHeapStudent(OffHeapRegistry registry, int index) {
+		this.registry = registry;
+		this.index = index;
+	}
+
+	@Override
+	public int getId() {
+		return University.INITIAL_ID + index;
+	}
+
+	@Override
+	public String getFirst() {
+		return registry.students.name1(index);
+	}
+
+	@Override
+	public String getLast() {
+		return registry.students.name2(index);
+	}
+
+	@Override
+	int enroll(Course c) {
+		return registry.students.add(index, c.getCode() - University.INITIAL_CODE);
+	}
+
+	@Override
+	void withdraw(int slot) {
+		registry.students.remove(index, slot);
+	}
+
+	@Override
+	void compact(ObjIntConsumer<Course> moved) {
+		registry.students.compact(index, (course, slot) -> moved.accept(new OffHeapCourse(registry, course), slot));
+	}
+
+	@Override
+	int enrolledCourses() {
+		return registry.students.live(index);
+	}
+
+	@Override
+	List<Course> courseList() {
+		int[] items = registry.students.items(index);
+		return new AbstractList<Course>() {
+			@Override
+			public Course get(int i) {
+				return items[i] < 0 ? null : new OffHeapCourse(registry, items[i]);
+			}
+
+			@Override
+			public int size() {
+				return items.length;
+			}
+		};
+	}
+
+	@Override
+	void addGrade(int grade) {
+		registry.students.addGrade(index, grade);
+	}
+
+	@Override
+	double average() {
+		return registry.students.average(index);
+	}
+
+	@Override
+	public double getScore() {
+		return registry.students.score(index);
+	}
+}
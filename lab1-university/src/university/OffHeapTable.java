@@ -0,0 +1,443 @@
+package university;
+
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-width records stored off-heap, describing either students or courses.
+ * 
+ * Each record, addressed by the dense index of the element, holds 
+ * references to two names (first and last name, or title and teacher), 
+ * a list of dense indexes (courses in the study plan, or attendees), 
+ * and the running aggregates of the grades:
+ * <pre>
+ *  0 NAME1  long   address of the first name in the arena
+ *  8 NAME2  long   address of the second name in the arena
+ * 16 LIST   long   address of the list block in the arena
+ * 24 SUM    long   sum of the grades
+ * 32 SIZE   int    number of slots of the list
+ * 36 COUNT  int    number of grades
+ * 40 PRESENT int   1 if the element exists
+ * 44 FREE   int    first free slot of the list plus one, 0 if none
+ * 48 LIVE   int    number of items in the list
+ * </pre>
+ * Names and lists are stored in an arena shared by the tables:
+ * a name is its length followed by the UTF-8 bytes, a list block is
+ * its capacity followed by the slots; when a list grows it is copied
+ * to a block twice as large, and the old block is freed.
+ * Since a block cannot span two chunks of the arena, the lists of more than
+ * {@value #SEGMENT_SLOTS} slots are chained: their block holds the capacity
+ * followed, at offset 8, by the addresses of segments of {@value #SEGMENT_SLOTS} slots.
+ * 
+ * A deleted record keeps its names, for the views still referring to it,
+ * until {@link #reclaim} frees them.
+ * 
+ * Removed items leave a tombstone in their slot: a negative value that
+ * links the free slots of the list ({@code -2 - next}, {@code -1} at the end),
+ * which are reused by the following additions. {@link #compact} moves the items
+ * to a block that fits them, dropping the tombstones.
+ * 
+ * Records are written under a lock (one of a set of stripes) and published
+ * by a release write of the {@code PRESENT}, {@code LIST} and {@code SIZE} fields,
+ * so that they can be read without locking. Since list blocks are reused once freed,
+ * lock-free readers copy a list and then check that it is still current.
+ */
+class OffHeapTable {
+	private static final int RECORD_BITS = 6;
+	private static final int NAME1 = 0;
+	private static final int NAME2 = 8;
+	private static final int LIST = 16;
+	private static final int SUM = 24;
+	private static final int SIZE = 32;
+	private static final int COUNT = 36;
+	private static final int PRESENT = 40;
+	private static final int FREE = 44;
+	private static final int LIVE = 48;
+	private static final int NONE = -1;
+	private static final int[] NO_ITEMS = new int[0];
+	private static final int MIN_CAPACITY = 4;
+	private static final int SEGMENT_BITS = 16;
+	private static final int SEGMENT_SLOTS = 1 << SEGMENT_BITS;
+	private static final int STRIPES = 64;
+
+	private final OffHeapMemory records = new OffHeapMemory();
+	private final OffHeapMemory arena;
+	private final Object[] locks = new Object[STRIPES];
+
+	/**
+	 * @param arena memory for the names and the lists
+	 */
+	OffHeapTable(OffHeapMemory arena) {
+		this.arena = arena;
+		for(int i=0; i<STRIPES; ++i) locks[i] = new Object();
+	}
+
+	/**
+	 * Creates a record
+	 * 
+	 * @param index	dense index of the element
+	 * @param name1	first name or title
+	 * @param name2	last name or teacher
+	 */
+	void create(int index, String name1, String name2) {
+		long r = record(index);
+		records.ensure(r + (1 << RECORD_BITS) - 1);
+		synchronized(lock(index)) {
+			records.putLong(r + NAME1, putString(name1));
+			records.putLong(r + NAME2, putString(name2));
+			records.putIntRelease(r + PRESENT, 1);
+		}
+	}
+
+	/**
+	 * Checks whether a record exists
+	 * 
+	 * @param index	dense index of the element
+	 * @return {@code true} if the record has been created
+	 */
+	boolean exists(int index) {
+		long r = record(index);
+		if(index < 0 || r >= records.capacity()) return false;
+		return records.getIntAcquire(r + PRESENT) == 1;
+	}
+
+	/**
+	 * @param index	dense index of the element
+	 * @return the first name or title, {@code null} if reclaimed
+	 */
+	String name1(int index) {
+		return name(record(index) + NAME1);
+	}
+
+	/**
+	 * @param index	dense index of the element
+	 * @return the last name or teacher, {@code null} if reclaimed
+	 */
+	String name2(int index) {
+		return name(record(index) + NAME2);
+	}
+
+	/**
+	 * Removes a record, freeing its list; its names are freed by {@link #reclaim}
+	 * 
+	 * @param index	dense index of the element
+	 */
+	void delete(int index) {
+		long r = record(index);
+		synchronized(lock(index)) {
+			records.putIntRelease(r + PRESENT, 0);
+			long list = records.getLong(r + LIST);
+			records.putLongRelease(r + LIST, 0);
+			records.putIntRelease(r + SIZE, 0);
+			records.putInt(r + FREE, 0);
+			records.putInt(r + LIVE, 0);
+			if(list != 0) freeList(list);
+		}
+	}
+
+	/**
+	 * Frees the names of the deleted records.
+	 * 
+	 * Lock-free readers of the names see either the name or {@code null}.
+	 */
+	void reclaim() {
+		long end = records.capacity();
+		for(long r=0; r<end; r+=1 << RECORD_BITS) {
+			synchronized(lock((int) (r >>> RECORD_BITS))) {
+				if(records.getInt(r + PRESENT) == 1) continue;
+				freeName(r + NAME1);
+				freeName(r + NAME2);
+			}
+		}
+	}
+
+	private void freeName(long field) {
+		long name = records.getLong(field);
+		if(name == 0) return;
+		records.putLongRelease(field, 0);
+		arena.free(name, 4 + arena.getInt(name));
+	}
+
+	/**
+	 * Adds an item to the list of a record, reusing a free slot if any
+	 * 
+	 * @param index	dense index of the element
+	 * @param item	the item, not negative
+	 * @return the slot of the item
+	 */
+	int add(int index, int item) {
+		long r = record(index);
+		synchronized(lock(index)) {
+			long list = records.getLong(r + LIST);
+			int free = records.getInt(r + FREE) - 1;
+			int slot;
+			if(free != NONE) {
+				slot = free;
+				long address = slot(list, arena.getInt(list), slot);
+				records.putInt(r + FREE, -arena.getInt(address) - 1);	// next free slot plus one
+				arena.putIntRelease(address, item);
+			} else {
+				slot = records.getInt(r + SIZE);
+				int capacity = list == 0 ? 0 : arena.getInt(list);
+				if(slot == capacity) {
+					capacity = Math.max(MIN_CAPACITY, capacity * 2);
+					list = move(r, list, slot, capacity, null);
+				}
+				arena.putInt(slot(list, capacity, slot), item);
+				records.putIntRelease(r + SIZE, slot + 1); // publishes the item to the lock-free readers
+			}
+			records.putInt(r + LIVE, records.getInt(r + LIVE) + 1);
+			return slot;
+		}
+	}
+
+	/**
+	 * Removes an item from the list of a record, leaving a tombstone
+	 * 
+	 * @param index	dense index of the element
+	 * @param slot	slot of the item
+	 */
+	void remove(int index, int slot) {
+		long r = record(index);
+		synchronized(lock(index)) {
+			long list = records.getLong(r + LIST);
+			int next = records.getInt(r + FREE) - 1;
+			arena.putIntRelease(slot(list, arena.getInt(list), slot), -2 - next);
+			records.putInt(r + FREE, slot + 1);
+			records.putInt(r + LIVE, records.getInt(r + LIVE) - 1);
+		}
+	}
+
+	/**
+	 * Moves the items of the list of a record to a block that fits them,
+	 * dropping the tombstones
+	 * 
+	 * @param index	dense index of the element
+	 * @param moved	notified of the new slot of each item
+	 */
+	void compact(int index, Moved moved) {
+		long r = record(index);
+		synchronized(lock(index)) {
+			long list = records.getLong(r + LIST);
+			int live = records.getInt(r + LIVE);
+			if(list == 0 || live == records.getInt(r + SIZE)) return;
+			int capacity = MIN_CAPACITY;
+			while(capacity < live) capacity *= 2;
+			move(r, list, records.getInt(r + SIZE), capacity, moved);
+			records.putIntRelease(r + SIZE, live);
+			records.putInt(r + FREE, 0);
+		}
+	}
+
+	/**
+	 * Receives the new slots of the items moved by {@link OffHeapTable#compact}
+	 */
+	interface Moved {
+		void moved(int item, int slot);
+	}
+
+	/**
+	 * Number of items in the list of a record
+	 * 
+	 * @param index	dense index of the element
+	 * @return number of items
+	 */
+	int live(int index) {
+		long r = record(index);
+		synchronized(lock(index)) {
+			return records.getInt(r + LIVE);
+		}
+	}
+
+	/**
+	 * Copies the items of the list of a record, all from the same block,
+	 * so that a concurrent {@link #compact} does not move items under the reader
+	 * 
+	 * @param index	dense index of the element
+	 * @return the items by slot, negative in the free slots
+	 */
+	int[] items(int index) {
+		long r = record(index);
+		while(true) {
+			int size = records.getIntAcquire(r + SIZE);	// read first: the list holds at least size slots, unless compacted meanwhile
+			long list = records.getLongAcquire(r + LIST);
+			if(list == 0) return NO_ITEMS;
+			// the block may have been freed and reused meanwhile: stay within its chunk,
+			// and follow only the addresses of segments that exist
+			int capacity = arena.getInt(list);
+			int[] items = new int[Math.max(0, Math.min(size, capacity))];
+			if(capacity <= SEGMENT_SLOTS) {
+				int n = (int) Math.min(items.length, (chunkEnd(list) - list - 4) / 4);
+				for(int i=0; i<n; ++i) {
+					items[i] = arena.getInt(list + 4 + 4L * i);
+				}
+			} else {
+				for(int from=0; from<items.length; from+=SEGMENT_SLOTS) {
+					long entry = list + 8 + 8L * (from >>> SEGMENT_BITS);
+					if(entry + 8 > chunkEnd(list)) break;
+					long segment = arena.getLong(entry);
+					if(segment < 8 || segment + 4L * SEGMENT_SLOTS > Math.min(chunkEnd(segment), arena.capacity())) break;
+					int n = Math.min(SEGMENT_SLOTS, items.length - from);
+					for(int i=0; i<n; ++i) {
+						items[from + i] = arena.getInt(segment + 4L * i);
+					}
+				}
+			}
+			VarHandle.acquireFence();
+			if(records.getLong(r + LIST) == list) return items;
+		}
+	}
+
+	/**
+	 * Copies the items of a list to a new block and frees the old one
+	 * 
+	 * @param r			address of the record
+	 * @param list		address of the list block
+	 * @param n			number of slots to copy
+	 * @param capacity	capacity of the new block
+	 * @param moved		if not {@code null}, the tombstones are dropped and the moves notified
+	 * @return address of the new block
+	 */
+	private long move(long r, long list, int n, int capacity, Moved moved) {
+		long bigger = allocateList(capacity);
+		int old = list == 0 ? 0 : arena.getInt(list);
+		int k = 0;
+		for(int i=0; i<n; ++i) {
+			int item = arena.getInt(slot(list, old, i));
+			if(moved != null) {
+				if(item < 0) continue;
+				if(k != i) moved.moved(item, k);
+			}
+			arena.putInt(slot(bigger, capacity, k++), item);
+		}
+		for(; k<capacity; ++k) {
+			arena.putInt(slot(bigger, capacity, k), NONE);	// the block may hold the data of its previous use
+		}
+		records.putLongRelease(r + LIST, bigger);
+		if(list != 0) freeList(list);
+		return bigger;
+	}
+
+	/**
+	 * Allocates a list, chaining segments if it does not fit a block
+	 * 
+	 * @param capacity	number of slots, a multiple of {@value #SEGMENT_SLOTS} if larger
+	 * @return address of the list block
+	 */
+	private long allocateList(int capacity) {
+		if(capacity <= SEGMENT_SLOTS) {
+			long list = arena.allocate(4 + 4 * capacity);
+			arena.putInt(list, capacity);
+			return list;
+		}
+		int segments = capacity >>> SEGMENT_BITS;
+		long list = arena.allocate(8 + 8 * segments);
+		arena.putInt(list, capacity);
+		for(int k=0; k<segments; ++k) {
+			arena.putLong(list + 8 + 8L * k, arena.allocate(4 * SEGMENT_SLOTS));
+		}
+		return list;
+	}
+
+	private void freeList(long list) {
+		int capacity = arena.getInt(list);
+		if(capacity <= SEGMENT_SLOTS) {
+			arena.free(list, 4 + 4 * capacity);
+			return;
+		}
+		int segments = capacity >>> SEGMENT_BITS;
+		for(int k=0; k<segments; ++k) {
+			arena.free(arena.getLong(list + 8 + 8L * k), 4 * SEGMENT_SLOTS);
+		}
+		arena.free(list, 8 + 8 * segments);
+	}
+
+	/**
+	 * Address of a slot of a list
+	 * 
+	 * @param list		address of the list block
+	 * @param capacity	capacity of the list
+	 * @param i			the slot
+	 * @return the address
+	 */
+	private long slot(long list, int capacity, int i) {
+		if(capacity <= SEGMENT_SLOTS) return list + 4 + 4L * i;
+		return arena.getLong(list + 8 + 8L * (i >>> SEGMENT_BITS)) + 4L * (i & (SEGMENT_SLOTS - 1));
+	}
+
+	private static long chunkEnd(long address) {
+		return ((address >>> OffHeapMemory.CHUNK_BITS) + 1) << OffHeapMemory.CHUNK_BITS;
+	}
+
+	void addGrade(int index, int grade) {
+		long r = record(index);
+		synchronized(lock(index)) {
+			records.putLong(r + SUM, records.getLong(r + SUM) + grade);
+			records.putInt(r + COUNT, records.getInt(r + COUNT) + 1);
+		}
+	}
+
+	double average(int index) {
+		long r = record(index);
+		synchronized(lock(index)) {
+			int count = records.getInt(r + COUNT);
+			if(count == 0) return Double.NaN;
+			return records.getLong(r + SUM) / (double) count;
+		}
+	}
+
+	/**
+	 * Score of a student, computed atomically from the aggregates
+	 * 
+	 * @param index	dense index of the student
+	 * @return the score
+	 * @see Student#getScore()
+	 */
+	double score(int index) {
+		long r = record(index);
+		synchronized(lock(index)) {
+			int count = records.getInt(r + COUNT);
+			double average = count == 0 ? Double.NaN : records.getLong(r + SUM) / (double) count;
+			return Student.score(average, count, records.getInt(r + LIVE));
+		}
+	}
+
+	private Object lock(int index) {
+		return locks[index & (STRIPES - 1)];
+	}
+
+	private static long record(int index) {
+		return (long) index << RECORD_BITS;
+	}
+
+	private long putString(String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		long address = arena.allocate(4 + bytes.length);
+		arena.putInt(address, bytes.length);
+		for(int i=0; i<bytes.length; ++i) {
+			arena.putByte(address + 4 + i, bytes[i]);
+		}
+		return address;
+	}
+
+	/**
+	 * Reads a name, checking that it has not been freed meanwhile
+	 * 
+	 * @param field	address of the reference to the name
+	 * @return the name, {@code null} if reclaimed
+	 */
+	private String name(long field) {
+		while(true) {
+			long address = records.getLongAcquire(field);
+			if(address == 0) return null;
+			// the block may have been freed and reused meanwhile: stay within its chunk
+			int length = arena.getInt(address);
+			byte[] bytes = new byte[(int) Math.max(0, Math.min(length, chunkEnd(address) - address - 4))];
+			for(int i=0; i<bytes.length; ++i) {
+				bytes[i] = arena.getByte(address + 4 + i);
+			}
+			VarHandle.acquireFence();
+			if(records.getLong(field) == address) return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package university;
+
+/**
+ * Immutable order-statistic tree of elements identified by a dense index
+ * and sorted by a {@code double} key, the persistent counterpart of {@link RankTree}.
+ *
+ * The tree is a treap with the same priorities as {@link RankTree};
+ * a modified copy shares all the nodes with the original
+ * except the O(log n) nodes on the modified paths.
+ * Elements with the same key are sorted by increasing index.
+ */
+final class PersistentRanking {
+	static final PersistentRanking EMPTY = new PersistentRanking(null);
+
+	private static final class Node {
+		final double key;
+		final int index;
+		final int size;
+		final Node left;
+		final Node right;
+
+		Node(double key, int index, Node left, Node right) {
+			this.key = key;
+			this.index = index;
+			this.left = left;
+			this.right = right;
+			this.size = 1 + sizeOf(left) + sizeOf(right);
+		}
+
+		Node with(Node left, Node right) {
+			return new Node(key, index, left, right);
+		}
+	}
+
+	private final Node root;
+
+	private PersistentRanking(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Number of elements in the tree
+	 *
+	 * @return number of elements
+	 */
+	int size() {
+		return sizeOf(root);
+	}
+
+	/**
+	 * Creates a copy of the tree with an element added
+	 *
+	 * @param index	index of the element, not in the tree
+	 * @param key	sorting key
+	 * @return the new tree
+	 */
+	PersistentRanking with(int index, double key) {
+		return new PersistentRanking(insert(root, key, index));
+	}
+
+	/**
+	 * Creates a copy of the tree without an element
+	 *
+	 * @param index	index of the element
+	 * @param key	sorting key of the element
+	 * @return the new tree
+	 */
+	PersistentRanking without(int index, double key) {
+		return new PersistentRanking(remove(root, key, index));
+	}
+
+	/**
+	 * Position of an element in the sort order
+	 *
+	 * @param index	index of the element
+	 * @param key	sorting key of the element
+	 * @return the number of elements preceding it, or {@code -1} if not in the tree
+	 */
+	int rank(int index, double key) {
+		int rank = 0;
+		Node t = root;
+		while(t != null) {
+			if(t.index == index) return rank + sizeOf(t.left);
+			if(less(key, index, t)) {
+				t = t.left;
+			} else {
+				rank += sizeOf(t.left) + 1;
+				t = t.right;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Retrieves the element at a given position in the sort order
+	 *
+	 * @param rank	position (0-based)
+	 * @return the index of the element or {@code -1} if out of range
+	 */
+	int select(int rank) {
+		if(rank < 0 || rank >= size()) return -1;
+		Node t = root;
+		while(true) {
+			int leftSize = sizeOf(t.left);
+			if(rank < leftSize) {
+				t = t.left;
+			} else if(rank == leftSize) {
+				return t.index;
+			} else {
+				rank -= leftSize + 1;
+				t = t.right;
+			}
+		}
+	}
+
+	private static Node insert(Node t, double key, int index) {
+		if(t == null) return new Node(key, index, null, null);
+		if(RankTree.priority(index) > RankTree.priority(t.index)) {
+			Node[] parts = split(t, key, index);
+			return new Node(key, index, parts[0], parts[1]);
+		}
+		if(less(key, index, t)) {
+			return t.with(insert(t.left, key, index), t.right);
+		}
+		return t.with(t.left, insert(t.right, key, index));
+	}
+
+	private static Node remove(Node t, double key, int index) {
+		if(t == null) return null;
+		if(t.index == index) return merge(t.left, t.right);
+		if(less(key, index, t)) {
+			return t.with(remove(t.left, key, index), t.right);
+		}
+		return t.with(t.left, remove(t.right, key, index));
+	}
+
+	/**
+	 * Splits a tree into the elements preceding a position and the following ones
+	 */
+	private static Node[] split(Node t, double key, int index) {
+		if(t == null) return new Node[2];
+		if(less(key, index, t)) {
+			Node[] parts = split(t.left, key, index);
+			parts[1] = t.with(parts[1], t.right);
+			return parts;
+		}
+		Node[] parts = split(t.right, key, index);
+		parts[0] = t.with(t.left, parts[0]);
+		return parts;
+	}
+
+	private static Node merge(Node a, Node b) {
+		if(a == null) return b;
+		if(b == null) return a;
+		if(RankTree.priority(a.index) > RankTree.priority(b.index)) {
+			return a.with(a.left, merge(a.right, b));
+		}
+		return b.with(merge(a, b.left), b.right);
+	}
+
+	private static boolean less(double key, int index, Node t) {
+		return key < t.key || (key == t.key && index < t.index);
+	}
+
+	private static int sizeOf(Node t) {
+		return t == null ? 0 : t.size;
+	}
+}
@@ -0,0 +1,180 @@
+package university;
+
+/**
+ * Immutable vector of elements identified by a dense index.
+ *
+ * The elements are stored in the leaves of a trie with 32 children per node,
+ * so that a modified copy of the vector shares all the nodes with the
+ * original except the O(log n) nodes on the path to the modified element.
+ * Positions that were never set hold {@code null}.
+ *
+ * Batches of modifications are applied through an {@link Editor},
+ * which copies each node at most once per batch.
+ *
+ * @param <E> type of the elements
+ */
+final class PersistentVector<E> {
+	private static final int BITS = 5;
+	private static final int WIDTH = 1 << BITS;
+	private static final int MASK = WIDTH - 1;
+	private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, 0, new Object[WIDTH + 1]);
+
+	private final int size;
+	private final int shift;
+	private final Object[] root;	// nodes have an extra slot for the editor that created them
+
+	private PersistentVector(int size, int shift, Object[] root) {
+		this.size = size;
+		this.shift = shift;
+		this.root = root;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <E> PersistentVector<E> empty() {
+		return (PersistentVector<E>) EMPTY;
+	}
+
+	/**
+	 * Number of positions, i.e. one more than the highest position set
+	 *
+	 * @return the size of the vector
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Retrieves an element
+	 *
+	 * @param i position of the element
+	 * @return the element, or {@code null} if not set
+	 */
+	E get(int i) {
+		return get(root, shift, size, i);
+	}
+
+	/**
+	 * Creates a copy of the vector with an element replaced
+	 *
+	 * @param i	position of the element
+	 * @param e	new element
+	 * @return the new vector
+	 */
+	PersistentVector<E> set(int i, E e) {
+		Editor<E> editor = edit();
+		editor.set(i, e);
+		return editor.done();
+	}
+
+	/**
+	 * Creates a copy of the vector with an element added at the end
+	 *
+	 * @param e	the element
+	 * @return the new vector
+	 */
+	PersistentVector<E> append(E e) {
+		return set(size, e);
+	}
+
+	/**
+	 * Starts a batch of modifications
+	 *
+	 * @return the editor of a copy of the vector
+	 */
+	Editor<E> edit() {
+		return new Editor<>(this);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> E get(Object[] root, int shift, int size, int i) {
+		if(i < 0 || i >= size) return null;
+		Object[] node = root;
+		for(int level=shift; level>0 && node!=null; level-=BITS) {
+			node = (Object[]) node[(i >>> level) & MASK];
+		}
+		return node == null ? null : (E) node[i & MASK];
+	}
+
+	/**
+	 * Mutable copy of a vector, valid until {@link #done()} is invoked.
+	 *
+	 * Nodes created by the editor are modified in place, the other
+	 * ones are copied the first time they are modified.
+	 *
+	 * @param <E> type of the elements
+	 */
+	static final class Editor<E> {
+		private int size;
+		private int shift;
+		private Object[] root;
+		private Object owner = new Object();
+
+		private Editor(PersistentVector<E> v) {
+			size = v.size;
+			shift = v.shift;
+			root = v.root;
+		}
+
+		int size() {
+			return size;
+		}
+
+		E get(int i) {
+			return PersistentVector.get(root, shift, size, i);
+		}
+
+		/**
+		 * Sets an element, growing the vector if needed
+		 *
+		 * @param i	position of the element
+		 * @param e	new element
+		 */
+		void set(int i, E e) {
+			if(owner == null) throw new IllegalStateException("Editing already completed");
+			if(i < 0) throw new IndexOutOfBoundsException(i);
+			while(shift + BITS < Integer.SIZE && (i >>> (shift + BITS)) != 0) {
+				Object[] r = node(null);
+				r[0] = root;
+				root = r;
+				shift += BITS;
+			}
+			root = set(root, shift, i, e);
+			size = Math.max(size, i + 1);
+		}
+
+		void append(E e) {
+			set(size, e);
+		}
+
+		/**
+		 * Completes the batch of modifications
+		 *
+		 * @return the modified vector
+		 */
+		PersistentVector<E> done() {
+			owner = null;	// nodes created so far become immutable
+			return new PersistentVector<>(size, shift, root);
+		}
+
+		private Object[] set(Object[] node, int level, int i, Object e) {
+			Object[] n = node(node);
+			if(level == 0) {
+				n[i & MASK] = e;
+			} else {
+				int k = (i >>> level) & MASK;
+				n[k] = set((Object[]) n[k], level - BITS, i, e);
+			}
+			return n;
+		}
+
+		/**
+		 * Returns a node that can be modified in place
+		 */
+		private Object[] node(Object[] node) {
+			if(node != null && node[WIDTH] == owner) return node;
+			Object[] n = node == null ? new Object[WIDTH + 1] : node.clone();
+			n[WIDTH] = owner;
+			return n;
+		}
+	}
+}
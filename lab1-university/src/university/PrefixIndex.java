@@ -0,0 +1,205 @@
+package university;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Case-insensitive index of the words of names and titles,
+ * for searching elements by the prefix of a word.
+ * 
+ * Each distinct lower-case word is stored once and shared by all the 
+ * elements containing it; the elements are stored as compact arrays 
+ * of dense indexes (postings).
+ * 
+ * Words added in bulk are kept in sorted arrays, which are rebuilt by 
+ * merging at each bulk insertion; words added one at a time are kept 
+ * in a concurrent sorted map. Searches merge the two sorted sequences.
+ * 
+ * Instances are thread-safe; searches never lock.
+ */
+class PrefixIndex {
+	private final ConcurrentSkipListMap<String, Postings> recent = new ConcurrentSkipListMap<>();
+	private volatile Sorted sorted = new Sorted(new String[0], new Postings[0]);
+
+	/**
+	 * Dense indexes of the elements containing a word
+	 */
+	private static final class Postings {
+		private static final int[] EMPTY = new int[0];
+		private volatile int[] items = EMPTY;
+		private volatile int size;
+
+		synchronized void add(int index) {
+			int[] ary = items;
+			int n = size;
+			if(n > 0 && ary[n-1] == index) return;	// the word is repeated in the element
+			if(n == ary.length) {
+				ary = Arrays.copyOf(ary, Math.max(2, n * 2));
+			}
+			ary[n] = index;
+			items = ary;
+			size = n + 1; // publishes the index to the readers
+		}
+	}
+
+	/**
+	 * Words added in bulk, in increasing order, with their postings
+	 */
+	private static final class Sorted {
+		final String[] words;
+		final Postings[] postings;
+
+		Sorted(String[] words, Postings[] postings) {
+			this.words = words;
+			this.postings = postings;
+		}
+
+		Postings get(String word) {
+			int i = Arrays.binarySearch(words, word);
+			return i < 0 ? null : postings[i];
+		}
+	}
+
+	/**
+	 * Adds the words of a text to the index
+	 * 
+	 * @param index	dense index of the element
+	 * @param text	name or title of the element
+	 */
+	void add(int index, String text) {
+		forEachWord(text, word -> {
+			Postings p = find(sorted, word);
+			if(p == null) p = recent.computeIfAbsent(word, w -> new Postings());
+			p.add(index);
+		});
+	}
+
+	/**
+	 * Adds the words of the texts of many elements to the index
+	 * 
+	 * @param indexes	dense indexes of the elements
+	 * @param texts		for each kind of text (e.g. first and last name),
+	 * 					the texts of the elements in the same order as the indexes
+	 */
+	synchronized void addAll(int[] indexes, String[]... texts) {
+		Sorted current = sorted;
+		Map<String, Postings> added = new HashMap<>();
+		for(int k=0; k<indexes.length; ++k) {
+			int index = indexes[k];
+			for(String[] t : texts) {
+				forEachWord(t[k], word -> {
+					Postings p = find(current, word);
+					if(p == null) p = added.computeIfAbsent(word, w -> new Postings());
+					p.add(index);
+				});
+			}
+		}
+		if(added.isEmpty()) return;
+
+		String[] words = added.keySet().toArray(new String[0]);
+		Arrays.parallelSort(words);
+		int n = current.words.length;
+		String[] mergedWords = new String[n + words.length];
+		Postings[] mergedPostings = new Postings[mergedWords.length];
+		int i = 0;
+		int j = 0;
+		for(int m=0; m<mergedWords.length; ++m) {
+			if(j == words.length || (i < n && current.words[i].compareTo(words[j]) < 0)) {
+				mergedWords[m] = current.words[i];
+				mergedPostings[m] = current.postings[i++];
+			} else {
+				mergedWords[m] = words[j];
+				mergedPostings[m] = added.get(words[j++]);
+			}
+		}
+		sorted = new Sorted(mergedWords, mergedPostings);
+	}
+
+	private Postings find(Sorted s, String word) {
+		Postings p = s.get(word);
+		return p != null ? p : recent.get(word);
+	}
+
+	/**
+	 * Searches the elements having a word starting with the given prefix, ignoring case.
+	 * 
+	 * The elements are sorted by the matching word, then in order of insertion.
+	 * 
+	 * @param prefix	prefix of a word
+	 * @param n			maximum number of elements
+	 * @return dense indexes of the elements, without duplicates
+	 */
+	int[] search(String prefix, int n) {
+		return search(prefix, n, index -> true);
+	}
+
+	/**
+	 * Searches the elements having a word starting with the given prefix, ignoring case,
+	 * skipping those that no longer exist (the index never removes elements).
+	 * 
+	 * @param prefix	prefix of a word
+	 * @param n			maximum number of elements
+	 * @param exists	tells whether an element exists
+	 * @return dense indexes of the existing elements, without duplicates
+	 */
+	int[] search(String prefix, int n, IntPredicate exists) {
+		String p = normalize(prefix).trim();
+		int[] result = new int[Math.max(0, n)];
+		int found = 0;
+		Set<Integer> seen = new HashSet<>();
+
+		Sorted s = sorted;
+		int i = Arrays.binarySearch(s.words, p);
+		if(i < 0) i = -i - 1;
+		Iterator<Map.Entry<String, Postings>> it = recent.tailMap(p).entrySet().iterator();
+		Map.Entry<String, Postings> e = it.hasNext() ? it.next() : null;
+		while(found < result.length) {
+			String sortedWord = i < s.words.length && s.words[i].startsWith(p) ? s.words[i] : null;
+			String recentWord = e != null && e.getKey().startsWith(p) ? e.getKey() : null;
+			Postings postings;
+			if(sortedWord == null && recentWord == null) {
+				break;
+			} else if(recentWord == null || (sortedWord != null && sortedWord.compareTo(recentWord) <= 0)) {
+				postings = s.postings[i++];
+			} else {
+				postings = e.getValue();
+				e = it.hasNext() ? it.next() : null;
+			}
+			int size = postings.size; // read first: the array holds at least size items
+			int[] items = postings.items;
+			for(int k=0; k<size && found<result.length; ++k) {
+				if(seen.add(items[k]) && exists.test(items[k])) result[found++] = items[k];
+			}
+		}
+		return found == result.length ? result : Arrays.copyOf(result, found);
+	}
+
+	/**
+	 * Splits a text in lower-case words made of letters and digits
+	 */
+	private static void forEachWord(String text, Consumer<String> action) {
+		String lower = normalize(text);
+		int start = -1;
+		for(int i=0; i<=lower.length(); ++i) {
+			boolean letter = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+			if(letter && start < 0) {
+				start = i;
+			} else if(! letter && start >= 0) {
+				action.accept(lower.substring(start, i));
+				start = -1;
+			}
+		}
+	}
+
+	private static String normalize(String text) {
+		return text.toLowerCase(Locale.ROOT);
+	}
+}
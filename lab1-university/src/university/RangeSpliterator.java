@@ -0,0 +1,65 @@
+package university;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+
+/**
+ * Lazy, ordered traversal of the elements of a {@link RankTree}
+ * whose key is in a given range.
+ * 
+ * Elements are retrieved in small batches while holding the lock that
+ * guards the tree, so that the tree can be modified between two batches:
+ * each batch restarts after the last element retrieved.
+ * The traversal is weakly consistent: an element whose key changes
+ * during the traversal may be missed or reported twice.
+ */
+class RangeSpliterator extends Spliterators.AbstractIntSpliterator {
+	private static final int BATCH = 64;
+
+	private final Object lock;
+	private final RankTree tree;
+	private final double max;
+	private final int[] batch = new int[BATCH];
+	private int size;
+	private int next;
+	private double lastKey;
+	private int lastNode = -1;
+	private boolean finished;
+
+	/**
+	 * @param lock	the object guarding the tree
+	 * @param tree	the tree
+	 * @param min	minimum key (inclusive)
+	 * @param max	maximum key (inclusive)
+	 */
+	RangeSpliterator(Object lock, RankTree tree, double min, double max) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED);
+		this.lock = lock;
+		this.tree = tree;
+		this.lastKey = min;
+		this.max = max;
+		this.finished = min > max;
+	}
+
+	@Override
+	public boolean tryAdvance(IntConsumer action) {
+		if(next == size && ! fill()) return false;
+		action.accept(batch[next++]);
+		return true;
+	}
+
+	private boolean fill() {
+		if(finished) return false;
+		synchronized(lock) {
+			size = tree.successors(lastKey, lastNode, max, batch);
+			if(size > 0) {
+				lastNode = batch[size-1];
+				lastKey = tree.key(lastNode);
+			}
+		}
+		next = 0;
+		finished = size < BATCH;
+		return size > 0;
+	}
+}
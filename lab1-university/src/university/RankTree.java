@@ -0,0 +1,285 @@
+package university;
+
+import java.util.Arrays;
+
+/**
+ * Order-statistic tree of elements identified by a dense index
+ * and sorted by a {@code double} key.
+ * 
+ * The tree is a treap whose nodes are stored in parallel arrays
+ * indexed by the element index, so no object is allocated per element.
+ * Elements with the same key are sorted by increasing index.
+ * 
+ * Insertion, removal, rank and selection take O(log n) expected time,
+ * retrieving k consecutive elements takes O(log n + k).
+ */
+class RankTree {
+	private static final int NIL = -1;
+
+	private double[] keys = new double[0];
+	private int[] left = new int[0];
+	private int[] right = new int[0];
+	private int[] size = new int[0];	// 0 means the element is not in the tree
+	private int root = NIL;
+
+	// results of split()
+	private int splitLeft;
+	private int splitRight;
+
+	/**
+	 * Inserts an element or updates its key if already present
+	 * 
+	 * @param node	index of the element
+	 * @param key	sorting key
+	 */
+	void put(int node, double key) {
+		if(contains(node)) {
+			root = remove(root, node);
+		}
+		ensureCapacity(node);
+		keys[node] = key;
+		left[node] = NIL;
+		right[node] = NIL;
+		size[node] = 1;
+		root = insert(root, node);
+	}
+
+	/**
+	 * Removes an element from the tree, if present
+	 * 
+	 * @param node	index of the element
+	 */
+	void remove(int node) {
+		if(! contains(node)) return;
+		root = remove(root, node);
+		size[node] = 0;
+	}
+
+	/**
+	 * Checks whether an element is in the tree
+	 * 
+	 * @param node	index of the element
+	 * @return {@code true} if the element is in the tree
+	 */
+	boolean contains(int node) {
+		return node >= 0 && node < size.length && size[node] > 0;
+	}
+
+	/**
+	 * Number of elements in the tree
+	 * 
+	 * @return number of elements
+	 */
+	int size() {
+		return sizeOf(root);
+	}
+
+	/**
+	 * Position of an element in the sort order
+	 * 
+	 * @param node	index of the element
+	 * @return the number of elements preceding it or {@code -1} if not in the tree
+	 */
+	int rank(int node) {
+		if(! contains(node)) return -1;
+		int rank = 0;
+		int t = root;
+		while(t != node) {
+			if(less(node, t)) {
+				t = left[t];
+			} else {
+				rank += sizeOf(left[t]) + 1;
+				t = right[t];
+			}
+		}
+		return rank + sizeOf(left[node]);
+	}
+
+	/**
+	 * Retrieves the element at a given position in the sort order
+	 * 
+	 * @param rank	position (0-based)
+	 * @return the index of the element or {@code -1} if out of range
+	 */
+	int select(int rank) {
+		if(rank < 0 || rank >= size()) return NIL;
+		int t = root;
+		while(true) {
+			int leftSize = sizeOf(left[t]);
+			if(rank < leftSize) {
+				t = left[t];
+			} else if(rank == leftSize) {
+				return t;
+			} else {
+				rank -= leftSize + 1;
+				t = right[t];
+			}
+		}
+	}
+
+	/**
+	 * Key of an element
+	 * 
+	 * @param node	index of the element, it must be in the tree
+	 * @return the key
+	 */
+	double key(int node) {
+		return keys[node];
+	}
+
+	/**
+	 * Counts the elements whose key is lower than a given key
+	 * 
+	 * @param key		the key
+	 * @param inclusive	if {@code true} elements with the same key are also counted
+	 * @return number of elements
+	 */
+	int countBelow(double key, boolean inclusive) {
+		int count = 0;
+		int t = root;
+		while(t != NIL) {
+			if(keys[t] < key || (inclusive && keys[t] == key)) {
+				count += sizeOf(left[t]) + 1;
+				t = right[t];
+			} else {
+				t = left[t];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Retrieves, in order, the elements following a position in the sort order,
+	 * up to a maximum key.
+	 * 
+	 * The position is given as a key and an index, that need not be in the tree:
+	 * with index {@code -1} the retrieval starts at the first element whose key
+	 * is at least the given one.
+	 * 
+	 * @param key	key of the position
+	 * @param node	index of the position
+	 * @param max	maximum key of the elements (inclusive)
+	 * @param out	destination of the indexes of the elements
+	 * @return number of elements written to {@code out}
+	 */
+	int successors(double key, int node, double max, int[] out) {
+		int[] stack = new int[64];
+		int depth = 0;
+		int t = root;
+		while(t != NIL) {		// path to the first element after the position
+			if(keys[t] > key || (keys[t] == key && t > node)) {
+				if(depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+				stack[depth++] = t;
+				t = left[t];
+			} else {
+				t = right[t];
+			}
+		}
+		int n = 0;
+		while(depth > 0 && n < out.length) {	// in-order visit
+			t = stack[--depth];
+			if(keys[t] > max) break;
+			out[n++] = t;
+			for(t = right[t]; t != NIL; t = left[t]) {
+				if(depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+				stack[depth++] = t;
+			}
+		}
+		return n;
+	}
+
+	private int insert(int t, int node) {
+		if(t == NIL) return node;
+		if(priority(node) > priority(t)) {
+			split(t, node);
+			left[node] = splitLeft;
+			right[node] = splitRight;
+			update(node);
+			return node;
+		}
+		if(less(node, t)) {
+			left[t] = insert(left[t], node);
+		} else {
+			right[t] = insert(right[t], node);
+		}
+		update(t);
+		return t;
+	}
+
+	private int remove(int t, int node) {
+		if(t == node) return merge(left[t], right[t]);
+		if(less(node, t)) {
+			left[t] = remove(left[t], node);
+		} else {
+			right[t] = remove(right[t], node);
+		}
+		update(t);
+		return t;
+	}
+
+	/**
+	 * Splits a subtree in the elements preceding a node ({@link #splitLeft})
+	 * and the ones following it ({@link #splitRight})
+	 */
+	private void split(int t, int node) {
+		if(t == NIL) {
+			splitLeft = NIL;
+			splitRight = NIL;
+		} else if(less(t, node)) {
+			split(right[t], node);
+			right[t] = splitLeft;
+			update(t);
+			splitLeft = t;
+		} else {
+			split(left[t], node);
+			left[t] = splitRight;
+			update(t);
+			splitRight = t;
+		}
+	}
+
+	private int merge(int a, int b) {
+		if(a == NIL) return b;
+		if(b == NIL) return a;
+		if(priority(a) > priority(b)) {
+			right[a] = merge(right[a], b);
+			update(a);
+			return a;
+		}
+		left[b] = merge(a, left[b]);
+		update(b);
+		return b;
+	}
+
+	private boolean less(int a, int b) {
+		return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+	}
+
+	private void update(int t) {
+		size[t] = 1 + sizeOf(left[t]) + sizeOf(right[t]);
+	}
+
+	private int sizeOf(int t) {
+		return t == NIL ? 0 : size[t];
+	}
+
+	static int priority(int node) {
+		// pseudo-random priority derived from the index (MurmurHash3 finalizer)
+		int h = node;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private void ensureCapacity(int node) {
+		if(node < size.length) return;
+		int capacity = Math.max(node + 1, Math.max(16, size.length * 2));
+		keys = Arrays.copyOf(keys, capacity);
+		left = Arrays.copyOf(left, capacity);
+		right = Arrays.copyOf(right, capacity);
+		size = Arrays.copyOf(size, capacity);
+	}
+}
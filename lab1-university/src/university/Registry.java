@@ -0,0 +1,60 @@
+package university;
+
+/**
+ * Storage of the students and courses of a university, 
+ * addressed by dense index (e.g. {@code id - INITIAL_ID}).
+ * 
+ * Implementations are thread-safe and lookups never lock.
+ */
+interface Registry {
+
+	/**
+	 * Retrieves a student
+	 * 
+	 * @param index	dense index of the student
+	 * @return the student, or {@code null} if missing
+	 */
+	Student student(int index);
+
+	/**
+	 * Retrieves a course
+	 * 
+	 * @param index	dense index of the course
+	 * @return the course, or {@code null} if missing
+	 */
+	Course course(int index);
+
+	/**
+	 * Stores a new student
+	 * 
+	 * @param id	ID of the student
+	 * @param first	first name
+	 * @param last	last name
+	 * @return the student
+	 */
+	Student addStudent(int id, String first, String last);
+
+	/**
+	 * Stores a new course
+	 * 
+	 * @param code		code of the course
+	 * @param title		title
+	 * @param teacher	name of the teacher
+	 * @return the course
+	 */
+	Course addCourse(int code, String title, String teacher);
+
+	/**
+	 * Removes a student, whose index is not reused
+	 * 
+	 * @param index	dense index of the student
+	 */
+	void removeStudent(int index);
+
+	/**
+	 * Releases the memory still held by the removed students.
+	 * 
+	 * Views of a removed student obtained before may no longer return its names.
+	 */
+	void reclaim();
+}
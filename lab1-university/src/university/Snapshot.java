@@ -0,0 +1,245 @@
+package university;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * Compact binary image of the state of a {@link University}.
+ * 
+ * The snapshot contains the students and courses (in order of ID and code,
+ * including the IDs of the expelled students, which are not reused),
+ * the registrations of each student, and the exams as three columns.
+ * Aggregates, indexes and rankings are not stored: they are rebuilt on load.
+ * 
+ * The snapshot also records the generation of the first write-ahead log
+ * that must be replayed on top of it, and the number of exam rows it covers.
+ */
+final class Snapshot {
+	private static final int MAGIC = 0x554E4956;	// "UNIV"
+	private static final int VERSION = 2;
+
+	final University university;
+	final int walGeneration;
+	final int examRows;
+
+	private Snapshot(University university, int walGeneration, int examRows) {
+		this.university = university;
+		this.walGeneration = walGeneration;
+		this.examRows = examRows;
+	}
+
+	/**
+	 * Numbers of students, courses and exam rows included in a snapshot,
+	 * which must be taken while no operation is in progress
+	 */
+	static final class Extent {
+		final int students;
+		final int courses;
+		final int exams;
+
+		Extent(University u) {
+			students = u.studentSlots();
+			courses = u.courseSlots();
+			exams = u.examTable().size();
+		}
+	}
+
+	/**
+	 * Writes the snapshot of a university.
+	 * 
+	 * The university may be modified meanwhile: only the students, courses
+	 * and exams within the extent are written, and the registrations
+	 * to courses outside of it are left to the logs.
+	 * The file is first written under a temporary name, forced to the
+	 * storage device, and then atomically renamed.
+	 * 
+	 * @param u				the university
+	 * @param file			path of the snapshot
+	 * @param walGeneration	generation of the first log to be replayed after the snapshot
+	 * @param extent		the elements to be written
+	 * @throws IOException in case of write errors
+	 */
+	static void write(University u, Path file, int walGeneration, Extent extent) throws IOException {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(walGeneration);
+			writeString(out, u.getName());
+			writeString(out, u.getRector());
+
+			int numCourses = extent.courses;
+			out.writeInt(numCourses);
+			for(int i=0; i<numCourses; ++i) {
+				Course c = u.courseAt(i);
+				out.writeBoolean(c != null);
+				if(c == null) continue;
+				writeString(out, c.getTitle());
+				writeString(out, c.getTeacher());
+			}
+
+			int numStudents = extent.students;
+			out.writeInt(numStudents);
+			for(int i=0; i<numStudents; ++i) {
+				Student s = u.studentAt(i);
+				out.writeBoolean(s != null);
+				if(s == null) continue;
+				writeString(out, s.getFirst());
+				writeString(out, s.getLast());
+				int[] courses = s.courseStream()
+						.mapToInt(c -> c.getCode() - University.INITIAL_CODE)
+						.filter(c -> c < numCourses)
+						.toArray();
+				out.writeInt(courses.length);
+				for(int c : courses) {
+					out.writeInt(c);
+				}
+			}
+
+			// every row within the extent refers to an included student and course:
+			// the check guards the file against an extent taken at the wrong time
+			ExamTable.Columns cols = u.examTable().columns();
+			int n = extent.exams;
+			int[] rows = IntStream.range(0, n)
+					.filter(i -> cols.student[i] < numStudents && cols.course[i] < numCourses)
+					.toArray();
+			out.writeInt(n);
+			out.writeInt(rows.length);
+			for(int i : rows) out.writeInt(cols.student[i]);
+			for(int i : rows) out.writeInt(cols.course[i]);
+			for(int i : rows) out.writeByte(cols.grade[i]);
+		}
+		try(FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+			ch.force(true);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads a snapshot, memory-mapping the file.
+	 * 
+	 * @param file path of the snapshot
+	 * @return the snapshot with the restored university
+	 * @throws IOException in case of read errors or invalid file
+	 */
+	static Snapshot load(Path file) throws IOException {
+		try(MappedInput in = new MappedInput(file)) {
+			if(in.getInt() != MAGIC) throw new IOException("Not a university snapshot: " + file);
+			int version = in.getInt();
+			if(version != 1 && version != VERSION) throw new IOException("Unsupported snapshot version: " + file);
+			int walGeneration = in.getInt();
+			University u = new University(in.getString());
+			u.restoreRector(in.getString());
+
+			int numCourses = in.getInt();
+			for(int i=0; i<numCourses; ++i) {
+				if(in.get() == 0) continue;
+				u.restoreCourse(University.INITIAL_CODE + i, in.getString(), in.getString());
+			}
+
+			int numStudents = in.getInt();
+			u.restoreSlots(numStudents, numCourses);
+			for(int i=0; i<numStudents; ++i) {
+				if(in.get() == 0) continue;
+				int id = University.INITIAL_ID + i;
+				u.restoreStudent(id, in.getString(), in.getString());
+				int k = in.getInt();
+				for(int j=0; j<k; ++j) {
+					u.restoreRegistration(id, University.INITIAL_CODE + in.getInt());
+				}
+			}
+
+			int examRows = in.getInt();
+			int n = version == 1 ? examRows : in.getInt();	// version 1 wrote all the rows
+			int[] student = new int[n];
+			int[] course = new int[n];
+			int[] grade = new int[n];
+			in.getInts(student);
+			in.getInts(course);
+			for(int i=0; i<n; ++i) grade[i] = in.get();
+			u.restoreExams(student, course, grade);
+
+			return new Snapshot(u, walGeneration, examRows);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	/**
+	 * Sequential reader of a file mapped in memory, one window at a time,
+	 * so that files larger than 2GB can be read as well.
+	 */
+	private static final class MappedInput implements AutoCloseable {
+		private static final long WINDOW = 1L << 28;
+
+		private final FileChannel channel;
+		private final long size;
+		private long base;
+		private MappedByteBuffer buffer;
+
+		MappedInput(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			size = channel.size();
+			map(0);
+		}
+
+		private void map(long position) throws IOException {
+			base = position;
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(WINDOW, size - base));
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if(buffer.remaining() < bytes) {
+				map(base + buffer.position());
+				if(buffer.remaining() < bytes) throw new IOException("Truncated snapshot");
+			}
+		}
+
+		byte get() throws IOException {
+			ensure(1);
+			return buffer.get();
+		}
+
+		int getInt() throws IOException {
+			ensure(4);
+			return buffer.getInt();
+		}
+
+		String getString() throws IOException {
+			int length = getInt();
+			ensure(length);
+			byte[] b = new byte[length];
+			buffer.get(b);
+			return new String(b, StandardCharsets.UTF_8);
+		}
+
+		void getInts(int[] dst) throws IOException {
+			int off = 0;
+			while(off < dst.length) {
+				ensure(4);
+				int k = Math.min(dst.length - off, buffer.remaining() / 4);
+				buffer.asIntBuffer().get(dst, off, k);
+				buffer.position(buffer.position() + 4 * k);
+				off += k;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
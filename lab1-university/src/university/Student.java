@@ -1,89 +1,150 @@
 package university;
 
-class Student {
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Represents a student enrolled in the university.
+ * 
+ * The data of the student are kept either in a Java object ({@link HeapStudent})
+ * or in off-heap memory, accessed through a flyweight view ({@link OffHeapStudent}).
+ * 
+ * The courses of the study plan occupy slots of a list: a withdrawn course 
+ * leaves its slot free, to be reused by a later registration, until the list
+ * is {@link #compact compacted}.
+ */
+abstract class Student {
 	
 	private static final String SEPARATOR = " ";
-	private final int ID;
-	private final String first;
-	private final String last;
-	
-	private Course[] courses;
-	private Exam[] exams;
-	private int nextExam=0;
-	
-	public Student(int id, String first, String last) {
-		this.ID = id;
-		this.first = first;
-		this.last = last;
-		courses = new Course[University.MAX_COURSES_PER_STUDENT];
-		exams = new Exam[University.MAX_COURSES_PER_STUDENT];
-	}
-	
+
+	public abstract int getId();
+
+	public abstract String getFirst();
+
+	public abstract String getLast();
+
+	/**
+	 * Adds a course to the study plan
+	 * 
+	 * @param c the course
+	 * @return the slot of the course
+	 */
+	abstract int enroll(Course c);
+
+	/**
+	 * Removes a course from the study plan, leaving its slot free
+	 * 
+	 * @param slot the slot of the course
+	 */
+	abstract void withdraw(int slot);
+
+	/**
+	 * Drops the free slots of the study plan, moving the following courses
+	 * 
+	 * @param moved notified of the new slot of each course moved
+	 */
+	abstract void compact(ObjIntConsumer<Course> moved);
+
+
+	/**
+	 * Number of courses in the study plan
+	 * 
+	 * @return number of courses
+	 */
+	abstract int enrolledCourses();
+
+	/**
+	 * Courses of the study plan by slot, in order of registration unless slots were reused.
+	 * 
+	 * The list is a consistent view of the slots when the method is invoked:
+	 * courses registered or withdrawn later may or may not be seen, but
+	 * compactions never move the courses of the list.
+	 * 
+	 * @return the courses, {@code null} in the free slots
+	 */
+	abstract List<Course> courseList();
+
+	abstract void addGrade(int grade);
+
+	abstract double average();
+
+	/**
+	 * Score of the student for the awards:
+	 * the average grade plus a bonus based on the number of exams taken
+	 * 
+	 * @return the score or {@code NaN} if no exam has been taken
+	 */
+	public abstract double getScore();
+
 	public String toString(){
-		return ID + SEPARATOR + first + SEPARATOR + last;
-		// TODO: probably to be optimized with StringBuffer
-//		return (new StringBuffer()).append(ID).append(SEPARATOR).
-//				append(first).append(SEPARATOR).
-//				append(last).toString();
+		return getId() + SEPARATOR + getFirst() + SEPARATOR + getLast();
 	}
 	
-	public void enroll(Course c){
-		for(int i=0; i< courses.length; ++i){
-			if( courses[i] == null){
-				courses[i] = c;
-				break;
-			}
-		}
+	/**
+	 * Writes the description of the student, formatted as {@link #toString()}
+	 * 
+	 * @param out destination
+	 * @return the destination
+	 * @throws IOException in case of write errors
+	 */
+	Appendable appendTo(Appendable out) throws IOException {
+		return out.append(String.valueOf(getId())).append(SEPARATOR).append(getFirst()).append(SEPARATOR).append(getLast());
 	}
 
 	public String courses() {
 		StringBuilder result = new StringBuilder();
-		for(Course c : courses){
-			if(c!=null){
-				result.append(c).append("\n");
-			}
+		for(Course c : courseList()){
+			if(c != null) result.append(c).append("\n");
 		}
 		return result.toString();
 	}
 	
-	void addExam(Exam e) {
-		exams[nextExam++] = e;
-	}
-	
-	public static boolean isValid(double x) {
-		return ! Double.isNaN(x);
-	}
-	
-	double average() {
-		if(nextExam==0) return Double.NaN;
-		double average = 0.0;
-		for(Exam e : exams) {
-			if(e==null) break;
-			average += e.getGrade();
+	/**
+	 * Writes a page of the study plan, one course per line
+	 * 
+	 * @param offset	position of the first course
+	 * @param limit		maximum number of courses
+	 * @param out		destination of the list
+	 * @return number of courses written
+	 * @throws IOException in case of write errors
+	 */
+	int courses(int offset, int limit, Appendable out) throws IOException {
+		List<Course> list = courseList();
+		int skipped = 0;
+		int written = 0;
+		for(int i=0; i<list.size() && written<limit; ++i){
+			Course c = list.get(i);
+			if(c == null) continue;
+			if(skipped++ < offset) continue;
+			c.appendTo(out).append('\n');
+			written++;
 		}
-		return average/nextExam;
+		return written;
 	}
 
-	public int getId() {
-		return ID;
-	}
-	
-	public double getScore() {
-		double avg = average();
-		if(! isValid(avg)) return avg;
-		int taken = nextExam;
-		int enrolled = 0;
-		while(courses[enrolled]!=null) {enrolled++;}
-		
-		return avg + 10*taken/(double)enrolled;
+	/**
+	 * Lazy stream of the courses the student registered to so far
+	 * 
+	 * @return stream of courses
+	 */
+	Stream<Course> courseStream() {
+		return courseList().stream().filter(Objects::nonNull);
 	}
 
-	public String getLast() {
-		return last;
+	public static boolean isValid(double x) {
+		return ! Double.isNaN(x);
 	}
 
-	public String getFirst() {
-		return first;
+	/**
+	 * Computes the score from the aggregates of the student
+	 * 
+	 * @see #getScore()
+	 */
+	static double score(double average, int taken, int enrolled) {
+		if(! isValid(average)) return average;
+		return average + 10*taken/(double)enrolled;
 	}
-
 }
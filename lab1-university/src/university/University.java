@@ -1,33 +1,68 @@
 package university;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * This class represents a university education system.
  * 
  * It manages students and courses.
+ * 
+ * The class is thread-safe: IDs and codes are allocated atomically,
+ * registrations, withdrawals and exams lock only the student and course involved,
+ * while the methods {@link #student}, {@link #course}, {@link #studyPlan}
+ * and {@link #listAttendees} never lock.
+ * 
+ * IDs and codes are never reused, not even those of expelled students.
+ * 
+ * A university can be made persistent by means of {@link #open(Path, String)}:
+ * its state is then recorded in a directory and restored when it is opened again.
  *
  */
-public class University {
+public class University implements Closeable {
 	// System-level parameters (constants)
-	
-	public static final int MAX_STUDENTS = 1000;
-	public static final int MAX_COURSES = 50;
-	public static final int MAX_COURSES_PER_STUDENT = 25;
-	public static final int MAX_STUDENTS_PER_COURSE = 100;
 
 	public final static int INITIAL_ID = 10000;
 	public final static int INITIAL_CODE = 10;
+	public final static int MAX_GRADE = 30;
+	public final static int PASSING_GRADE = 18;
+	private final static int LOCK_STRIPES = 64;
+	private final static int CHANGES_CAPACITY = 1 << 16;
 	
 	// Attributes
 	private final String name;
-	private String rector;
-	
-	private Student[] students; // = null
-	private int nextId = INITIAL_ID;
+	private volatile String rector;
 	
-	private Course[] offers;
-	private int nextCode = INITIAL_CODE;
+	private final Registry registry;	// students and courses
+	private final AtomicInteger nextId = new AtomicInteger(INITIAL_ID);
+	private final AtomicInteger nextCode = new AtomicInteger(INITIAL_CODE);
+
+	private final EnrollmentIndex enrollments = new EnrollmentIndex();	// with the slots in the lists
+	private final EnrollmentIndex examined = new EnrollmentIndex();		// exams taken, that prevent withdrawals
+	private final Object[] studentLocks = new Object[LOCK_STRIPES];		// serialize the operations on a student
+	private final Leaderboard leaderboard = new Leaderboard();
+	private final AverageIndex averages = new AverageIndex();
+	private final ExamTable exams = new ExamTable();
+	private final PrefixIndex studentNames = new PrefixIndex();
+	private final PrefixIndex courseNames = new PrefixIndex();
+	private volatile UniversityStore store;	// null if not persistent
+	private final Epochs epochs = new Epochs();
+	private final ChangeStream changes = new ChangeStream(CHANGES_CAPACITY, ForkJoinPool.commonPool());
 
 
 // R1
@@ -36,11 +71,29 @@ public class University {
 	 * @param name name of the university
 	 */
 	public University(String name){
+		this(name, new HeapRegistry());
+	}
+
+	private University(String name, Registry registry){
 		this.name = name;
 		this.rector = "<none>";
-		
-		students = new Student[MAX_STUDENTS];
-		offers = new Course[MAX_COURSES];
+		this.registry = registry;
+		for(int i=0; i<LOCK_STRIPES; ++i) studentLocks[i] = new Object();
+	}
+
+	/**
+	 * Creates a university that keeps the data of students and courses 
+	 * outside the Java heap.
+	 * 
+	 * Students and courses are stored as fixed-width records in direct memory,
+	 * so that very large populations do not increase the work of the garbage
+	 * collector; the information about them is decoded at each access.
+	 * 
+	 * @param name name of the university
+	 * @return the new university
+	 */
+	public static University offHeap(String name){
+		return new University(name, new OffHeapRegistry());
 	}
 	
 	/**
@@ -60,6 +113,7 @@ public class University {
 	 */
 	public void setRector(String first, String last){
 		this.rector = first + " " + last;
+		if(store != null) store.rector(rector);
 	}
 	
 	/**
@@ -81,14 +135,87 @@ public class University {
 	 * @return unique ID of the newly enrolled student
 	 */
 	public int enroll(String first, String last){
-		Student s = new Student( nextId , first, last);
-		students[ nextId - INITIAL_ID ] = s;
-		
-		logger.info("New student enrolled: " + nextId + ", " + first + " " + last ); // R7
+		long stamp = epochs.enter();
+		try {
+			int id = nextId.getAndIncrement();
+			// recorded before the student is visible, so that no operation on it precedes the enrollment
+			if(store != null) store.enrolled(id, first, last);
+			epochs.enrolled(id, first, last);
+			changes.enrolled(id, first, last);
 
-		return nextId++;
+			Student s = registry.addStudent(id, first, last);
+			indexStudent(s);
+			audit.enrolled(id, first, last); // R7
+
+			return id;
+		} finally {
+			epochs.exit(stamp);
+		}
 	}
 	
+	/**
+	 * Loads students, courses, registrations and exams from CSV files.
+	 * 
+	 * Each line of the files is a record whose first field is its type:
+	 * <ul>
+	 * <li>{@code S,ID,FIRST,LAST} a student, with the given ID</li>
+	 * <li>{@code C,CODE,TITLE,TEACHER} a course, with the given code</li>
+	 * <li>{@code R,STUDENT_ID,COURSE_CODE} a registration</li>
+	 * <li>{@code E,STUDENT_ID,COURSE_CODE,GRADE} an exam</li>
+	 * </ul>
+	 * Empty lines and lines starting with {@code #} are ignored.
+	 * Records can refer to students and courses defined anywhere in the files.
+	 * 
+	 * The files are parsed in parallel and the records are inserted without
+	 * logging each operation; invalid records (e.g. duplicate IDs, unknown
+	 * students or courses, or registrations and exams that {@link #register}
+	 * and {@link #exam} would reject) are discarded and notified to the listener.
+	 * IDs and codes may leave gaps, but they may exceed the ones already in use
+	 * by at most four times the number of students or courses in the files
+	 * (or 65536 if more): the records past that range are discarded too.
+	 * Student IDs must follow the ones already assigned, since the IDs of the
+	 * expelled students are not reused: the gaps left by a previous load cannot be filled.
+	 * New students and courses are assigned IDs and codes following the loaded ones.
+	 * 
+	 * All the other operations modifying the university wait until the load completes.
+	 * 
+	 * @param listener	listener notified of the discarded lines
+	 * @param files		the CSV files
+	 * @return the number of records loaded
+	 * @throws IOException in case of read errors
+	 */
+	public long bulkLoad(ErrorListener listener, Path... files) throws IOException {
+		long loaded;
+		try {
+			// explicit IDs must not collide with the ones assigned by concurrent enrollments
+			loaded = epochs.exclusive(() -> {
+				try {
+					return BulkLoader.load(this, listener, files);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+		audit.log(() -> "Loaded " + loaded + " records in university " + name);
+		if(store != null) store.checkpoint();	// the records have not been logged
+		return loaded;
+	}
+
+	/**
+	 * Loads students, courses, registrations and exams from CSV files,
+	 * ignoring the invalid records.
+	 * 
+	 * @param files		the CSV files
+	 * @return the number of records loaded
+	 * @throws IOException in case of read errors
+	 * @see #bulkLoad(ErrorListener, Path...)
+	 */
+	public long bulkLoad(Path... files) throws IOException {
+		return bulkLoad((file, lineNumber, line, reason) -> { }, files);
+	}
+
 	/**
 	 * Retrieves the information for a given student
 	 * 
@@ -97,11 +224,11 @@ public class University {
 	 * @return information about the student
 	 */
 	public String student(int id){
-		if(id<INITIAL_ID||id>=nextId){
-			logger.info("Error Student " + id + " is not enrolled in university " + name);
+		Student s = findStudent(id);
+		if(s==null){
+			audit.log(() -> "Error Student " + id + " is not enrolled in university " + name);
 			return "";
 		}
-		Student s = students[ id - INITIAL_ID ];
 		return s.toString();
 	}
 	
@@ -115,12 +242,22 @@ public class University {
 	 * @return the unique code assigned to the course
 	 */
 	public int activate(String title, String teacher){
-		Course c = new Course(nextCode,title,teacher);
-		offers[nextCode - INITIAL_CODE] = c;
-		
-		logger.info("New course activated: " + nextCode + ", " + title + " " + teacher ); // R7
+		long stamp = epochs.enter();
+		try {
+			int code = nextCode.getAndIncrement();
+			// recorded before the course is visible, so that no registration to it precedes the activation
+			if(store != null) store.activated(code, title, teacher);
+			epochs.activated(code, title, teacher);
+			changes.activated(code, title, teacher);
+
+			Course c = registry.addCourse(code, title, teacher);
+			indexCourse(c);
+			audit.activated(code, title, teacher); // R7
 
-		return nextCode++;
+			return code;
+		} finally {
+			epochs.exit(stamp);
+		}
 	}
 	
 	/**
@@ -135,11 +272,12 @@ public class University {
 	 * @return information about the course
 	 */
 	public String course(int code){
-		if( code >= nextCode ){
-			logger.info("ERROR: course " + code + " is not activated in university " + name);
+		Course c = findCourse(code);
+		if( c == null ){
+			audit.log(() -> "ERROR: course " + code + " is not activated in university " + name);
 			return "";
 		}
-		return offers[code-INITIAL_CODE].toString();
+		return c.toString();
 	}
 	
 // R4
@@ -149,18 +287,171 @@ public class University {
 	 * @param courseCode id of the course
 	 */
 	public void register(int studentID, int courseCode){
-		Student s = students[studentID-INITIAL_ID];
-		Course c = offers[courseCode-INITIAL_CODE];
+		long stamp = epochs.enter();
+		try {
+			synchronized(studentLock(studentID)) {
+				Student s = findStudent(studentID);
+				Course c = findCourse(courseCode);
+
+				if(s==null || c==null){
+					audit.log(() -> "ERROR: Invalid arguments to method register: existing student and course required.");
+					return;
+				}
+				if(! enrollments.add(studentID-INITIAL_ID, courseCode-INITIAL_CODE)){
+					audit.log(() -> "ERROR: student " + studentID + " already signed up for course " + courseCode);
+					return;
+				}
+
+				int studentSlot = s.enroll(c);
+				int courseSlot = c.enroll(s);
+				enrollments.setSlots(studentID-INITIAL_ID, courseCode-INITIAL_CODE, studentSlot, courseSlot);
+				leaderboard.update(studentID-INITIAL_ID, s);
+				
+				if(store != null) store.registered(studentID, courseCode);
+				epochs.registered(studentID, courseCode, EnrollmentIndex.pack(studentSlot, courseSlot));
+				changes.registered(studentID, courseCode);
+				audit.registered(studentID, courseCode);
+			}
+		} finally {
+			epochs.exit(stamp);
+		}
+	}
+
+	/**
+	 * Withdraws a student from a course.
+	 * 
+	 * The course is removed from the study plan of the student and the student
+	 * from the attendees of the course; the other courses and attendees keep their order,
+	 * the freed positions are reused by the following registrations.
+	 * A student cannot withdraw from a course whose exam has already been taken.
+	 * 
+	 * @param studentId	id of the student
+	 * @param courseCode	code of the course
+	 */
+	public void withdraw(int studentId, int courseCode) {
+		long stamp = epochs.enter();
+		try {
+			synchronized(studentLock(studentId)) {
+				Student s = findStudent(studentId);
+				Course c = findCourse(courseCode);
+
+				if(s==null || c==null){
+					audit.log(() -> "ERROR: Invalid arguments to method withdraw: existing student and course required.");
+					return;
+				}
+				if(examined.contains(studentId-INITIAL_ID, courseCode-INITIAL_CODE)) {
+					audit.log(() -> "ERROR: student " + studentId + " already took the exam in course " + courseCode + ": cannot withdraw.");
+					return;
+				}
+				long slots = enrollments.remove(studentId-INITIAL_ID, courseCode-INITIAL_CODE);
+				if(slots == EnrollmentIndex.NONE) {
+					audit.log(() -> "ERROR: student " + studentId + " not enrolled in course " + courseCode + ": cannot withdraw.");
+					return;
+				}
+
+				s.withdraw(EnrollmentIndex.studentSlot(slots));
+				c.withdraw(EnrollmentIndex.courseSlot(slots));
+				leaderboard.update(studentId-INITIAL_ID, s);
 
-		if(s==null || c==null){
-			logger.info("ERROR: Invalid arguments to method register: existing student and course required.");
-			return;
+				if(store != null) store.withdrawn(studentId, courseCode);
+				epochs.withdrawn(studentId, courseCode, slots);
+				changes.withdrawn(studentId, courseCode);
+				audit.withdrawn(studentId, courseCode);
+			}
+		} finally {
+			epochs.exit(stamp);
 		}
+	}
+
+	/**
+	 * Expels a student from the university.
+	 * 
+	 * The student is withdrawn from all the courses, including those whose exam
+	 * has been taken, and removed from the rankings; the grades of the student
+	 * still count in the averages of the courses. The ID of the student is not reused.
+	 * 
+	 * @param studentId	id of the student
+	 */
+	public void expel(int studentId) {
+		long stamp = epochs.enter();
+		try {
+			synchronized(studentLock(studentId)) {
+				Student s = findStudent(studentId);
+				if(s == null) {
+					audit.log(() -> "ERROR: Student " + studentId + " is not enrolled in university " + name);
+					return;
+				}
+				withdrawAll(studentId-INITIAL_ID, s);
+				leaderboard.remove(studentId-INITIAL_ID);
+				averages.remove(studentId-INITIAL_ID);
+				registry.removeStudent(studentId-INITIAL_ID);
+
+				if(store != null) store.expelled(studentId);
+				epochs.expelled(studentId);
+				changes.expelled(studentId);
+				audit.expelled(studentId);
+			}
+		} finally {
+			epochs.exit(stamp);
+		}
+	}
+
+	private void withdrawAll(int index, Student s) {
+		for(Course c : s.courseList()) {
+			if(c == null) continue;
+			long slots = enrollments.remove(index, c.getCode()-INITIAL_CODE);
+			c.withdraw(EnrollmentIndex.courseSlot(slots));
+		}
+	}
+
+	/**
+	 * Compacts the study plans and the lists of attendees, releasing the positions
+	 * freed by withdrawals and expulsions, and the memory of the expelled students.
+	 * 
+	 * All the other operations modifying the university wait until the compaction completes.
+	 */
+	public void compact() {
+		epochs.exclusive(() -> {
+			int numStudents = studentSlots();
+			for(int i=0; i<numStudents; ++i) {
+				Student s = registry.student(i);
+				if(s == null) continue;
+				final int student = i;
+				s.compact((c, slot) -> {
+					int course = c.getCode() - INITIAL_CODE;
+					long slots = enrollments.slots(student, course);
+					enrollments.setSlots(student, course, slot, EnrollmentIndex.courseSlot(slots));
+				});
+			}
+			int numCourses = courseSlots();
+			for(int i=0; i<numCourses; ++i) {
+				Course c = registry.course(i);
+				if(c == null) continue;
+				final int course = i;
+				c.compact((s, slot) -> {
+					int student = s.getId() - INITIAL_ID;
+					long slots = enrollments.slots(student, course);
+					enrollments.setSlots(student, course, EnrollmentIndex.studentSlot(slots), slot);
+				});
+			}
+			registry.reclaim();
+		});
+		audit.log(() -> "Compacted university " + name);
+	}
+
+	/**
+	 * Runs an action while no operation modifying the university is in progress
+	 * 
+	 * @param <T> type of the result
+	 * @param action the action
+	 * @return the result of the action
+	 */
+	<T> T quiesce(Supplier<T> action) {
+		return epochs.quiesce(action);
+	}
 
-		s.enroll(c);
-		c.enroll(s);
-		
-		logger.info("Student " + studentID + " signed up for course " + courseCode);
+	private Object studentLock(int studentId) {
+		return studentLocks[Math.floorMod(studentId, LOCK_STRIPES)];
 	}
 	
 	/**
@@ -170,9 +461,9 @@ public class University {
 	 * @return list of attendees separated by "\n"
 	 */
 	public String listAttendees(int courseCode){
-		Course c = offers[courseCode-INITIAL_CODE];
+		Course c = findCourse(courseCode);
 		if(c==null){
-			logger.info("ERROR: course " + courseCode + " is not activated in university " + name);
+			audit.log(() -> "ERROR: course " + courseCode + " is not activated in university " + name);
 			return "";
 		}
 		return c.attendees();
@@ -190,14 +481,183 @@ public class University {
 	 * @return the list of courses the student is registered for
 	 */
 	public String studyPlan(int studentID){
-		Student s = students[studentID-INITIAL_ID];
+		Student s = findStudent(studentID);
 		if(s==null){
-			logger.info("ERROR: Student " + studentID + " is not enrolled in university " + name);
+			audit.log(() -> "ERROR: Student " + studentID + " is not enrolled in university " + name);
 			return "";
 		}
 		return s.courses();
 	}
 
+	/**
+	 * Writes the list of attendees of a course to the given destination,
+	 * one per line, formatted as in {@link #listAttendees(int)}.
+	 * 
+	 * Unlike {@link #listAttendees(int)} the list is not built in memory
+	 * but written attendee by attendee.
+	 * 
+	 * @param courseCode unique id of the course
+	 * @param out destination of the list (e.g. a {@link java.io.Writer})
+	 * @throws IOException in case of write errors
+	 */
+	public void listAttendees(int courseCode, Appendable out) throws IOException {
+		listAttendees(courseCode, 0, Integer.MAX_VALUE, out);
+	}
+
+	/**
+	 * Writes a page of the list of attendees of a course to the given destination.
+	 * 
+	 * Attendees are listed in order of registration; the next page starts at
+	 * {@code offset} plus the number of attendees returned by the method.
+	 * 
+	 * @param courseCode unique id of the course
+	 * @param offset position of the first attendee to be written (0-based)
+	 * @param limit maximum number of attendees to be written
+	 * @param out destination of the list
+	 * @return the number of attendees written
+	 * @throws IOException in case of write errors
+	 */
+	public int listAttendees(int courseCode, int offset, int limit, Appendable out) throws IOException {
+		Course c = findCourse(courseCode);
+		if(c==null){
+			audit.log(() -> "ERROR: course " + courseCode + " is not activated in university " + name);
+			return 0;
+		}
+		return c.attendees(offset, limit, out);
+	}
+
+	/**
+	 * Retrieves a page of the list of attendees of a course.
+	 * 
+	 * @param courseCode unique id of the course
+	 * @param offset position of the first attendee (0-based)
+	 * @param limit maximum number of attendees
+	 * @return list of attendees separated by "\n"
+	 * @see #listAttendees(int, int, int, Appendable)
+	 */
+	public String listAttendees(int courseCode, int offset, int limit) {
+		StringBuilder result = new StringBuilder();
+		try {
+			listAttendees(courseCode, offset, limit, result);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // cannot happen with a StringBuilder
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Retrieves the attendees of a course as a lazy stream of lines,
+	 * each formatted as in {@link #student(int)}.
+	 * 
+	 * The stream includes the attendees registered when the method is called.
+	 * 
+	 * @param courseCode unique id of the course
+	 * @return stream of attendees, empty if the course does not exist
+	 */
+	public Stream<String> attendees(int courseCode) {
+		Course c = findCourse(courseCode);
+		if(c==null){
+			audit.log(() -> "ERROR: course " + courseCode + " is not activated in university " + name);
+			return Stream.empty();
+		}
+		return c.attendeeStream().map(Student::toString);
+	}
+
+	/**
+	 * Writes the study plan of a student to the given destination,
+	 * one course per line, formatted as in {@link #studyPlan(int)}.
+	 * 
+	 * @param studentID id of the student
+	 * @param out destination of the list (e.g. a {@link java.io.Writer})
+	 * @throws IOException in case of write errors
+	 */
+	public void studyPlan(int studentID, Appendable out) throws IOException {
+		studyPlan(studentID, 0, Integer.MAX_VALUE, out);
+	}
+
+	/**
+	 * Writes a page of the study plan of a student to the given destination.
+	 * 
+	 * Courses are listed in order of registration; the next page starts at
+	 * {@code offset} plus the number of courses returned by the method.
+	 * 
+	 * @param studentID id of the student
+	 * @param offset position of the first course to be written (0-based)
+	 * @param limit maximum number of courses to be written
+	 * @param out destination of the list
+	 * @return the number of courses written
+	 * @throws IOException in case of write errors
+	 */
+	public int studyPlan(int studentID, int offset, int limit, Appendable out) throws IOException {
+		Student s = findStudent(studentID);
+		if(s==null){
+			audit.log(() -> "ERROR: Student " + studentID + " is not enrolled in university " + name);
+			return 0;
+		}
+		return s.courses(offset, limit, out);
+	}
+
+	/**
+	 * Retrieves the study plan of a student as a lazy stream of lines,
+	 * each formatted as in {@link #course(int)}.
+	 * 
+	 * @param studentID id of the student
+	 * @return stream of courses, empty if the student does not exist
+	 */
+	public Stream<String> studyPlanCourses(int studentID) {
+		Student s = findStudent(studentID);
+		if(s==null){
+			audit.log(() -> "ERROR: Student " + studentID + " is not enrolled in university " + name);
+			return Stream.empty();
+		}
+		return s.courseStream().map(Course::toString);
+	}
+
+	/**
+	 * Searches the students whose first or last name contains a word
+	 * starting with the given prefix, ignoring case.
+	 * 
+	 * @param prefix	prefix of the name
+	 * @param n			maximum number of students
+	 * @return information about the students, formatted as in {@link #student(int)},
+	 * 			sorted by the matching name
+	 */
+	public List<String> searchStudents(String prefix, int n) {
+		List<String> result = new ArrayList<>();
+		for(int index : studentNames.search(prefix, n, i -> registry.student(i) != null)) {
+			Student s = registry.student(index);
+			if(s != null) result.add(s.toString());	// not expelled meanwhile
+		}
+		return result;
+	}
+
+	/**
+	 * Searches the courses whose title or teacher contains a word
+	 * starting with the given prefix, ignoring case.
+	 * 
+	 * @param prefix	prefix of the title or teacher name
+	 * @param n			maximum number of courses
+	 * @return information about the courses, formatted as in {@link #course(int)},
+	 * 			sorted by the matching word
+	 */
+	public List<String> searchCourses(String prefix, int n) {
+		List<String> result = new ArrayList<>();
+		for(int index : courseNames.search(prefix, n)) {
+			result.add(registry.course(index).toString());
+		}
+		return result;
+	}
+
+	private void indexStudent(Student s) {
+		studentNames.add(s.getId() - INITIAL_ID, s.getFirst());
+		studentNames.add(s.getId() - INITIAL_ID, s.getLast());
+	}
+
+	private void indexCourse(Course c) {
+		courseNames.add(c.getCode() - INITIAL_CODE, c.getTitle());
+		courseNames.add(c.getCode() - INITIAL_CODE, c.getTeacher());
+	}
+
 // R5
 	/**
 	 * Retrieves a student given its id.
@@ -207,8 +667,7 @@ public class University {
 	 * @return the student with the given id
 	 */
 	private Student findStudent(int studentId) {
-		if(studentId<INITIAL_ID || studentId >= nextId) return null;
-		return students[studentId-INITIAL_ID];
+		return registry.student(studentId-INITIAL_ID);
 	}
 
 	/**
@@ -219,18 +678,7 @@ public class University {
 	 * @return the course with the given id
 	 */
 	private Course findCourse(int courseId) {
-		if(courseId<INITIAL_CODE || courseId >= nextCode) return null;
-		return offers[courseId-INITIAL_CODE];
-	}
-	
-	/**
-	 * Retrieves the number of enrolled students.
-	 * Internal method that encapsulates the mapping between id and index
-	 * 
-	 * @return the course with the given id
-	 */
-	private int numStudents() {
-		return nextId - INITIAL_ID;
+		return registry.course(courseId-INITIAL_CODE);
 	}
 	
 	/**
@@ -241,18 +689,37 @@ public class University {
 	 * @param grade		grade ( 0-30)
 	 */
 	public void exam(int studentId, int courseId, int grade) {
-		Student s = findStudent(studentId);
-		Course c = findCourse(courseId);
+		long stamp = epochs.enter();
+		try {
+			synchronized(studentLock(studentId)) {
+				Student s = findStudent(studentId);
+				Course c = findCourse(courseId);
 
-		if(s==null || c==null){
-			logger.info("ERROR: Invalid arguments to method exam: existing student and course required.");
-			return;
-		}
-		if(c.attendees().contains(Integer.toString(studentId))) {
-			new Exam(s,c,grade);
-			logger.info("Student " + studentId + " took an exam in course " + courseId + " with grade" + grade);
-		}else {
-			logger.info("ERROR: student " + studentId + " not enrolled in course " + courseId + ": cannot assign a grade.");
+				if(s==null || c==null){
+					audit.log(() -> "ERROR: Invalid arguments to method exam: existing student and course required.");
+					return;
+				}
+				if(grade < 0 || grade > MAX_GRADE){
+					audit.log(() -> "ERROR: invalid grade " + grade + " for student " + studentId + " in course " + courseId);
+					return;
+				}
+				if(enrollments.contains(studentId-INITIAL_ID, courseId-INITIAL_CODE)) {
+					int row = exams.add(studentId-INITIAL_ID, courseId-INITIAL_CODE, grade);
+					examined.add(studentId-INITIAL_ID, courseId-INITIAL_CODE);
+					s.addGrade(grade);
+					c.addGrade(grade);
+					leaderboard.update(studentId-INITIAL_ID, s);
+					averages.update(studentId-INITIAL_ID, s);
+					if(store != null) store.examined(row, studentId, courseId, grade);
+					epochs.examined(studentId, courseId, grade);
+					changes.examined(studentId, courseId, grade);
+					audit.examined(studentId, courseId, grade);
+				}else {
+					audit.log(() -> "ERROR: student " + studentId + " not enrolled in course " + courseId + ": cannot assign a grade.");
+				}
+			}
+		} finally {
+			epochs.exit(stamp);
 		}
 	}
 
@@ -271,7 +738,7 @@ public class University {
 	public String studentAvg(int studentId) {
 		Student s = findStudent(studentId);
 		if(s==null){
-			logger.info("ERROR: student " + studentId + " not enrolled in university " + name);
+			audit.log(() -> "ERROR: student " + studentId + " not enrolled in university " + name);
 			return "";
 		}
 		double avg = s.average();
@@ -293,13 +760,93 @@ public class University {
 	public String courseAvg(int courseId) {
 		Course c = findCourse(courseId);
 		if(c==null){
-			logger.info("ERROR: course " + courseId + " not activated in university " + name);
+			audit.log(() -> "ERROR: course " + courseId + " not activated in university " + name);
 			return "";
 		}
 		double avg = c.average();
 		if(! Course.isValid(avg)) return String.format("No student has taken the exam in %s", c.getTitle());
 		return String.format("The average for the course %s is: %.1f", c.getTitle(), avg);
 	}
+
+	/**
+	 * Enables or disables the recording of the time when the exams are taken.
+	 * By default the time is not recorded.
+	 * 
+	 * @param enabled {@code true} to record the time of the exams
+	 */
+	public void setExamTimestamps(boolean enabled) {
+		exams.setTimestamps(enabled);
+	}
+
+	/**
+	 * Computes the distribution of the grades of the exams for a given course.
+	 * 
+	 * @param courseId	course code
+	 * @return an array with the number of exams for each grade (0-30),
+	 * 			or {@code null} if the course does not exist
+	 */
+	public int[] gradeHistogram(int courseId) {
+		if(findCourse(courseId)==null){
+			audit.log(() -> "ERROR: course " + courseId + " not activated in university " + name);
+			return null;
+		}
+		return exams.histogram(courseId-INITIAL_CODE);
+	}
+
+	/**
+	 * Computes the fraction of the exams of a given course 
+	 * with a passing grade (i.e. at least {@link #PASSING_GRADE}).
+	 * 
+	 * @param courseId	course code
+	 * @return the pass rate (0.0-1.0), or {@code NaN} if no student has taken the exam
+	 */
+	public double passRate(int courseId) {
+		int[] histogram = gradeHistogram(courseId);
+		if(histogram==null) return Double.NaN;
+		int passed = 0;
+		int total = 0;
+		for(int grade=0; grade<histogram.length; ++grade) {
+			total += histogram[grade];
+			if(grade >= PASSING_GRADE) passed += histogram[grade];
+		}
+		if(total==0) return Double.NaN;
+		return passed / (double) total;
+	}
+
+	/**
+	 * Computes the average grade of the exams of the courses held by each teacher.
+	 * 
+	 * The exams are scanned in parallel, in a single pass.
+	 * 
+	 * @return a map from the name of the teacher to the average grade,
+	 * 			including only teachers whose courses have at least one exam
+	 */
+	public Map<String,Double> averageByTeacher() {
+		long[] sums = exams.sumsByCourse(() -> nextCode.get() - INITIAL_CODE);
+		Map<String,long[]> byTeacher = new TreeMap<>();
+		for(int i=0; 2*i<sums.length; ++i) {
+			if(sums[2*i+1]==0) continue;
+			long[] acc = byTeacher.computeIfAbsent(registry.course(i).getTeacher(), t -> new long[2]);
+			acc[0] += sums[2*i];
+			acc[1] += sums[2*i+1];
+		}
+		Map<String,Double> result = new TreeMap<>();
+		byTeacher.forEach((teacher, acc) -> result.put(teacher, acc[0] / (double) acc[1]));
+		return result;
+	}
+
+	/**
+	 * Computes the distribution of the grades of every course and teacher:
+	 * mean, median, percentiles, standard deviation and pass rate.
+	 * 
+	 * The exams are scanned once, split among the threads of the common fork/join pool,
+	 * counting the exams for each course and grade.
+	 * 
+	 * @return the report
+	 */
+	public GradeReport gradeReport() {
+		return GradeReport.of(this, exams.histograms(() -> nextCode.get() - INITIAL_CODE));
+	}
 	
 
 // R6
@@ -319,40 +866,129 @@ public class University {
 	 * @return info on the best three students.
 	 */
 	public String topThreeStudents() {
-		int n = Math.min(3, numStudents() );
-		Student[] top = new Student[n];
-		for(int i=0; i<numStudents(); ++i){
-			insert(students[i], top);
-		}
-		
+		return topStudents(3);
+	}
+
+	/**
+	 * Retrieve information for the {@code k} students with the highest score.
+	 * 
+	 * The score is computed as described in {@link #topThreeStudents()} and
+	 * the result uses the same format.
+	 * 
+	 * @param k	the number of students
+	 * @return info on the best {@code k} students.
+	 */
+	public String topStudents(int k) {
 		StringBuilder res= new StringBuilder();
-		for(Student s : top) {
-			if(s==null || ! Student.isValid(s.getScore()) ) continue;
+		for(int index : leaderboard.top(k)) {
+			Student s = registry.student(index);
+			if(s == null) continue;		// expelled after the ranking was read
 			res.append(s.getLast()).append(" ").append(s.getFirst()).append(" : ").append(s.getScore()).append("\n");
 		}
 		return res.toString();
 	}
-	
+
 	/**
-	 * Adds a student into an array in order of decreasing score
-	 * 
-	 * @param s		the student to be added
-	 * @param ary	the array of students
-	 */
-	private void insert(Student s, Student[] ary) {
-		if(Student.isValid(s.getScore())) {
-			for(int i=0; i<ary.length; ++i) {
-				if(ary[i] == null || s.getScore() > ary[i].getScore()) {
-//					for(int j=ary.length-1; j>i; j--) {
-//						ary[j] = ary[j-1];
-//					}
-					// OR, more efficient:
-					if (ary.length - 1 - i >= 0) System.arraycopy(ary, i, ary, i + 1, ary.length - 1 - i);
-					ary[i] = s;
-					break;
-				}
-			}
+	 * Retrieves the position of a student in the award ranking
+	 * 
+	 * @param studentId the ID of the student
+	 * @return the rank of the student (1 for the highest score), 
+	 * 			or {@code -1} if the student has not taken any exam
+	 */
+	public int rankOf(int studentId) {
+		return leaderboard.rankOf(studentId-INITIAL_ID);
+	}
+
+	/**
+	 * Retrieves the percentile of a student in the award ranking,
+	 * i.e. the percentage of ranked students with the same or a lower position.
+	 * 
+	 * @param studentId the ID of the student
+	 * @return the percentile of the student (100 for the highest score), 
+	 * 			or {@code NaN} if the student has not taken any exam
+	 */
+	public double percentile(int studentId) {
+		return leaderboard.percentile(studentId-INITIAL_ID);
+	}
+
+	/**
+	 * Counts the students whose average grade is in a range.
+	 * Students that have not taken any exam are not counted.
+	 * 
+	 * @param min	minimum average (inclusive)
+	 * @param max	maximum average (inclusive)
+	 * @return number of students
+	 */
+	public int countByAverage(double min, double max) {
+		return averages.count(min, max);
+	}
+
+	/**
+	 * Retrieves the students whose average grade is in a range,
+	 * as a lazy stream of lines formatted as in {@link #student(int)},
+	 * sorted by increasing average.
+	 * 
+	 * @param min	minimum average (inclusive)
+	 * @param max	maximum average (inclusive)
+	 * @return stream of students
+	 */
+	public Stream<String> studentsByAverage(double min, double max) {
+		return averages.range(min, max).mapToObj(registry::student).filter(Objects::nonNull).map(Student::toString);
+	}
+
+	/**
+	 * Counts the students whose score, computed as described in {@link #topThreeStudents()},
+	 * is in a range. Students that have not taken any exam are not counted.
+	 * 
+	 * @param min	minimum score (inclusive)
+	 * @param max	maximum score (inclusive)
+	 * @return number of students
+	 */
+	public int countByScore(double min, double max) {
+		return leaderboard.count(min, max);
+	}
+
+	/**
+	 * Retrieves the students whose score is in a range, as a lazy stream
+	 * of lines formatted as in {@link #student(int)}, sorted by decreasing score.
+	 * 
+	 * @param min	minimum score (inclusive)
+	 * @param max	maximum score (inclusive)
+	 * @return stream of students
+	 */
+	public Stream<String> studentsByScore(double min, double max) {
+		return leaderboard.range(min, max).mapToObj(registry::student).filter(Objects::nonNull).map(Student::toString);
+	}
+
+// Exam sessions
+	/**
+	 * Computes, for each pair of courses, the number of students registered to both.
+	 * 
+	 * @return the co-enrollment matrix of the courses activated so far
+	 */
+	public CoEnrollment coEnrollment() {
+		Course[] courses = new Course[nextCode.get() - INITIAL_CODE];
+		for(int i=0; i<courses.length; ++i) {
+			courses[i] = registry.course(i);
 		}
+		return ExamScheduler.coEnrollment(courses);
+	}
+
+	/**
+	 * Assigns the exams of the courses to the slots of an exam session,
+	 * so that no student has two exams in the same slot.
+	 * 
+	 * If the slots are not enough, some courses are left unscheduled.
+	 * 
+	 * @param slots	number of available slots
+	 * @return the timetable, or {@code null} if the number of slots is not positive
+	 */
+	public ExamTimetable examTimetable(int slots) {
+		if(slots <= 0) {
+			audit.log(() -> "ERROR: invalid number of exam slots " + slots);
+			return null;
+		}
+		return ExamScheduler.schedule(coEnrollment(), slots);
 	}
 
 	
@@ -363,4 +999,312 @@ public class University {
      */
     private final static Logger logger = Logger.getLogger("University");
 
+    /**
+     * Audit log of the operations, written through the {@link #logger}
+     */
+    private final AuditLog audit = new AuditLog(logger);
+
+    /**
+     * Enables or disables the asynchronous writing of the log.
+     * 
+     * In asynchronous mode the log messages are queued and written
+     * by a background thread; by default they are written synchronously
+     * by the thread invoking the operations.
+     * 
+     * @param asynchronous {@code true} to enable asynchronous logging
+     */
+    public void setAsyncLogging(boolean asynchronous) {
+        audit.setAsynchronous(asynchronous);
+    }
+
+    /**
+     * Waits until all the queued log messages have been written.
+     */
+    public void flushLog() {
+        audit.flush();
+    }
+
+
+// Snapshots
+	/**
+	 * Takes an immutable, consistent view of the university.
+	 * 
+	 * The view includes all the operations completed so far and none of
+	 * the following ones. Taking a snapshot waits only for the operations
+	 * in progress; the view is then built from the previous snapshot,
+	 * in time proportional to the operations performed in between,
+	 * while the following operations proceed. The first snapshot copies
+	 * the whole state of the university.
+	 * 
+	 * @return the snapshot
+	 */
+	public UniversitySnapshot snapshot() {
+		return epochs.snapshot(this);
+	}
+
+
+// Change stream
+	/**
+	 * Publisher of the changes made to the university, as {@link UniversityEvent}s.
+	 * 
+	 * Subscribers receive the enrollments, activations, registrations, exams,
+	 * withdrawals and expulsions performed after they subscribed, in the order
+	 * of the operations on each student and course, and at most as many as they
+	 * requested. The enrollment of a student and the activation of a course
+	 * precede the operations involving them, even if performed by other threads.
+	 * Events are delivered in batches by the common fork/join pool, without
+	 * slowing down or locking the operations; a subscriber that falls too far
+	 * behind receives {@code onError}. Subscriptions are completed when the
+	 * university is closed.
+	 * 
+	 * Bulk loads and restored operations are not published.
+	 * 
+	 * @return the publisher of the changes
+	 */
+	public Flow.Publisher<UniversityEvent> changes() {
+		return changes;
+	}
+
+
+// HTTP server
+	/**
+	 * Starts an embedded HTTP server answering queries on the university in JSON.
+	 * 
+	 * @param address	address to listen on, port 0 selects a free port
+	 * @param threads	number of threads serving the requests
+	 * @return the running server, to be closed when no longer needed
+	 * @throws IOException if the address cannot be bound
+	 * @see UniversityServer
+	 */
+	public UniversityServer serve(InetSocketAddress address, int threads) throws IOException {
+		return UniversityServer.start(this, address, threads);
+	}
+
+
+// Persistence
+	/**
+	 * Opens a persistent university stored in the given directory.
+	 * 
+	 * If the directory contains the state of a university, the state is restored,
+	 * otherwise a new university with the given name is created.
+	 * All the following operations are recorded in the directory.
+	 * 
+	 * @param directory	directory where the state is stored
+	 * @param name		name of the university, used if no state is stored yet
+	 * @return the university
+	 * @throws IOException in case of errors reading the directory
+	 */
+	public static University open(Path directory, String name) throws IOException {
+		return UniversityStore.open(directory, name);
+	}
+
+	/**
+	 * Writes a snapshot of the state of the university, so that
+	 * the recorded operations need not be replayed when it is opened again.
+	 * 
+	 * Operations may continue while the snapshot is being written.
+	 * 
+	 * @throws IOException in case of write errors
+	 * @throws IllegalStateException if the university is not persistent
+	 */
+	public void checkpoint() throws IOException {
+		persistentStore().checkpoint();
+	}
+
+	/**
+	 * Waits until all the operations performed so far are durably recorded.
+	 * 
+	 * Operations are anyway recorded within a few milliseconds.
+	 * 
+	 * @throws IOException in case of write errors
+	 * @throws IllegalStateException if the university is not persistent
+	 */
+	public void sync() throws IOException {
+		persistentStore().sync();
+	}
+
+	/**
+	 * Writes the pending log messages, completes the subscriptions to the changes
+	 * and, if the university is persistent, records the pending operations and closes the files.
+	 * 
+	 * @throws IOException in case of write errors
+	 */
+	@Override
+	public void close() throws IOException {
+		changes.close();
+		audit.setAsynchronous(false);
+		if(store != null) store.close();
+	}
+
+	private UniversityStore persistentStore() {
+		UniversityStore st = store;
+		if(st == null) throw new IllegalStateException("University " + name + " is not persistent");
+		return st;
+	}
+
+	void attach(UniversityStore store) {
+		this.store = store;
+	}
+
+	int studentSlots() {
+		return nextId.get() - INITIAL_ID;
+	}
+
+	Student studentAt(int index) {
+		return registry.student(index);
+	}
+
+	int[] topIndexes(int k) {
+		return leaderboard.top(k);
+	}
+
+	int courseSlots() {
+		return nextCode.get() - INITIAL_CODE;
+	}
+
+	Course courseAt(int index) {
+		return registry.course(index);
+	}
+
+	long enrollmentSlots(int student, int course) {
+		return enrollments.slots(student, course);
+	}
+
+	ExamTable examTable() {
+		return exams;
+	}
+
+	/*
+	 * The restore methods re-apply recorded operations while the university is opened.
+	 * They can be invoked again for operations already applied, leaving the state unchanged
+	 * (except for exams), and they neither log nor update the ranking and the
+	 * name indexes, which are rebuilt at the end by rebuildIndexes().
+	 */
+
+	void restoreRector(String rector) {
+		this.rector = rector;
+	}
+
+	boolean restoreStudent(int id, String first, String last) {
+		boolean added = findStudent(id) == null;
+		if(added) registry.addStudent(id, first, last);
+		nextId.accumulateAndGet(id + 1, Math::max);
+		return added;
+	}
+
+	boolean restoreCourse(int code, String title, String teacher) {
+		boolean added = findCourse(code) == null;
+		if(added) registry.addCourse(code, title, teacher);
+		nextCode.accumulateAndGet(code + 1, Math::max);
+		return added;
+	}
+
+	void restoreSlots(int numStudents, int numCourses) {
+		nextId.accumulateAndGet(INITIAL_ID + numStudents, Math::max);
+		nextCode.accumulateAndGet(INITIAL_CODE + numCourses, Math::max);
+	}
+
+	boolean restoreRegistration(int studentId, int courseCode) {
+		Student s = findStudent(studentId);
+		Course c = findCourse(courseCode);
+		if(s==null || c==null) return false;
+		if(! enrollments.add(studentId-INITIAL_ID, courseCode-INITIAL_CODE)) return false;
+		enrollments.setSlots(studentId-INITIAL_ID, courseCode-INITIAL_CODE, s.enroll(c), c.enroll(s));
+		return true;
+	}
+
+	void restoreWithdrawal(int studentId, int courseCode) {
+		Student s = findStudent(studentId);
+		Course c = findCourse(courseCode);
+		if(s==null || c==null) return;
+		long slots = enrollments.remove(studentId-INITIAL_ID, courseCode-INITIAL_CODE);
+		if(slots == EnrollmentIndex.NONE) return;
+		s.withdraw(EnrollmentIndex.studentSlot(slots));
+		c.withdraw(EnrollmentIndex.courseSlot(slots));
+	}
+
+	void restoreExpulsion(int studentId) {
+		Student s = findStudent(studentId);
+		if(s == null) return;
+		withdrawAll(studentId-INITIAL_ID, s);
+		registry.removeStudent(studentId-INITIAL_ID);
+	}
+
+	boolean isRegistered(int studentIndex, int courseIndex) {
+		return enrollments.contains(studentIndex, courseIndex);
+	}
+
+	void restoreExam(int studentId, int courseCode, int grade) {
+		Student s = findStudent(studentId);
+		Course c = findCourse(courseCode);
+		if(c == null) return;
+		exams.add(studentId-INITIAL_ID, courseCode-INITIAL_CODE, grade);
+		examined.add(studentId-INITIAL_ID, courseCode-INITIAL_CODE);
+		if(s != null) s.addGrade(grade);	// the grades of expelled students count only for the course
+		c.addGrade(grade);
+	}
+
+	void restoreExams(int[] student, int[] course, int[] grade) {
+		exams.addAll(student, course, grade);
+		for(int i=0; i<grade.length; ++i) {
+			examined.add(student[i], course[i]);
+			Student s = registry.student(student[i]);
+			if(s != null) s.addGrade(grade[i]);
+			Course c = registry.course(course[i]);
+			if(c != null) c.addGrade(grade[i]);
+		}
+	}
+
+	/**
+	 * Adds restored students to the name index
+	 * 
+	 * @param indexes dense indexes of the students
+	 */
+	void indexStudents(int[] indexes) {
+		String[] first = new String[indexes.length];
+		String[] last = new String[indexes.length];
+		for(int i=0; i<indexes.length; ++i) {
+			Student s = registry.student(indexes[i]);
+			first[i] = s.getFirst();
+			last[i] = s.getLast();
+		}
+		studentNames.addAll(indexes, first, last);
+	}
+
+	/**
+	 * Adds restored courses to the name index
+	 * 
+	 * @param indexes dense indexes of the courses
+	 */
+	void indexCourses(int[] indexes) {
+		String[] title = new String[indexes.length];
+		String[] teacher = new String[indexes.length];
+		for(int i=0; i<indexes.length; ++i) {
+			Course c = registry.course(indexes[i]);
+			title[i] = c.getTitle();
+			teacher[i] = c.getTeacher();
+		}
+		courseNames.addAll(indexes, title, teacher);
+	}
+
+	/**
+	 * Builds the ranking and the name indexes of a restored university
+	 */
+	void rebuildIndexes() {
+		rebuildRanking();
+		indexStudents(IntStream.range(0, studentSlots()).filter(i -> registry.student(i) != null).toArray());
+		indexCourses(IntStream.range(0, courseSlots()).filter(i -> registry.course(i) != null).toArray());
+	}
+
+	void rebuildRanking() {
+		int n = studentSlots();
+		for(int i=0; i<n; ++i) {
+			Student s = registry.student(i);
+			if(s != null) {
+				leaderboard.update(i, s);
+				averages.update(i, s);
+			}
+		}
+	}
+
 }
\ No newline at end of file
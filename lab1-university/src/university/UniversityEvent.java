@@ -0,0 +1,177 @@
+package university;
+
+/**
+ * Structured record of an operation performed through the {@link University} facade.
+ * 
+ * Events carry the IDs, codes and values involved in the operation
+ * instead of a free text message; the message is built only when
+ * the event is actually written, by means of {@link #toString()}.
+ */
+public final class UniversityEvent {
+
+	/**
+	 * Kinds of operations
+	 */
+	public enum Type {
+		/**
+		 * a new student has been enrolled
+		 */
+		ENROLL,
+		/**
+		 * a new course has been activated
+		 */
+		ACTIVATE,
+		/**
+		 * a student signed up for a course
+		 */
+		REGISTER,
+		/**
+		 * a student took an exam
+		 */
+		EXAM,
+		/**
+		 * a student withdrew from a course
+		 */
+		WITHDRAW,
+		/**
+		 * a student has been expelled
+		 */
+		EXPEL
+	}
+
+	/**
+	 * Value used for the missing fields of an event
+	 */
+	public static final int NONE = -1;
+
+	private final Type type;
+	private final int studentId;
+	private final int courseCode;
+	private final int grade;
+	private final String first;
+	private final String second;
+	private final long slots;	// positions of a registration in the lists, see EnrollmentIndex
+
+	private UniversityEvent(Type type, int studentId, int courseCode, int grade, String first, String second) {
+		this(type, studentId, courseCode, grade, first, second, EnrollmentIndex.NONE);
+	}
+
+	private UniversityEvent(Type type, int studentId, int courseCode, int grade, String first, String second, long slots) {
+		this.type = type;
+		this.studentId = studentId;
+		this.courseCode = courseCode;
+		this.grade = grade;
+		this.first = first;
+		this.second = second;
+		this.slots = slots;
+	}
+
+	static UniversityEvent enrolled(int studentId, String first, String last) {
+		return new UniversityEvent(Type.ENROLL, studentId, NONE, NONE, first, last);
+	}
+
+	static UniversityEvent activated(int courseCode, String title, String teacher) {
+		return new UniversityEvent(Type.ACTIVATE, NONE, courseCode, NONE, title, teacher);
+	}
+
+	static UniversityEvent registered(int studentId, int courseCode) {
+		return registered(studentId, courseCode, EnrollmentIndex.NONE);
+	}
+
+	static UniversityEvent registered(int studentId, int courseCode, long slots) {
+		return new UniversityEvent(Type.REGISTER, studentId, courseCode, NONE, null, null, slots);
+	}
+
+	static UniversityEvent examined(int studentId, int courseCode, int grade) {
+		return new UniversityEvent(Type.EXAM, studentId, courseCode, grade, null, null);
+	}
+
+	static UniversityEvent withdrawn(int studentId, int courseCode) {
+		return withdrawn(studentId, courseCode, EnrollmentIndex.NONE);
+	}
+
+	static UniversityEvent withdrawn(int studentId, int courseCode, long slots) {
+		return new UniversityEvent(Type.WITHDRAW, studentId, courseCode, NONE, null, null, slots);
+	}
+
+	static UniversityEvent expelled(int studentId) {
+		return new UniversityEvent(Type.EXPEL, studentId, NONE, NONE, null, null);
+	}
+
+	/**
+	 * Kind of operation
+	 * 
+	 * @return the type of the event
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * ID of the student involved in the operation
+	 * 
+	 * @return the student ID or {@link #NONE} for {@link Type#ACTIVATE} events
+	 */
+	public int getStudentId() {
+		return studentId;
+	}
+
+	/**
+	 * Code of the course involved in the operation
+	 * 
+	 * @return the course code or {@link #NONE} for {@link Type#ENROLL} and {@link Type#EXPEL} events
+	 */
+	public int getCourseCode() {
+		return courseCode;
+	}
+
+	/**
+	 * Grade of the exam
+	 * 
+	 * @return the grade or {@link #NONE} for events other than {@link Type#EXAM}
+	 */
+	public int getGrade() {
+		return grade;
+	}
+
+	/**
+	 * First name of the student ({@link Type#ENROLL}) or title of the course ({@link Type#ACTIVATE})
+	 * 
+	 * @return the name or {@code null} for the other events
+	 */
+	public String getFirst() {
+		return first;
+	}
+
+	/**
+	 * Last name of the student ({@link Type#ENROLL}) or teacher of the course ({@link Type#ACTIVATE})
+	 * 
+	 * @return the name or {@code null} for the other events
+	 */
+	public String getSecond() {
+		return second;
+	}
+
+	/**
+	 * Slots of the registration in the study plan and in the attendees,
+	 * known only to the journal of the snapshots
+	 * 
+	 * @return the slots or {@link EnrollmentIndex#NONE}
+	 */
+	long slots() {
+		return slots;
+	}
+
+	@Override
+	public String toString() {
+		switch(type) {
+		case ENROLL:	return "New student enrolled: " + studentId + ", " + first + " " + second;
+		case ACTIVATE:	return "New course activated: " + courseCode + ", " + first + " " + second;
+		case REGISTER:	return "Student " + studentId + " signed up for course " + courseCode;
+		case EXAM:		return "Student " + studentId + " took an exam in course " + courseCode + " with grade " + grade;
+		case WITHDRAW:	return "Student " + studentId + " withdrew from course " + courseCode;
+		case EXPEL:		return "Student " + studentId + " expelled";
+		default:		return type.toString();
+		}
+	}
+}
@@ -0,0 +1,325 @@
+package university;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP server answering read-only queries on a university in JSON.
+ *
+ * The endpoints (GET only) are:
+ * <ul>
+ * <li>{@code /student/ID}: {@code {"id":10000,"first":"Mario","last":"Rossi"}}</li>
+ * <li>{@code /course/CODE}: {@code {"code":10,"title":"...","teacher":"..."}}</li>
+ * <li>{@code /studyPlan/ID}: array of the courses of the student</li>
+ * <li>{@code /attendees/CODE}: array of the students attending the course</li>
+ * <li>{@code /studentAvg/ID}: {@code {"id":10000,"average":27.5}}</li>
+ * <li>{@code /courseAvg/CODE}: {@code {"code":10,"average":27.5}}</li>
+ * <li>{@code /topStudents?k=N}: array of the N best students, with their score (3 by default)</li>
+ * </ul>
+ * Averages and scores are {@code null} when no exam was taken.
+ * Unknown students and courses give status 404, malformed requests 400.
+ *
+ * Lists are streamed with chunked encoding while they are read from
+ * the university, so that they are never built in memory; if an error
+ * occurs meanwhile, the connection is dropped before the end of the body.
+ *
+ * Requests are served by a fixed pool of threads; since the queries
+ * of the university never lock, the pool only needs to cover the
+ * requests being written concurrently.
+ */
+public final class UniversityServer implements Closeable {
+	private static final int BACKLOG = 4096;
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Logger logger = Logger.getLogger("University");
+
+	private final University university;
+	private final HttpServer server;
+	private final ExecutorService pool;
+
+	private interface Handler {
+		void handle(HttpExchange exchange, String argument) throws IOException, Failure;
+	}
+
+	/**
+	 * Thrown to answer a request with an error status
+	 */
+	private static final class Failure extends Exception {
+		private static final long serialVersionUID = 1L;
+		final int status;
+
+		Failure(int status, String message) {
+			super(message, null, false, false);
+			this.status = status;
+		}
+	}
+
+	private UniversityServer(University university, InetSocketAddress address, int threads) throws IOException {
+		this.university = university;
+		AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), r -> {
+					Thread t = new Thread(r, "university-http-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		pool = executor;
+		server = HttpServer.create(address, BACKLOG);
+		server.setExecutor(pool);
+		route("/student/", this::student);
+		route("/course/", this::course);
+		route("/studyPlan/", this::studyPlan);
+		route("/attendees/", this::attendees);
+		route("/studentAvg/", this::studentAvg);
+		route("/courseAvg/", this::courseAvg);
+		route("/topStudents", this::topStudents);
+		server.start();
+	}
+
+	/**
+	 * Starts a server for a university
+	 *
+	 * @param university	the university
+	 * @param address		address to listen on, port 0 selects a free port
+	 * @param threads		number of threads serving the requests
+	 * @return the running server
+	 * @throws IOException if the address cannot be bound
+	 */
+	static UniversityServer start(University university, InetSocketAddress address, int threads) throws IOException {
+		if(threads <= 0) throw new IllegalArgumentException("Invalid number of threads " + threads);
+		return new UniversityServer(university, address, threads);
+	}
+
+	/**
+	 * Retrieves the address the server is listening on
+	 *
+	 * @return the address, with the actual port
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Stops the server, waiting at most one second for the requests in progress
+	 */
+	@Override
+	public void close() {
+		server.stop(1);
+		pool.shutdown();
+	}
+
+	private void route(String path, Handler handler) {
+		server.createContext(path, exchange -> {
+			try {
+				if(! "GET".equals(exchange.getRequestMethod())) throw new Failure(405, "Method not allowed");
+				String argument = exchange.getRequestURI().getPath().substring(path.length());
+				handler.handle(exchange, argument);
+			} catch(Failure e) {
+				sendError(exchange, e.status, e.getMessage());
+			} catch(RuntimeException e) {
+				logger.log(Level.SEVERE, "ERROR: cannot answer " + exchange.getRequestURI(), e);
+				// once the headers are sent the body is incomplete: the server then drops 
+				// the connection without terminating the body, so that the client notices
+				if(exchange.getResponseCode() >= 0) throw e;
+				sendError(exchange, 500, "Internal error");
+			}
+			exchange.close();	// completes the body
+		});
+	}
+
+	// Endpoints
+
+	private void student(HttpExchange exchange, String id) throws IOException, Failure {
+		Student s = student(id);
+		try(Writer out = begin(exchange)) {
+			writeStudent(s, out);
+		}
+	}
+
+	private void course(HttpExchange exchange, String code) throws IOException, Failure {
+		Course c = course(code);
+		try(Writer out = begin(exchange)) {
+			writeCourse(c, out);
+		}
+	}
+
+	private void studyPlan(HttpExchange exchange, String id) throws IOException, Failure {
+		Student s = student(id);
+		try(Writer out = begin(exchange)) {
+			out.write('[');
+			String separator = "";
+			for(Course c : s.courseList()) {
+				if(c == null) continue;	// withdrawn
+				out.write(separator);
+				writeCourse(c, out);
+				separator = ",";
+			}
+			out.write(']');
+		}
+	}
+
+	private void attendees(HttpExchange exchange, String code) throws IOException, Failure {
+		Course c = course(code);
+		try(Writer out = begin(exchange)) {
+			out.write('[');
+			String separator = "";
+			for(Student s : c.attendeeList()) {
+				if(s == null) continue;	// withdrawn
+				out.write(separator);
+				writeStudent(s, out);
+				separator = ",";
+			}
+			out.write(']');
+		}
+	}
+
+	private void studentAvg(HttpExchange exchange, String id) throws IOException, Failure {
+		Student s = student(id);
+		try(Writer out = begin(exchange)) {
+			out.append("{\"id\":").append(String.valueOf(s.getId()))
+				.append(",\"average\":").append(number(s.average())).append('}');
+		}
+	}
+
+	private void courseAvg(HttpExchange exchange, String code) throws IOException, Failure {
+		Course c = course(code);
+		try(Writer out = begin(exchange)) {
+			out.append("{\"code\":").append(String.valueOf(c.getCode()))
+				.append(",\"average\":").append(number(c.average())).append('}');
+		}
+	}
+
+	private void topStudents(HttpExchange exchange, String rest) throws IOException, Failure {
+		if(! rest.isEmpty()) throw new Failure(404, "Not found");
+		int k = 3;
+		String query = exchange.getRequestURI().getRawQuery();
+		if(query != null) {
+			if(! query.startsWith("k=")) throw new Failure(400, "Unknown parameter");
+			k = parse(query.substring(2));
+		}
+		int[] top = university.topIndexes(k);
+		try(Writer out = begin(exchange)) {
+			out.write('[');
+			String separator = "";
+			for(int i=0; i<top.length; ++i) {
+				Student s = university.studentAt(top[i]);
+				if(s == null) continue;	// expelled after the ranking was read
+				out.write(separator);
+				separator = ",";
+				out.append("{\"id\":").append(String.valueOf(s.getId()))
+					.append(",\"first\":").append(quote(s.getFirst()))
+					.append(",\"last\":").append(quote(s.getLast()))
+					.append(",\"score\":").append(number(s.getScore())).append('}');
+			}
+			out.write(']');
+		}
+	}
+
+	// Helpers
+
+	private Student student(String id) throws Failure {
+		Student s = university.studentAt(parse(id) - University.INITIAL_ID);
+		if(s == null) throw new Failure(404, "Student " + id + " not found");
+		return s;
+	}
+
+	private Course course(String code) throws Failure {
+		Course c = university.courseAt(parse(code) - University.INITIAL_CODE);
+		if(c == null) throw new Failure(404, "Course " + code + " not found");
+		return c;
+	}
+
+	private static int parse(String number) throws Failure {
+		try {
+			return Integer.parseInt(number);
+		} catch(NumberFormatException e) {
+			throw new Failure(400, "Invalid number " + number);
+		}
+	}
+
+	/**
+	 * Sends the headers of a successful response, whose body is streamed.
+	 * Closing the writer only flushes it: the body is completed by the route,
+	 * if the handler succeeds.
+	 */
+	private static Writer begin(HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(200, 0);
+		OutputStream body = new FilterOutputStream(exchange.getResponseBody()) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+		return new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = ("{\"error\":" + quote(message) + "}").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static void writeStudent(Student s, Writer out) throws IOException {
+		out.append("{\"id\":").append(String.valueOf(s.getId()))
+			.append(",\"first\":").append(quote(s.getFirst()))
+			.append(",\"last\":").append(quote(s.getLast())).append('}');
+	}
+
+	private static void writeCourse(Course c, Writer out) throws IOException {
+		out.append("{\"code\":").append(String.valueOf(c.getCode()))
+			.append(",\"title\":").append(quote(c.getTitle()))
+			.append(",\"teacher\":").append(quote(c.getTeacher())).append('}');
+	}
+
+	private static String number(double x) {
+		return Double.isNaN(x) ? "null" : String.valueOf(x);
+	}
+
+	/**
+	 * Encodes a string as a JSON string literal
+	 */
+	static String quote(String s) {
+		StringBuilder res = new StringBuilder(s.length() + 2).append('"');
+		for(int i=0; i<s.length(); ++i) {
+			char ch = s.charAt(i);
+			switch(ch) {
+			case '"': res.append("\\\""); break;
+			case '\\': res.append("\\\\"); break;
+			case '\n': res.append("\\n"); break;
+			case '\r': res.append("\\r"); break;
+			case '\t': res.append("\\t"); break;
+			default:
+				if(ch < 0x20) res.append(String.format("\\u%04x", (int) ch));
+				else res.append(ch);
+			}
+		}
+		return res.append('"').toString();
+	}
+}
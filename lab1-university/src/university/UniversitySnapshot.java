@@ -0,0 +1,431 @@
+package university;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable, consistent view of a {@link University} at a given epoch,
+ * obtained by means of {@link University#snapshot()}.
+ *
+ * The view reflects all the operations completed before it was taken
+ * and none of the following ones; its queries return the same results
+ * that the corresponding methods of {@link University} returned at that time.
+ * Queries on unknown students or courses return an empty string,
+ * without logging.
+ *
+ * Students and courses are kept in persistent vectors and the ranking
+ * in a persistent treap, so the snapshot of a new epoch shares with the
+ * previous one everything but the students and courses changed in between.
+ * Study plans and attendees are persistent vectors too, with the same slots
+ * as the lists of the university, so that a withdrawal copies only the
+ * path to the slot it frees.
+ *
+ * Instances are immutable, hence thread-safe; queries never lock.
+ */
+public final class UniversitySnapshot {
+
+	/**
+	 * State of a student at the epoch
+	 */
+	private static final class StudentState {
+		final int id;
+		final String first;
+		final String last;
+		final PersistentVector<Long> plan;	// course and slot among its attendees, null if withdrawn
+		final int enrolled;
+		final long sum;
+		final int taken;
+
+		StudentState(int id, String first, String last, PersistentVector<Long> plan, int enrolled, long sum, int taken) {
+			this.id = id;
+			this.first = first;
+			this.last = last;
+			this.plan = plan;
+			this.enrolled = enrolled;
+			this.sum = sum;
+			this.taken = taken;
+		}
+
+		StudentState registered(int slot, int course, int courseSlot) {
+			return new StudentState(id, first, last, plan.set(slot, entry(course, courseSlot)), enrolled + 1, sum, taken);
+		}
+
+		StudentState examined(int grade) {
+			return new StudentState(id, first, last, plan, enrolled, sum + grade, taken + 1);
+		}
+
+		StudentState withdrawn(int slot) {
+			return new StudentState(id, first, last, plan.set(slot, null), enrolled - 1, sum, taken);
+		}
+
+		double average() {
+			return taken == 0 ? Double.NaN : sum / (double) taken;
+		}
+
+		double score() {
+			return Student.score(average(), taken, enrolled);
+		}
+
+		@Override
+		public String toString() {
+			return id + " " + first + " " + last;
+		}
+	}
+
+	/**
+	 * State of a course at the epoch
+	 */
+	private static final class CourseState {
+		final int code;
+		final String title;
+		final String teacher;
+		final PersistentVector<Integer> attendees;	// dense indexes of the students, null if withdrawn
+		final long sum;
+		final int taken;
+
+		CourseState(int code, String title, String teacher, PersistentVector<Integer> attendees, long sum, int taken) {
+			this.code = code;
+			this.title = title;
+			this.teacher = teacher;
+			this.attendees = attendees;
+			this.sum = sum;
+			this.taken = taken;
+		}
+
+		CourseState registered(int slot, int student) {
+			return new CourseState(code, title, teacher, attendees.set(slot, student), sum, taken);
+		}
+
+		CourseState examined(int grade) {
+			return new CourseState(code, title, teacher, attendees, sum + grade, taken + 1);
+		}
+
+		CourseState withdrawn(int slot, int student) {
+			Integer s = attendees.get(slot);
+			if(s == null || s != student) return this;	// the slot has already been taken by a later registration
+			return new CourseState(code, title, teacher, attendees.set(slot, null), sum, taken);
+		}
+
+		double average() {
+			return taken == 0 ? Double.NaN : sum / (double) taken;
+		}
+
+		@Override
+		public String toString() {
+			return code + "," + title + "," + teacher;
+		}
+	}
+
+	private static long entry(int course, int courseSlot) {
+		return ((long) course << 32) | (courseSlot & 0xFFFFFFFFL);
+	}
+
+	private static int course(long entry) {
+		return (int) (entry >>> 32);
+	}
+
+	private static int courseSlot(long entry) {
+		return (int) entry;
+	}
+
+	private final String name;
+	private final String rector;
+	private final long epoch;
+	private final PersistentVector<StudentState> students;
+	private final PersistentVector<CourseState> courses;
+	private final PersistentRanking ranking;	// keyed by -score
+
+	private UniversitySnapshot(String name, String rector, long epoch, PersistentVector<StudentState> students,
+			PersistentVector<CourseState> courses, PersistentRanking ranking) {
+		this.name = name;
+		this.rector = rector;
+		this.epoch = epoch;
+		this.students = students;
+		this.courses = courses;
+		this.ranking = ranking;
+	}
+
+	/**
+	 * Builds the snapshot of the whole state of a university,
+	 * no operation must be in progress
+	 *
+	 * @param u		the university
+	 * @param epoch	epoch of the snapshot
+	 * @return the snapshot
+	 */
+	static UniversitySnapshot of(University u, long epoch) {
+		int numStudents = u.studentSlots();
+		int numCourses = u.courseSlots();
+		long[] studentSum = new long[numStudents];
+		int[] studentTaken = new int[numStudents];
+		long[] courseSum = new long[numCourses];
+		int[] courseTaken = new int[numCourses];
+		ExamTable exams = u.examTable();
+		int rows = exams.size();
+		ExamTable.Columns columns = exams.columns();
+		for(int r=0; r<rows; ++r) {
+			studentSum[columns.student[r]] += columns.grade[r];
+			studentTaken[columns.student[r]]++;
+			courseSum[columns.course[r]] += columns.grade[r];
+			courseTaken[columns.course[r]]++;
+		}
+
+		PersistentVector.Editor<StudentState> students = PersistentVector.<StudentState>empty().edit();
+		PersistentRanking ranking = PersistentRanking.EMPTY;
+		for(int i=0; i<numStudents; ++i) {
+			Student s = u.studentAt(i);
+			if(s == null) continue;
+			PersistentVector.Editor<Long> plan = PersistentVector.<Long>empty().edit();
+			int enrolled = 0;
+			List<Course> list = s.courseList();
+			for(int slot=0; slot<list.size(); ++slot) {
+				Course c = list.get(slot);
+				if(c == null) continue;
+				int course = c.getCode() - University.INITIAL_CODE;
+				plan.set(slot, entry(course, EnrollmentIndex.courseSlot(u.enrollmentSlots(i, course))));
+				enrolled++;
+			}
+			StudentState state = new StudentState(s.getId(), s.getFirst(), s.getLast(), plan.done(), enrolled, studentSum[i], studentTaken[i]);
+			students.set(i, state);
+			if(Student.isValid(state.score())) ranking = ranking.with(i, -state.score());
+		}
+		PersistentVector.Editor<CourseState> courses = PersistentVector.<CourseState>empty().edit();
+		for(int i=0; i<numCourses; ++i) {
+			Course c = u.courseAt(i);
+			if(c == null) continue;
+			PersistentVector.Editor<Integer> attendees = PersistentVector.<Integer>empty().edit();
+			List<Student> list = c.attendeeList();
+			for(int slot=0; slot<list.size(); ++slot) {
+				Student s = list.get(slot);
+				if(s != null) attendees.set(slot, s.getId() - University.INITIAL_ID);
+			}
+			courses.set(i, new CourseState(c.getCode(), c.getTitle(), c.getTeacher(), attendees.done(), courseSum[i], courseTaken[i]));
+		}
+		return new UniversitySnapshot(u.getName(), u.getRector(), epoch, students.done(), courses.done(), ranking);
+	}
+
+	/**
+	 * Builds the snapshot of the following epoch by applying the operations
+	 * completed in between
+	 *
+	 * @param epoch		epoch of the new snapshot
+	 * @param rector	current rector
+	 * @param changes	the operations, in the order they were recorded
+	 * @return the new snapshot
+	 */
+	UniversitySnapshot apply(long epoch, String rector, Collection<UniversityEvent> changes) {
+		PersistentVector.Editor<StudentState> newStudents = students.edit();
+		PersistentVector.Editor<CourseState> newCourses = courses.edit();
+		Set<Integer> changed = new LinkedHashSet<>();	// students whose score may have changed
+
+		// new students and courses are recorded before any operation on them
+		for(UniversityEvent e : changes) {
+			int s = e.getStudentId() - University.INITIAL_ID;
+			int c = e.getCourseCode() - University.INITIAL_CODE;
+			switch(e.getType()) {
+			case ENROLL:
+				newStudents.set(s, new StudentState(e.getStudentId(), e.getFirst(), e.getSecond(), PersistentVector.empty(), 0, 0, 0));
+				break;
+			case ACTIVATE:
+				newCourses.set(c, new CourseState(e.getCourseCode(), e.getFirst(), e.getSecond(), PersistentVector.empty(), 0, 0));
+				break;
+			case REGISTER:
+				int courseSlot = EnrollmentIndex.courseSlot(e.slots());
+				newStudents.set(s, newStudents.get(s).registered(EnrollmentIndex.studentSlot(e.slots()), c, courseSlot));
+				newCourses.set(c, newCourses.get(c).registered(courseSlot, s));
+				changed.add(s);
+				break;
+			case EXAM:
+				newStudents.set(s, newStudents.get(s).examined(e.getGrade()));
+				newCourses.set(c, newCourses.get(c).examined(e.getGrade()));
+				changed.add(s);
+				break;
+			case WITHDRAW:
+				newStudents.set(s, newStudents.get(s).withdrawn(EnrollmentIndex.studentSlot(e.slots())));
+				newCourses.set(c, newCourses.get(c).withdrawn(EnrollmentIndex.courseSlot(e.slots()), s));
+				changed.add(s);
+				break;
+			case EXPEL:
+				StudentState expelled = newStudents.get(s);
+				for(int i=0; i<expelled.plan.size(); ++i) {
+					Long entry = expelled.plan.get(i);
+					if(entry == null) continue;
+					newCourses.set(course(entry), newCourses.get(course(entry)).withdrawn(courseSlot(entry), s));
+				}
+				newStudents.set(s, null);
+				changed.add(s);
+				break;
+			default:
+			}
+		}
+
+		PersistentRanking newRanking = ranking;
+		for(int s : changed) {
+			StudentState before = students.get(s);
+			if(before != null && Student.isValid(before.score())) newRanking = newRanking.without(s, -before.score());
+			StudentState after = newStudents.get(s);
+			if(after != null && Student.isValid(after.score())) newRanking = newRanking.with(s, -after.score());
+		}
+		return new UniversitySnapshot(name, rector, epoch, newStudents.done(), newCourses.done(), newRanking);
+	}
+
+	/**
+	 * Epoch of the snapshot; snapshots of later epochs include more operations
+	 *
+	 * @return the epoch
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Getter for the name of the university
+	 *
+	 * @return name of university
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Retrieves the rector of the university
+	 *
+	 * @return name of the rector
+	 */
+	public String getRector() {
+		return rector;
+	}
+
+	/**
+	 * Retrieves the information for a given student,
+	 * formatted as in {@link University#student(int)}
+	 *
+	 * @param id the ID of the student
+	 * @return information about the student
+	 */
+	public String student(int id) {
+		StudentState s = students.get(id - University.INITIAL_ID);
+		return s == null ? "" : s.toString();
+	}
+
+	/**
+	 * Retrieves the information for a given course,
+	 * formatted as in {@link University#course(int)}
+	 *
+	 * @param code unique code of the course
+	 * @return information about the course
+	 */
+	public String course(int code) {
+		CourseState c = courses.get(code - University.INITIAL_CODE);
+		return c == null ? "" : c.toString();
+	}
+
+	/**
+	 * Retrieves the study plan for a student,
+	 * formatted as in {@link University#studyPlan(int)}
+	 *
+	 * @param studentID id of the student
+	 * @return the list of courses the student is registered for
+	 */
+	public String studyPlan(int studentID) {
+		StudentState s = students.get(studentID - University.INITIAL_ID);
+		if(s == null) return "";
+		StringBuilder result = new StringBuilder();
+		for(int i=0; i<s.plan.size(); ++i) {
+			Long entry = s.plan.get(i);
+			if(entry != null) result.append(courses.get(course(entry))).append("\n");	// null if withdrawn
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Retrieves the list of attendees of a course,
+	 * formatted as in {@link University#listAttendees(int)}
+	 *
+	 * @param courseCode unique id of the course
+	 * @return list of attendees separated by "\n"
+	 */
+	public String listAttendees(int courseCode) {
+		CourseState c = courses.get(courseCode - University.INITIAL_CODE);
+		if(c == null) return "";
+		StringBuilder result = new StringBuilder();
+		for(int i=0; i<c.attendees.size(); ++i) {
+			Integer s = c.attendees.get(i);
+			if(s != null) result.append(students.get(s)).append("\n");	// null if withdrawn
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Computes the average grade for a student,
+	 * formatted as in {@link University#studentAvg(int)}
+	 *
+	 * @param studentId the ID of the student
+	 * @return the average grade formatted as a string.
+	 */
+	public String studentAvg(int studentId) {
+		StudentState s = students.get(studentId - University.INITIAL_ID);
+		if(s == null) return "";
+		double avg = s.average();
+		if(! Student.isValid(avg)) return String.format("Student %d hasn't taken any exams", s.id);
+		return String.format("Student %d : %.1f", s.id, avg);
+	}
+
+	/**
+	 * Computes the average grade for a course,
+	 * formatted as in {@link University#courseAvg(int)}
+	 *
+	 * @param courseId	course code
+	 * @return the course average formatted as a string
+	 */
+	public String courseAvg(int courseId) {
+		CourseState c = courses.get(courseId - University.INITIAL_CODE);
+		if(c == null) return "";
+		double avg = c.average();
+		if(! Course.isValid(avg)) return String.format("No student has taken the exam in %s", c.title);
+		return String.format("The average for the course %s is: %.1f", c.title, avg);
+	}
+
+	/**
+	 * Retrieve information for the best three students,
+	 * formatted as in {@link University#topThreeStudents()}
+	 *
+	 * @return info on the best three students.
+	 */
+	public String topThreeStudents() {
+		return topStudents(3);
+	}
+
+	/**
+	 * Retrieve information for the {@code k} students with the highest score,
+	 * formatted as in {@link University#topStudents(int)}
+	 *
+	 * @param k	the number of students
+	 * @return info on the best {@code k} students.
+	 */
+	public String topStudents(int k) {
+		StringBuilder res = new StringBuilder();
+		int n = Math.min(k, ranking.size());
+		for(int i=0; i<n; ++i) {
+			StudentState s = students.get(ranking.select(i));
+			res.append(s.last).append(" ").append(s.first).append(" : ").append(s.score()).append("\n");
+		}
+		return res.toString();
+	}
+
+	/**
+	 * Retrieves the position of a student in the award ranking
+	 *
+	 * @param studentId the ID of the student
+	 * @return the rank of the student (1 for the highest score),
+	 * 			or {@code -1} if the student has not taken any exam
+	 */
+	public int rankOf(int studentId) {
+		int index = studentId - University.INITIAL_ID;
+		StudentState s = students.get(index);
+		if(s == null || ! Student.isValid(s.score())) return -1;
+		return ranking.rank(index, -s.score()) + 1;
+	}
+}
@@ -0,0 +1,240 @@
+package university;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Durable storage of the state of a {@link University} in a directory.
+ * 
+ * The directory contains a snapshot ({@value #SNAPSHOT}) and a sequence of
+ * write-ahead logs ({@code wal-N.log}) recording the operations performed
+ * after the snapshot was taken.
+ * 
+ * The log is flushed and forced to the storage device every few milliseconds
+ * (group commit) by a background thread, which also takes a new snapshot
+ * when the log grows too large.
+ * 
+ * Snapshots are taken while the university is being modified: the log
+ * is switched to a new generation first, then the snapshot is written,
+ * then the old logs are deleted. Operations recorded in the new log may 
+ * then be already included in the snapshot, so replaying them
+ * must leave the state unchanged. Since enrollments and activations are
+ * recorded before they are applied, the log is switched while no operation
+ * is in progress, so that the old log contains only applied operations;
+ * the numbers of students, courses and exams included in the snapshot are
+ * taken at the same moment, so that every exam refers to an included
+ * student and course, and the following exams are all in the new log.
+ */
+class UniversityStore implements Closeable {
+	private static final String SNAPSHOT = "snapshot.bin";
+	private static final String WAL_PREFIX = "wal-";
+	private static final String WAL_SUFFIX = ".log";
+	private static final long FLUSH_MILLIS = 10;
+	private static final long CHECKPOINT_BYTES = 256L << 20;
+
+	private static final Logger logger = Logger.getLogger("University");
+
+	private final Path directory;
+	private final University university;
+	private volatile WriteAheadLog wal;
+	private int generation;
+	private final ScheduledExecutorService flusher;
+
+	private UniversityStore(Path directory, University university, int generation) throws IOException {
+		this.directory = directory;
+		this.university = university;
+		this.generation = generation;
+		this.wal = new WriteAheadLog(walFile(generation));
+		flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "university-wal");
+			t.setDaemon(true);
+			return t;
+		});
+		flusher.scheduleWithFixedDelay(this::groupCommit, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Restores a university from a directory, or creates a new one if the directory is empty.
+	 * 
+	 * The snapshot is loaded first, then the logs written after it are replayed.
+	 * 
+	 * @param directory	the directory
+	 * @param name		name of the university, used if there is no previous state
+	 * @return the restored university, attached to the store
+	 * @throws IOException in case of read errors
+	 */
+	static University open(Path directory, String name) throws IOException {
+		Files.createDirectories(directory);
+		Path snapshot = directory.resolve(SNAPSHOT);
+		University u;
+		int first = 0;
+		int examRows = 0;
+		if(Files.exists(snapshot)) {
+			Snapshot s = Snapshot.load(snapshot);
+			u = s.university;
+			first = s.walGeneration;
+			examRows = s.examRows;
+		} else {
+			u = new University(name);
+			Snapshot.write(u, snapshot, first, new Snapshot.Extent(u));	// records the name
+		}
+		int next = first;
+		for(int g : generations(directory)) {
+			if(g < first) {
+				Files.delete(walFile(directory, g));		// left over by an interrupted checkpoint
+				continue;
+			}
+			WriteAheadLog.replay(walFile(directory, g), u, examRows);
+			next = g + 1;
+		}
+		u.rebuildIndexes();
+		u.attach(new UniversityStore(directory, u, next));
+		return u;
+	}
+
+	void rector(String rector) {
+		try {
+			while(! wal.rector(rector));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void enrolled(int id, String first, String last) {
+		try {
+			while(! wal.enrolled(id, first, last));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void activated(int code, String title, String teacher) {
+		try {
+			while(! wal.activated(code, title, teacher));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void registered(int studentId, int courseCode) {
+		try {
+			while(! wal.registered(studentId, courseCode));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void examined(int row, int studentId, int courseCode, int grade) {
+		try {
+			while(! wal.examined(row, studentId, courseCode, grade));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void withdrawn(int studentId, int courseCode) {
+		try {
+			while(! wal.withdrawn(studentId, courseCode));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void expelled(int studentId) {
+		try {
+			while(! wal.expelled(studentId));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the logged operations and forces them to the storage device
+	 * 
+	 * @throws IOException in case of write errors
+	 */
+	void sync() throws IOException {
+		wal.flush(true);
+	}
+
+	/**
+	 * Takes a new snapshot and deletes the logs it makes obsolete
+	 * 
+	 * @throws IOException in case of write errors
+	 */
+	synchronized void checkpoint() throws IOException {
+		int next = generation + 1;
+		WriteAheadLog old = wal;
+		WriteAheadLog current = new WriteAheadLog(walFile(next));
+		Snapshot.Extent extent = university.quiesce(() -> {
+			wal = current;
+			return new Snapshot.Extent(university);
+		});
+		old.close();
+		generation = next;
+
+		Snapshot.write(university, directory.resolve(SNAPSHOT), next, extent);
+		for(int g : generations(directory)) {
+			if(g < next) Files.delete(walFile(g));
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		wal.close();
+	}
+
+	private void groupCommit() {
+		try {
+			WriteAheadLog current = wal;
+			current.flush(true);
+			if(current.size() > CHECKPOINT_BYTES) {
+				checkpoint();
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "ERROR: cannot write the log of university " + university.getName(), e);
+		}
+	}
+
+	private Path walFile(int g) {
+		return walFile(directory, g);
+	}
+
+	private static Path walFile(Path directory, int g) {
+		return directory.resolve(WAL_PREFIX + g + WAL_SUFFIX);
+	}
+
+	private static List<Integer> generations(Path directory) throws IOException {
+		List<Integer> result = new ArrayList<>();
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, WAL_PREFIX + "*" + WAL_SUFFIX)) {
+			for(Path f : files) {
+				String n = f.getFileName().toString();
+				try {
+					result.add(Integer.parseInt(n.substring(WAL_PREFIX.length(), n.length() - WAL_SUFFIX.length())));
+				} catch(NumberFormatException e) {
+					// not a log file
+				}
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+}
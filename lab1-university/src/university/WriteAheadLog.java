@@ -0,0 +1,261 @@
+package university;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of the operations that modify a {@link University}.
+ * 
+ * Each record is made of the length and CRC32 checksum of the payload followed
+ * by the payload itself: a type byte and the arguments of the operation.
+ * Records are collected in a buffer and written to the file channel in groups 
+ * (group commit), either when the buffer is full or when {@link #flush} is called.
+ * 
+ * Replay stops at the first incomplete or corrupted record, i.e. the tail
+ * of a write interrupted by a crash.
+ * 
+ * The append methods return {@code false} if the log has been closed,
+ * e.g. because it has been replaced by a new log during a checkpoint.
+ */
+class WriteAheadLog implements Closeable {
+	private static final byte RECTOR = 0;
+	private static final byte ENROLL = 1;
+	private static final byte ACTIVATE = 2;
+	private static final byte REGISTER = 3;
+	private static final byte EXAM = 4;
+	private static final byte WITHDRAW = 5;
+	private static final byte EXPEL = 6;
+
+	private static final int HEADER = 8;	// length + checksum
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final CRC32 crc = new CRC32();
+	private long written;
+	private boolean dirty;
+	private boolean closed;
+	private int start;		// position of the record being written
+
+	/**
+	 * Opens a log file for appending, creating it if needed
+	 * 
+	 * @param file path of the log
+	 * @throws IOException in case of errors opening the file
+	 */
+	WriteAheadLog(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		written = channel.size();
+	}
+
+	synchronized boolean rector(String rector) throws IOException {
+		if(closed) return false;
+		byte[] r = bytes(rector);
+		ByteBuffer b = begin(1 + 4 + r.length);
+		b.put(RECTOR);
+		putString(b, r);
+		end();
+		return true;
+	}
+
+	synchronized boolean enrolled(int id, String first, String last) throws IOException {
+		if(closed) return false;
+		byte[] f = bytes(first);
+		byte[] l = bytes(last);
+		ByteBuffer b = begin(1 + 4 + 8 + f.length + l.length);
+		b.put(ENROLL).putInt(id);
+		putString(b, f);
+		putString(b, l);
+		end();
+		return true;
+	}
+
+	synchronized boolean activated(int code, String title, String teacher) throws IOException {
+		if(closed) return false;
+		byte[] t = bytes(title);
+		byte[] p = bytes(teacher);
+		ByteBuffer b = begin(1 + 4 + 8 + t.length + p.length);
+		b.put(ACTIVATE).putInt(code);
+		putString(b, t);
+		putString(b, p);
+		end();
+		return true;
+	}
+
+	synchronized boolean registered(int studentId, int courseCode) throws IOException {
+		if(closed) return false;
+		begin(1 + 8).put(REGISTER).putInt(studentId).putInt(courseCode);
+		end();
+		return true;
+	}
+
+	synchronized boolean examined(int row, int studentId, int courseCode, int grade) throws IOException {
+		if(closed) return false;
+		begin(1 + 12 + 1).put(EXAM).putInt(row).putInt(studentId).putInt(courseCode).put((byte) grade);
+		end();
+		return true;
+	}
+
+	synchronized boolean withdrawn(int studentId, int courseCode) throws IOException {
+		if(closed) return false;
+		begin(1 + 8).put(WITHDRAW).putInt(studentId).putInt(courseCode);
+		end();
+		return true;
+	}
+
+	synchronized boolean expelled(int studentId) throws IOException {
+		if(closed) return false;
+		begin(1 + 4).put(EXPEL).putInt(studentId);
+		end();
+		return true;
+	}
+
+	/**
+	 * Writes the buffered records to the file
+	 * 
+	 * @param force	if {@code true} the records are also forced to the storage device
+	 * @throws IOException in case of write errors
+	 */
+	synchronized void flush(boolean force) throws IOException {
+		if(closed) return;
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			written += channel.write(buffer);
+		}
+		buffer.clear();
+		if(force && dirty) {
+			channel.force(false);
+			dirty = false;
+		}
+	}
+
+	/**
+	 * Size of the log, including the buffered records
+	 * 
+	 * @return size in bytes
+	 */
+	synchronized long size() {
+		return written + buffer.position();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if(closed) return;
+		flush(true);
+		closed = true;
+		channel.close();
+	}
+
+	private ByteBuffer begin(int length) throws IOException {
+		if(HEADER + length > BUFFER_SIZE) {
+			throw new IOException("Record too large: " + length + " bytes");
+		}
+		if(buffer.remaining() < HEADER + length) {
+			flush(false);
+		}
+		start = buffer.position();
+		buffer.position(start + HEADER);
+		return buffer;
+	}
+
+	private void end() {
+		int end = buffer.position();
+		int length = end - start - HEADER;
+		ByteBuffer payload = buffer.duplicate();
+		payload.position(start + HEADER).limit(end);
+		crc.reset();
+		crc.update(payload);
+		buffer.putInt(start, length);
+		buffer.putInt(start + 4, (int) crc.getValue());
+		dirty = true;
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void putString(ByteBuffer b, byte[] s) {
+		b.putInt(s.length).put(s);
+	}
+
+	private static String getString(ByteBuffer b) {
+		byte[] s = new byte[b.getInt()];
+		b.get(s);
+		return new String(s, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Re-applies the operations recorded in a log file.
+	 * 
+	 * @param file		path of the log
+	 * @param u			the university the operations are applied to
+	 * @param examRows	number of exams already restored from the snapshot,
+	 * 					exam records with a lower row number are skipped
+	 * @return number of replayed records
+	 * @throws IOException in case of read errors
+	 */
+	static int replay(Path file, University u, int examRows) throws IOException {
+		int count = 0;
+		try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			CRC32 crc = new CRC32();
+			while(in.remaining() >= HEADER) {
+				int length = in.getInt();
+				int checksum = in.getInt();
+				if(length <= 0 || length > in.remaining()) break;	// torn write
+				ByteBuffer payload = in.slice();
+				payload.limit(length);
+				crc.reset();
+				crc.update(payload.duplicate());
+				if((int) crc.getValue() != checksum) break;			// corrupted tail
+				in.position(in.position() + length);
+				try {
+					apply(payload, u, examRows);
+				} catch(BufferUnderflowException e) {
+					break;
+				}
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static void apply(ByteBuffer r, University u, int examRows) {
+		switch(r.get()) {
+		case RECTOR:
+			u.restoreRector(getString(r));
+			break;
+		case ENROLL:
+			u.restoreStudent(r.getInt(), getString(r), getString(r));
+			break;
+		case ACTIVATE:
+			u.restoreCourse(r.getInt(), getString(r), getString(r));
+			break;
+		case REGISTER:
+			u.restoreRegistration(r.getInt(), r.getInt());
+			break;
+		case EXAM:
+			int row = r.getInt();
+			int studentId = r.getInt();
+			int courseCode = r.getInt();
+			int grade = r.get();
+			if(row >= examRows) u.restoreExam(studentId, courseCode, grade);
+			break;
+		case WITHDRAW:
+			u.restoreWithdrawal(r.getInt(), r.getInt());
+			break;
+		case EXPEL:
+			u.restoreExpulsion(r.getInt());
+			break;
+		default:
+			// unknown record: ignored
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestR10_Leaderboard {
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+		poli.enroll("Laura","Bianchi");
+
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.activate("Virology", "Roberto Burioni");
+
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.register(10001, 12);
+		poli.register(10002, 11);
+		poli.register(10003, 10);
+		poli.register(10003, 11);
+	}
+
+	@Test
+	public void testTopK() {
+		poli.exam(10000, 10, 25);	// 35
+		poli.exam(10001, 10, 26);	// 27 + 20/3
+		poli.exam(10001, 11, 28);
+		poli.exam(10003, 10, 26);	// 36
+		poli.exam(10003, 11, 26);
+
+		String[] rank = poli.topStudents(10).split("\n");
+		assertEquals("Expected three ranked students", 3, rank.length);
+		assertContained("Wrong top student", "Bianchi", rank[0]);
+		assertContained("Wrong second student", "Rossi", rank[1]);
+		assertContained("Wrong third student", "Verdi", rank[2]);
+
+		assertEquals("Wrong number of students", 1, poli.topStudents(1).split("\n").length);
+		assertEquals("Expected no students", "", poli.topStudents(0));
+	}
+
+	@Test
+	public void testRankAndPercentile() {
+		poli.exam(10000, 10, 25);
+		poli.exam(10003, 10, 26);
+		poli.exam(10003, 11, 26);
+
+		assertEquals("Wrong rank", 1, poli.rankOf(10003));
+		assertEquals("Wrong rank", 2, poli.rankOf(10000));
+		assertEquals("Student without exams should not be ranked", -1, poli.rankOf(10001));
+
+		assertEquals("Wrong percentile", 100.0, poli.percentile(10003), 0.001);
+		assertEquals("Wrong percentile", 50.0, poli.percentile(10000), 0.001);
+		assertTrue("Student without exams has no percentile", Double.isNaN(poli.percentile(10002)));
+
+		poli.register(10003, 12);	// bonus drops to 20/3
+		assertEquals("Rank not updated after registration", 2, poli.rankOf(10003));
+		assertEquals("Rank not updated after registration", 1, poli.rankOf(10000));
+	}
+
+	@Test
+	public void testRandomRanking() {
+		final int numStudents = 2000;
+		final int numCourses = 20;
+		University uni = new University(universityName);
+		for(int i=0; i<numStudents; ++i) uni.enroll("First" + i, "Last" + i);
+		for(int i=0; i<numCourses; ++i) uni.activate("Course" + i, "Teacher" + i);
+
+		Random rnd = new Random(42);
+		int[] enrolled = new int[numStudents];
+		int[] taken = new int[numStudents];
+		int[] sum = new int[numStudents];
+		for(int i=0; i<numStudents; ++i) {
+			for(int c=0; c<numCourses; ++c) {
+				if(rnd.nextInt(4)==0) {
+					uni.register(10000 + i, 10 + c);
+					enrolled[i]++;
+					if(rnd.nextBoolean()) {
+						int grade = 18 + rnd.nextInt(13);
+						uni.exam(10000 + i, 10 + c, grade);
+						taken[i]++;
+						sum[i] += grade;
+					}
+				}
+			}
+		}
+
+		Integer[] ranked = new Integer[numStudents];
+		int n = 0;
+		double[] score = new double[numStudents];
+		for(int i=0; i<numStudents; ++i) {
+			if(taken[i]==0) continue;
+			score[i] = sum[i]/(double)taken[i] + 10*taken[i]/(double)enrolled[i];
+			ranked[n++] = i;
+		}
+		Integer[] expected = Arrays.copyOf(ranked, n);
+		Arrays.sort(expected, Comparator.<Integer>comparingDouble(i -> -score[i]).thenComparing(i -> i));
+
+		for(int r=0; r<n; ++r) {
+			assertEquals("Wrong rank", r+1, uni.rankOf(10000 + expected[r]));
+		}
+		String[] top = uni.topStudents(5).split("\n");
+		for(int r=0; r<5; ++r) {
+			assertContained("Wrong top student", "Last" + expected[r] + " ", top[r]);
+		}
+	}
+}
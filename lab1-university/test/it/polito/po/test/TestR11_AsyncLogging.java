@@ -0,0 +1,111 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestR11_AsyncLogging {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+	private Logger ul;
+	private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+	@Before
+	public void setUp() {
+		poli = new University(universityName);
+
+		ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		ul.setFilter( r -> {
+			messages.add(r.getMessage());	// keep track of the attempted log
+			return false;					// but prevent publishing
+		});
+		ul.setLevel(Level.INFO);
+	}
+
+	@After
+	public void tearDown() {
+		poli.setAsyncLogging(false);
+		ul.setFilter(null);
+	}
+
+	@Test
+	public void testAsyncLogging() {
+		poli.setAsyncLogging(true);
+
+		final int n = 1000;
+		for(int i=0; i<n; ++i) {
+			poli.enroll("First" + i, "Last" + i);
+		}
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.exam(10000, 10, 27);
+		poli.flushLog();
+
+		assertEquals("Missing log records", n + 3, messages.size());
+		assertContained("Wrong log message", "Last0", messages.get(0));
+		assertContained("Wrong log message", "Last" + (n-1), messages.get(n-1));
+		assertContained("Wrong log message", "Object Oriented", messages.get(n));
+		assertContained("Wrong log message", "10000", messages.get(n+1));
+		assertContained("Wrong log message", "27", messages.get(n+2));
+	}
+
+	@Test
+	public void testBackToSync() {
+		poli.setAsyncLogging(true);
+		poli.enroll("Mario", "Rossi");
+		poli.setAsyncLogging(false);	// pending messages are written
+
+		assertEquals("Missing log record", 1, messages.size());
+
+		poli.enroll("Francesca", "Verdi");
+		assertEquals("Missing log record", 2, messages.size());
+		assertContained("Wrong log message", "Verdi", messages.get(1));
+	}
+
+	@Test
+	public void testSwitchWhileLogging() throws InterruptedException {
+		final int threads = 4;
+		final int perThread = 5000;
+		List<Thread> workers = new ArrayList<>();
+		for(int t=0; t<threads; ++t) {
+			Thread w = new Thread(() -> {
+				for(int i=0; i<perThread; ++i) {
+					poli.enroll("First" + i, "Last" + i);
+				}
+			});
+			workers.add(w);
+			w.start();
+		}
+		for(int k=0; workers.get(0).isAlive() || k < 2; ++k) {
+			poli.setAsyncLogging(k % 2 == 0);
+		}
+		for(Thread w : workers) w.join();
+		poli.setAsyncLogging(false);
+
+		assertEquals("Lost log records", threads * perThread, messages.size());
+	}
+
+	@Test
+	public void testDisabled() {
+		ul.setLevel(Level.OFF);
+		poli.setAsyncLogging(true);
+		poli.enroll("Mario", "Rossi");
+		poli.flushLog();
+
+		assertEquals("No message expected when logging is disabled", 0, messages.size());
+	}
+}
@@ -0,0 +1,145 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestR12_Concurrency {
+
+	static final String universityName = "Politecnico di Torino";
+	static final int THREADS = 64;
+	static final int STUDENTS = 20000;
+	static final int COURSES = 50;
+	static final int COURSES_PER_STUDENT = 5;
+
+	private University poli;
+	private ExecutorService pool;
+	private Logger ul;
+	private Level level;
+
+	@Before
+	public void setUp() {
+		ul = Logger.getLogger("University");
+		level = ul.getLevel();
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		pool = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+		ul.setLevel(level);
+	}
+
+	@Test
+	public void testConcurrentEnroll() throws Exception {
+		Set<Integer> ids = ConcurrentHashMap.newKeySet();
+		runAll(STUDENTS, i -> ids.add(poli.enroll("First" + i, "Last" + i)));
+
+		assertEquals("Duplicate student IDs", STUDENTS, ids.size());
+		for(int id=10000; id<10000+STUDENTS; ++id) {
+			assertTrue("Missing student ID " + id, ids.contains(id));
+			assertTrue("Missing student info for " + id, poli.student(id).startsWith(id + " First"));
+		}
+	}
+
+	@Test
+	public void testConcurrentRegisterAndExam() throws Exception {
+		for(int i=0; i<STUDENTS; ++i) poli.enroll("First" + i, "Last" + i);
+		Set<Integer> codes = ConcurrentHashMap.newKeySet();
+		runAll(COURSES, i -> codes.add(poli.activate("Course" + i, "Teacher" + i)));
+		assertEquals("Duplicate course codes", COURSES, codes.size());
+
+		// every registration is attempted twice, while readers list the attendees
+		runAll(2 * STUDENTS * COURSES_PER_STUDENT, i -> {
+			int r = i % (STUDENTS * COURSES_PER_STUDENT);
+			int student = 10000 + r / COURSES_PER_STUDENT;
+			poli.register(student, course(student, r % COURSES_PER_STUDENT));
+			if(i % 1000 == 0) poli.listAttendees(10 + i % COURSES);
+		});
+
+		int attendees = 0;
+		for(int c=10; c<10+COURSES; ++c) {
+			attendees += poli.listAttendees(c).split("\n").length;
+		}
+		assertEquals("Wrong number of registrations", STUDENTS * COURSES_PER_STUDENT, attendees);
+		for(int id=10000; id<10000+STUDENTS; id+=97) {
+			assertEquals("Wrong study plan for " + id, COURSES_PER_STUDENT, poli.studyPlan(id).split("\n").length);
+		}
+
+		runAll(STUDENTS * COURSES_PER_STUDENT, i -> {
+			int student = 10000 + i / COURSES_PER_STUDENT;
+			poli.exam(student, course(student, i % COURSES_PER_STUDENT), grade(student));
+		});
+
+		for(int id=10000; id<10000+STUDENTS; id+=97) {
+			assertEquals("Wrong average for " + id, String.format("Student %d : %.1f", id, (double)grade(id)), poli.studentAvg(id));
+		}
+		String[] top = poli.topStudents(3).split("\n");
+		assertEquals("Expected three top students", 3, top.length);
+		assertTrue("Wrong top score", top[0].endsWith(" : 40.0"));
+	}
+
+	@Test
+	public void testRankingWhileExpelling() throws Exception {
+		final int n = 5000;
+		int code = poli.activate("Object Oriented Programming", "James Gosling");
+		for(int i=0; i<n; ++i) {
+			int id = poli.enroll("First" + i, "Last" + i);
+			poli.register(id, code);
+			poli.exam(id, code, grade(id));
+		}
+
+		// the best students are expelled while others read the ranking
+		runAll(n, i -> {
+			if(i % 2 == 0) poli.expel(10000 + n - 1 - i);
+			else poli.topStudents(20);
+		});
+		assertEquals("Expected ten top students", 10, poli.topStudents(10).split("\n").length);
+	}
+
+	private static int course(int student, int k) {
+		return 10 + (student * 7 + k * 11) % COURSES;
+	}
+
+	private static int grade(int student) {
+		return 18 + student % 13;
+	}
+
+	private interface Task {
+		void run(int i) throws Exception;
+	}
+
+	private void runAll(int n, Task task) throws Exception {
+		int chunk = (n + THREADS - 1) / THREADS;
+		List<Callable<Void>> jobs = new ArrayList<>();
+		for(int t=0; t<THREADS; ++t) {
+			final int from = t * chunk;
+			final int to = Math.min(n, from + chunk);
+			jobs.add(() -> {
+				for(int i=from; i<to; ++i) task.run(i);
+				return null;
+			});
+		}
+		for(Future<Void> f : pool.invokeAll(jobs)) {
+			f.get();
+		}
+	}
+}
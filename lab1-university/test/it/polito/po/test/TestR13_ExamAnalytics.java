@@ -0,0 +1,140 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.GradeDistribution;
+import university.GradeReport;
+import university.University;
+
+public class TestR13_ExamAnalytics {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.activate("Java Virtual Machine", "James Gosling");
+		poli.activate("Virology", "Roberto Burioni");
+
+		for(int s=10000; s<10003; ++s) {
+			for(int c=10; c<14; ++c) {
+				poli.register(s, c);
+			}
+		}
+
+		poli.exam(10000, 10, 30);
+		poli.exam(10001, 10, 15);
+		poli.exam(10002, 10, 30);
+		poli.exam(10000, 11, 24);
+		poli.exam(10001, 11, 26);
+		poli.exam(10002, 12, 19);
+	}
+
+	@Test
+	public void testHistogram() {
+		int[] h = poli.gradeHistogram(10);
+		assertNotNull("Missing histogram", h);
+		assertEquals("Wrong histogram size", 31, h.length);
+		assertEquals("Wrong count for grade 30", 2, h[30]);
+		assertEquals("Wrong count for grade 15", 1, h[15]);
+		assertEquals("Wrong count for grade 18", 0, h[18]);
+
+		int[] empty = poli.gradeHistogram(13);
+		for(int n : empty) assertEquals("Expected no exams", 0, n);
+
+		assertNull("Course does not exist", poli.gradeHistogram(99));
+	}
+
+	@Test
+	public void testPassRate() {
+		assertEquals("Wrong pass rate", 2.0/3, poli.passRate(10), 0.001);
+		assertEquals("Wrong pass rate", 1.0, poli.passRate(11), 0.001);
+		assertTrue("Expected no pass rate", Double.isNaN(poli.passRate(13)));
+	}
+
+	@Test
+	public void testAverageByTeacher() {
+		Map<String,Double> avg = poli.averageByTeacher();
+		assertEquals("Wrong number of teachers", 2, avg.size());
+		assertEquals("Wrong average", 25.0, avg.get("Paul Krugman"), 0.001);
+		assertEquals("Wrong average", 23.0, avg.get("James Gosling"), 0.001);
+		assertFalse("Teacher without exams", avg.containsKey("Roberto Burioni"));
+	}
+
+	@Test
+	public void testGradeReport() {
+		GradeReport report = poli.gradeReport();
+		assertEquals("Wrong number of courses", 4, report.courses().size());
+
+		GradeDistribution macro = report.course(10);
+		assertEquals("Wrong count", 3, macro.count());
+		assertEquals("Wrong mean", 25.0, macro.mean(), 0.001);
+		assertEquals("Wrong median", 30.0, macro.median(), 0.001);
+		assertEquals("Wrong standard deviation", Math.sqrt(50.0), macro.standardDeviation(), 0.001);
+		assertEquals("Wrong pass rate", poli.passRate(10), macro.passRate(), 0.001);
+		assertEquals("Wrong percentile", 15.0, macro.percentile(0), 0.001);
+		assertEquals("Wrong percentile", 15.0, macro.percentile(33), 0.001);
+		assertEquals("Wrong percentile", 30.0, macro.percentile(34), 0.001);
+		assertArrayEquals("Wrong histogram", poli.gradeHistogram(10), macro.histogram());
+
+		GradeDistribution gosling = report.teacher("James Gosling");
+		assertEquals("Wrong count", 3, gosling.count());
+		assertEquals("Wrong mean", poli.averageByTeacher().get("James Gosling"), gosling.mean(), 0.001);
+		assertEquals("Wrong median", 24.0, gosling.median(), 0.001);
+		assertEquals("Wrong median", 25.0, report.course(11).median(), 0.001);
+
+		GradeDistribution virology = report.course(13);
+		assertEquals("Expected no exams", 0, virology.count());
+		assertTrue("Expected no mean", Double.isNaN(virology.mean()));
+		assertTrue("Expected no median", Double.isNaN(virology.median()));
+		assertEquals("Teacher without exams", 0, report.teacher("Roberto Burioni").count());
+
+		assertEquals("Wrong overall count", 6, report.overall().count());
+		assertNull("Course does not exist", report.course(99));
+	}
+
+	@Test
+	public void testGradeReportLarge() {
+		final int exams = 100_000;
+		for(int s=0; s<1000; ++s) {
+			int id = poli.enroll("First" + s, "Last" + s);
+			for(int c=10; c<14; ++c) poli.register(id, c);
+		}
+		for(int i=0; i<exams; ++i) {
+			poli.exam(10003 + i % 1000, 10 + i % 4, (i * 7) % 31);
+		}
+		GradeReport report = poli.gradeReport();
+		int total = 0;
+		for(int c=10; c<14; ++c) {
+			assertArrayEquals("Wrong histogram", poli.gradeHistogram(c), report.course(c).histogram());
+			total += report.course(c).count();
+		}
+		assertEquals("Wrong overall count", exams + 6, total);
+		assertEquals("Wrong overall count", total, report.overall().count());
+	}
+
+	@Test
+	public void testInvalidGrade() {
+		poli.exam(10000, 13, 31);
+		poli.exam(10000, 13, -1);
+		assertTrue("Invalid grades must be ignored", Double.isNaN(poli.passRate(13)));
+	}
+}
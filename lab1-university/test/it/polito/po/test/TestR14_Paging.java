@@ -0,0 +1,81 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestR14_Paging {
+
+	static final String universityName = "Politecnico di Torino";
+	static final int ATTENDEES = 250;
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.activate("Macro Economics", "Paul Krugman");
+		for(int i=0; i<ATTENDEES; ++i) {
+			int id = poli.enroll("First" + i, "Last" + i);
+			poli.register(id, 10);
+		}
+		poli.register(10000, 11);
+	}
+
+	@Test
+	public void testWriter() throws IOException {
+		StringWriter out = new StringWriter();
+		poli.listAttendees(10, out);
+		assertEquals("Wrong attendees written", poli.listAttendees(10), out.toString());
+
+		out = new StringWriter();
+		poli.studyPlan(10000, out);
+		assertEquals("Wrong study plan written", poli.studyPlan(10000), out.toString());
+	}
+
+	@Test
+	public void testPages() throws IOException {
+		StringBuilder all = new StringBuilder();
+		int offset = 0;
+		int pages = 0;
+		while(true) {
+			int n = poli.listAttendees(10, offset, 100, all);
+			if(n==0) break;
+			offset += n;
+			pages++;
+		}
+		assertEquals("Wrong number of pages", 3, pages);
+		assertEquals("Paged list differs from the full list", poli.listAttendees(10), all.toString());
+
+		String page = poli.listAttendees(10, 100, 2);
+		assertEquals("Wrong page", "10100 First100 Last100\n10101 First101 Last101\n", page);
+		assertEquals("Page beyond the end should be empty", "", poli.listAttendees(10, ATTENDEES, 10));
+
+		StringBuilder plan = new StringBuilder();
+		assertEquals("Wrong study plan page size", 1, poli.studyPlan(10000, 1, 10, plan));
+		assertEquals("Wrong study plan page", "11,Macro Economics,Paul Krugman\n", plan.toString());
+	}
+
+	@Test
+	public void testStreams() {
+		List<String> attendees = poli.attendees(10).collect(Collectors.toList());
+		assertEquals("Wrong number of attendees", ATTENDEES, attendees.size());
+		assertEquals("Wrong attendee", "10007 First7 Last7", attendees.get(7));
+
+		assertEquals("Wrong study plan", 2, poli.studyPlanCourses(10000).count());
+		assertEquals("Course does not exist", 0, poli.attendees(99).count());
+	}
+}
@@ -0,0 +1,170 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestR15_Persistence {
+
+	static final String universityName = "Politecnico di Torino";
+	private Path dir;
+
+	@Before
+	public void setUp() throws IOException {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		dir = Files.createTempDirectory("university");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try(Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	private static void populate(University poli) {
+		poli.setRector("Guido", "Saracco");
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.register(10002, 11);
+		poli.exam(10000, 10, 27);
+		poli.exam(10001, 10, 24);
+	}
+
+	@Test
+	public void testReopenFromLog() throws IOException {
+		String top;
+		try(University poli = University.open(dir, universityName)) {
+			populate(poli);
+			top = poli.topThreeStudents();
+		}
+
+		try(University poli = University.open(dir, "Another name")) {
+			assertEquals("Wrong name", universityName, poli.getName());
+			assertEquals("Wrong rector", "Guido Saracco", poli.getRector());
+			assertEquals("Wrong student", "10001 Francesca Verdi", poli.student(10001));
+			assertEquals("Wrong course", "11,Object Oriented Programming,James Gosling", poli.course(11));
+			assertEquals("Wrong study plan", 2, poli.studyPlan(10001).split("\n").length);
+			assertEquals("Wrong average", "Student 10000 : 27.0", poli.studentAvg(10000));
+			assertEquals("Wrong ranking", top, poli.topThreeStudents());
+
+			assertEquals("Wrong new ID", 10003, poli.enroll("Laura", "Bianchi"));
+			assertEquals("Wrong new code", 12, poli.activate("Virology", "Roberto Burioni"));
+		}
+	}
+
+	@Test
+	public void testReopenFromSnapshot() throws IOException {
+		try(University poli = University.open(dir, universityName)) {
+			populate(poli);
+			poli.checkpoint();
+			poli.register(10002, 10);
+			poli.exam(10002, 10, 30);
+			poli.exam(10001, 11, 18);
+			poli.sync();
+		}
+
+		try(University poli = University.open(dir, universityName)) {
+			assertEquals("Wrong rector", "Guido Saracco", poli.getRector());
+			assertEquals("Wrong study plan", 2, poli.studyPlan(10002).split("\n").length);
+			assertEquals("Wrong average", "The average for the course Macro Economics is: 27.0", poli.courseAvg(10));
+			assertEquals("Wrong average", "Student 10001 : 21.0", poli.studentAvg(10001));
+			assertEquals("Wrong exams", 3, poli.gradeHistogram(10)[30] + poli.gradeHistogram(10)[27] + poli.gradeHistogram(10)[24]);
+			assertEquals("Wrong rank", 2, poli.rankOf(10002));
+
+			poli.checkpoint();	// idempotent replay of the log
+		}
+
+		try(University poli = University.open(dir, universityName)) {
+			assertEquals("Wrong average", "The average for the course Macro Economics is: 27.0", poli.courseAvg(10));
+			assertEquals("Wrong study plan", 2, poli.studyPlan(10001).split("\n").length);
+		}
+	}
+
+	@Test
+	public void testConcurrentEnrollAndRegister() throws Exception {
+		final int n = 5000;
+		String course;
+		try(University poli = University.open(dir, universityName)) {
+			int code = poli.activate("Object Oriented Programming", "James Gosling");
+			course = poli.course(code);
+			Thread registrar = new Thread(() -> {
+				for(int id=10000; id<10000+n; ++id) {
+					while(poli.student(id).isEmpty()) Thread.onSpinWait();	// registers as soon as the student is visible
+					poli.register(id, code);
+				}
+			});
+			registrar.start();
+			for(int i=0; i<n; ++i) {
+				poli.enroll("First" + i, "Last" + i);
+				if(i == n/2) poli.checkpoint();
+			}
+			registrar.join();
+		}
+
+		try(University poli = University.open(dir, universityName)) {
+			for(int id=10000; id<10000+n; ++id) {
+				assertEquals("Lost registration of " + id, course, poli.studyPlan(id).trim());
+			}
+		}
+	}
+
+	@Test
+	public void testCheckpointWhileUpdating() throws Exception {
+		final int n = 3000;
+		String[] expected = new String[2 * n];
+		try(University poli = University.open(dir, universityName)) {
+			int first = poli.activate("Object Oriented Programming", "James Gosling");
+			Thread updater = new Thread(() -> {
+				for(int i=0; i<n; ++i) {
+					int code = poli.activate("Course" + i, "Teacher" + i);
+					int id = poli.enroll("First" + i, "Last" + i);
+					poli.register(id, code);
+					poli.register(id, first);
+					poli.exam(id, code, 18 + i % 13);
+				}
+			});
+			updater.start();
+			while(updater.isAlive()) {
+				poli.checkpoint();
+			}
+			updater.join();
+			for(int i=0; i<n; ++i) {
+				expected[2*i] = poli.studyPlan(10000 + i) + poli.studentAvg(10000 + i);
+				expected[2*i+1] = poli.courseAvg(11 + i);
+			}
+		}
+
+		try(University poli = University.open(dir, universityName)) {
+			for(int i=0; i<n; ++i) {
+				assertEquals("Wrong state of student " + (10000 + i), expected[2*i], poli.studyPlan(10000 + i) + poli.studentAvg(10000 + i));
+				assertEquals("Wrong state of course " + (11 + i), expected[2*i+1], poli.courseAvg(11 + i));
+			}
+		}
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testNotPersistent() throws IOException {
+		new University(universityName).checkpoint();
+	}
+}
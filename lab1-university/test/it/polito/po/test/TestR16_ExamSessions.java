@@ -0,0 +1,108 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.CoEnrollment;
+import university.ExamTimetable;
+import university.University;
+
+public class TestR16_ExamSessions {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.activate("Java Virtual Machine", "James Gosling");
+		poli.activate("Virology", "Roberto Burioni");
+
+		poli.register(10000, 10);
+		poli.register(10000, 11);
+		poli.register(10001, 11);
+		poli.register(10001, 12);
+		poli.register(10002, 11);
+		poli.register(10002, 10);
+	}
+
+	@Test
+	public void testMatrix() {
+		CoEnrollment m = poli.coEnrollment();
+		assertEquals("Wrong number of courses", 4, m.numCourses());
+		assertEquals("Wrong co-enrollment", 2, m.count(10, 11));
+		assertEquals("Matrix should be symmetric", 2, m.count(11, 10));
+		assertEquals("Wrong co-enrollment", 1, m.count(11, 12));
+		assertEquals("Wrong co-enrollment", 0, m.count(10, 12));
+		assertEquals("Wrong co-enrollment", 0, m.count(13, 10));
+		assertEquals("Diagonal should hold the attendees", 3, m.count(11, 11));
+		assertEquals("Unknown course", 0, m.count(99, 10));
+	}
+
+	@Test
+	public void testTimetable() {
+		ExamTimetable t = poli.examTimetable(2);
+		assertTrue("All courses should fit in two slots", t.isComplete());
+		assertNotEquals("Conflicting exams", t.slotOf(10), t.slotOf(11));
+		assertNotEquals("Conflicting exams", t.slotOf(11), t.slotOf(12));
+		assertEquals("Wrong number of slots", 2, t.getSlots());
+		assertEquals("Wrong courses in slots", 4, t.coursesIn(0).size() + t.coursesIn(1).size());
+
+		poli.register(10002, 12);	// 10, 11, 12 now conflict pairwise
+		t = poli.examTimetable(2);
+		assertFalse("Two slots are not enough", t.isComplete());
+		assertEquals("Expected one unscheduled course", 1, t.coursesIn(ExamTimetable.UNSCHEDULED).size());
+
+		assertNull("Invalid number of slots", poli.examTimetable(0));
+	}
+
+	@Test
+	public void testRandom() {
+		final int numStudents = 20000;
+		final int numCourses = 300;
+		final int plan = 5;
+		University uni = new University(universityName);
+		for(int i=0; i<numStudents; ++i) uni.enroll("First" + i, "Last" + i);
+		for(int i=0; i<numCourses; ++i) uni.activate("Course" + i, "Teacher" + i);
+
+		Random rnd = new Random(42);
+		int[][] expected = new int[numCourses][numCourses];
+		for(int i=0; i<numStudents; ++i) {
+			int[] plans = rnd.ints(0, numCourses).distinct().limit(plan).toArray();
+			for(int c : plans) uni.register(10000 + i, 10 + c);
+			for(int a : plans) for(int b : plans) expected[a][b]++;
+		}
+
+		CoEnrollment m = uni.coEnrollment();
+		for(int a=0; a<numCourses; ++a) {
+			for(int b=0; b<numCourses; ++b) {
+				assertEquals("Wrong co-enrollment", expected[a][b], m.count(10 + a, 10 + b));
+			}
+		}
+
+		ExamTimetable t = uni.examTimetable(numCourses);
+		assertTrue("There are enough slots for all courses", t.isComplete());
+		for(int a=0; a<numCourses; ++a) {
+			for(int b=a+1; b<numCourses; ++b) {
+				if(expected[a][b] > 0) {
+					assertNotEquals("Conflicting exams", t.slotOf(10 + a), t.slotOf(10 + b));
+				}
+			}
+		}
+	}
+}
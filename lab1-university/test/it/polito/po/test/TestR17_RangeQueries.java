@@ -0,0 +1,105 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestR17_RangeQueries {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.enroll("Mario","Rossi");		// avg 18, score 28
+		poli.enroll("Francesca","Verdi");	// avg 21, score 26
+		poli.enroll("Filippo","Neri");		// avg 27, score 37
+		poli.enroll("Laura","Bianchi");		// no exams
+
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.register(10002, 10);
+		poli.register(10003, 10);
+
+		poli.exam(10000, 10, 18);
+		poli.exam(10001, 10, 21);
+		poli.exam(10002, 10, 27);
+	}
+
+	@Test
+	public void testAverageRange() {
+		assertEquals("Wrong count", 2, poli.countByAverage(18, 21));
+		assertEquals("Wrong count", 3, poli.countByAverage(0, 30));
+		assertEquals("Wrong count", 0, poli.countByAverage(22, 26));
+		assertEquals("Wrong count", 0, poli.countByAverage(21, 18));
+
+		List<String> found = poli.studentsByAverage(18, 21).collect(Collectors.toList());
+		assertEquals("Wrong number of students", 2, found.size());
+		assertContained("Wrong first student", "Rossi", found.get(0));
+		assertContained("Wrong second student", "Verdi", found.get(1));
+
+		poli.exam(10001, 11, 30);	// average rises to 25.5
+		assertEquals("Index not updated", 1, poli.countByAverage(18, 21));
+		assertEquals("Index not updated", "10001 Francesca Verdi", poli.studentsByAverage(25, 26).findFirst().orElse(""));
+	}
+
+	@Test
+	public void testScoreRange() {
+		assertEquals("Wrong count", 2, poli.countByScore(28, Double.POSITIVE_INFINITY));
+		List<String> found = poli.studentsByScore(28, Double.POSITIVE_INFINITY).collect(Collectors.toList());
+		assertEquals("Wrong number of students", 2, found.size());
+		assertContained("Students should be sorted by decreasing score", "Neri", found.get(0));
+		assertContained("Students should be sorted by decreasing score", "Rossi", found.get(1));
+		assertEquals("Wrong count", 1, poli.countByScore(0, 27));
+	}
+
+	@Test
+	public void testRandomRanges() {
+		final int numStudents = 3000;
+		University uni = new University(universityName);
+		for(int i=0; i<numStudents; ++i) uni.enroll("First" + i, "Last" + i);
+		uni.activate("Course0", "Teacher0");
+		uni.activate("Course1", "Teacher1");
+
+		Random rnd = new Random(42);
+		double[] avg = new double[numStudents];
+		for(int i=0; i<numStudents; ++i) {
+			uni.register(10000 + i, 10);
+			uni.register(10000 + i, 11);
+			int a = rnd.nextInt(31);
+			int b = rnd.nextInt(31);
+			uni.exam(10000 + i, 10, a);
+			uni.exam(10000 + i, 11, b);
+			avg[i] = (a + b) / 2.0;
+		}
+
+		for(int t=0; t<50; ++t) {
+			double min = rnd.nextInt(61) / 2.0;
+			double max = min + rnd.nextInt(10);
+			long expected = Arrays.stream(avg).filter(x -> x >= min && x <= max).count();
+			assertEquals("Wrong count", expected, uni.countByAverage(min, max));
+			assertEquals("Wrong range", expected, uni.studentsByAverage(min, max).count());
+		}
+		assertEquals("Lazy stream should stop early", 5, uni.studentsByAverage(0, 30).limit(5).count());
+	}
+}
@@ -0,0 +1,63 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestR18_Search {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+		poli.enroll("Marco","Rossini");
+		poli.enroll("Rosa","Bianchi");
+
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.activate("Java Virtual Machine", "James Gosling");
+	}
+
+	@Test
+	public void testStudents() {
+		List<String> found = poli.searchStudents("ross", 10);
+		assertEquals("Wrong number of matches", 2, found.size());
+		assertEquals("Wrong match", "10000 Mario Rossi", found.get(0));
+		assertEquals("Wrong match", "10003 Marco Rossini", found.get(1));
+
+		assertEquals("Search should ignore case", found, poli.searchStudents("ROSS", 10));
+		assertEquals("Wrong number of matches", 3, poli.searchStudents("Ros", 10).size());
+		assertEquals("Matches should be sorted by name", "10004 Rosa Bianchi", poli.searchStudents("Ros", 10).get(0));
+		assertEquals("Expected top match only", 1, poli.searchStudents("mar", 1).size());
+		assertTrue("Expected no match", poli.searchStudents("xyz", 10).isEmpty());
+
+		poli.enroll("Giulia", "Rossetti");
+		assertEquals("Index not updated", 3, poli.searchStudents("ross", 10).size());
+	}
+
+	@Test
+	public void testCourses() {
+		List<String> found = poli.searchCourses("gosl", 10);
+		assertEquals("Wrong number of matches", 2, found.size());
+		assertEquals("Wrong match", "11,Object Oriented Programming,James Gosling", found.get(0));
+
+		found = poli.searchCourses("prog", 10);
+		assertEquals("Titles should be searched by word", 1, found.size());
+		assertEquals("Wrong number of matches", 1, poli.searchCourses("Econ", 10).size());
+	}
+}
@@ -0,0 +1,163 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestR19_OffHeap {
+
+	static final String universityName = "Politecnico di Torino";
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+	}
+
+	@Test
+	public void testBasics() {
+		University poli = University.offHeap(universityName);
+		assertEquals("Wrong name", universityName, poli.getName());
+
+		int id = poli.enroll("Niccolò","Rossi");
+		int code = poli.activate("Object Oriented Programming", "James Gosling");
+		assertEquals("Wrong ID", 10000, id);
+		assertEquals("Wrong code", 10, code);
+		assertEquals("Wrong student", "10000 Niccolò Rossi", poli.student(id));
+		assertEquals("Wrong course", "10,Object Oriented Programming,James Gosling", poli.course(code));
+		assertEquals("Missing student", "", poli.student(10001));
+
+		poli.register(id, code);
+		poli.register(id, code);
+		assertEquals("Wrong attendees", "10000 Niccolò Rossi\n", poli.listAttendees(code));
+		assertEquals("Wrong study plan", "10,Object Oriented Programming,James Gosling\n", poli.studyPlan(id));
+
+		poli.exam(id, code, 27);
+		assertEquals("Wrong average", "Student 10000 : 27.0", poli.studentAvg(id));
+		assertEquals("Wrong top student", "Rossi Niccolò : 37.0\n", poli.topThreeStudents());
+	}
+
+	@Test
+	public void testSameAsHeap() {
+		final int numStudents = 5000;
+		final int numCourses = 40;
+		University heap = new University(universityName);
+		University offHeap = University.offHeap(universityName);
+		Random rnd = new Random(42);
+		for(int i=0; i<numStudents; ++i) {
+			heap.enroll("First" + i, "Last" + i);
+			offHeap.enroll("First" + i, "Last" + i);
+		}
+		for(int i=0; i<numCourses; ++i) {
+			heap.activate("Course" + i, "Teacher" + i % 7);
+			offHeap.activate("Course" + i, "Teacher" + i % 7);
+		}
+		for(int i=0; i<numStudents * 4; ++i) {
+			int s = 10000 + rnd.nextInt(numStudents);
+			int c = 10 + rnd.nextInt(numCourses);
+			heap.register(s, c);
+			offHeap.register(s, c);
+			if(rnd.nextBoolean()) {
+				int grade = rnd.nextInt(31);
+				heap.exam(s, c, grade);
+				offHeap.exam(s, c, grade);
+			}
+		}
+
+		for(int c=10; c<10+numCourses; ++c) {
+			assertEquals("Different attendees", heap.listAttendees(c), offHeap.listAttendees(c));
+			assertEquals("Different course average", heap.courseAvg(c), offHeap.courseAvg(c));
+		}
+		for(int s=10000; s<10000+numStudents; s+=13) {
+			assertEquals("Different study plan", heap.studyPlan(s), offHeap.studyPlan(s));
+			assertEquals("Different average", heap.studentAvg(s), offHeap.studentAvg(s));
+		}
+		assertEquals("Different ranking", heap.topStudents(20), offHeap.topStudents(20));
+		assertEquals("Different search", heap.searchStudents("last12", 50), offHeap.searchStudents("last12", 50));
+		assertEquals("Different analytics", heap.averageByTeacher(), offHeap.averageByTeacher());
+		assertEquals("Different co-enrollment", heap.coEnrollment().count(10, 11), offHeap.coEnrollment().count(10, 11));
+	}
+
+	@Test
+	public void testLargeCourse() {
+		final int numStudents = 100_000;	// more attendees than fit a single list block
+		University poli = University.offHeap(universityName);
+		int code = poli.activate("Macro Economics", "Paul Krugman");
+		for(int i=0; i<numStudents; ++i) {
+			poli.register(poli.enroll("First" + i, "Last" + i), code);
+		}
+		String[] attendees = poli.listAttendees(code).split("\n");
+		assertEquals("Wrong number of attendees", numStudents, attendees.length);
+		assertEquals("Wrong last attendee", (10000 + numStudents - 1) + " First" + (numStudents - 1) + " Last" + (numStudents - 1), attendees[numStudents - 1]);
+
+		for(int i=0; i<numStudents; i+=3) {
+			poli.withdraw(10000 + i, code);
+		}
+		poli.compact();
+		attendees = poli.listAttendees(code).split("\n");
+		assertEquals("Wrong number of attendees", numStudents - (numStudents + 2) / 3, attendees.length);
+		int last = (numStudents - 1) % 3 == 0 ? numStudents - 2 : numStudents - 1;
+		assertEquals("Wrong first attendee", "10001 First1 Last1", attendees[0]);
+		assertEquals("Wrong last attendee", (10000 + last) + " First" + last + " Last" + last, attendees[attendees.length - 1]);
+		poli.register(10000, code);
+		assertTrue("Missing attendee", poli.listAttendees(code).endsWith("10000 First0 Last0\n"));
+	}
+
+	@Test
+	public void testReclaimNames() {
+		final int numStudents = 1000;
+		University poli = University.offHeap(universityName);
+		for(int i=0; i<numStudents; ++i) {
+			poli.enroll("First" + i, "Last" + i);
+		}
+		for(int i=0; i<numStudents; i+=2) {
+			poli.expel(10000 + i);
+		}
+		poli.compact();
+		for(int i=numStudents; i<numStudents * 3 / 2; ++i) {
+			assertEquals("Wrong ID", 10000 + i, poli.enroll("First" + i, "Last" + i));
+		}
+		for(int i=0; i<numStudents * 3 / 2; ++i) {
+			String expected = i < numStudents && i % 2 == 0 ? "" : (10000 + i) + " First" + i + " Last" + i;
+			assertEquals("Wrong student", expected, poli.student(10000 + i));
+		}
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		final int threads = 16;
+		final int perThread = 2000;
+		University poli = University.offHeap(universityName);
+		poli.activate("Macro Economics", "Paul Krugman");
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> jobs = new ArrayList<>();
+			for(int t=0; t<threads; ++t) {
+				jobs.add(pool.submit(() -> {
+					for(int i=0; i<perThread; ++i) {
+						int id = poli.enroll("First" + i, "Last" + i);
+						poli.register(id, 10);
+						poli.exam(id, 10, 18 + i % 13);
+					}
+				}));
+			}
+			for(Future<?> f : jobs) f.get();
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals("Wrong number of attendees", threads * perThread, poli.listAttendees(10).split("\n").length);
+		assertEquals("Wrong ranking size", threads * perThread, poli.countByScore(0, 100));
+	}
+}
@@ -0,0 +1,189 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestR20_BulkLoad {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+	private final List<Path> files = new ArrayList<>();
+	private final List<String> errors = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		poli = new University(universityName);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for(Path f : files) Files.deleteIfExists(f);
+	}
+
+	private Path write(String... lines) throws IOException {
+		Path f = Files.createTempFile("university", ".csv");
+		files.add(f);
+		Files.write(f, Arrays.asList(lines));
+		return f;
+	}
+
+	@Test
+	public void testLoad() throws IOException {
+		Path people = write("# students and courses",
+							"S,10000,Mario,Rossi",
+							"S,10001,Francesca,Verdi",
+							"C,10,Macro Economics,Paul Krugman",
+							"",
+							"C,11,Object Oriented Programming,James Gosling");
+		Path activity = write("R,10000,10",
+							  "R,10001,10",
+							  "E,10000,10,27",
+							  "R,10001,11\r",
+							  "E,10001,11,30");
+
+		long loaded = poli.bulkLoad((file, n, line, reason) -> errors.add(n + ":" + reason), people, activity);
+
+		assertEquals("Wrong number of records", 9, loaded);
+		assertTrue("Unexpected errors " + errors, errors.isEmpty());
+		assertEquals("Wrong student", "10001 Francesca Verdi", poli.student(10001));
+		assertEquals("Wrong course", "11,Object Oriented Programming,James Gosling", poli.course(11));
+		assertEquals("Wrong attendees", "10000 Mario Rossi\n10001 Francesca Verdi\n", poli.listAttendees(10));
+		assertEquals("Wrong average", "Student 10001 : 30.0", poli.studentAvg(10001));
+		assertEquals("Wrong ranking", 1, poli.rankOf(10000));
+		assertEquals("Wrong search", 1, poli.searchStudents("ver", 10).size());
+
+		assertEquals("Wrong next ID", 10002, poli.enroll("Filippo", "Neri"));
+		assertEquals("Wrong next code", 12, poli.activate("Virology", "Roberto Burioni"));
+	}
+
+	@Test
+	public void testErrors() throws IOException {
+		Path f = write("S,10000,Mario,Rossi",
+					   "S,10000,Francesca,Verdi",
+					   "C,10,Macro Economics,Paul Krugman",
+					   "X,1,2",
+					   "R,10000",
+					   "R,10000,10",
+					   "R,10000,10",
+					   "R,10005,10",
+					   "E,10000,10,31",
+					   "E,10000,1x,30",
+					   "S,10001,,Neri",
+					   "E,10000,10,25");
+
+		long loaded = poli.bulkLoad((file, n, line, reason) -> errors.add(n + ":" + line), f);
+
+		assertEquals("Wrong number of records", 4, loaded);
+		assertEquals("Wrong errors", Arrays.asList("2:S,10000,Francesca,Verdi",
+												   "4:X,1,2",
+												   "5:R,10000",
+												   "7:R,10000,10",
+												   "8:R,10005,10",
+												   "9:E,10000,10,31",
+												   "10:E,10000,1x,30",
+												   "11:S,10001,,Neri"), errors);
+		assertEquals("Wrong average", "Student 10000 : 25.0", poli.studentAvg(10000));
+	}
+
+	@Test
+	public void testSparseIds() throws IOException {
+		Path f = write("S,10000,Mario,Rossi",
+					   "S,99999999,Francesca,Verdi",
+					   "S,60000,Filippo,Neri",
+					   "C,10,Macro Economics,Paul Krugman",
+					   "C,900000,Object Oriented Programming,James Gosling");
+
+		long loaded = poli.bulkLoad((file, n, line, reason) -> errors.add(n + ":" + reason), f);
+
+		assertEquals("Wrong number of records", 3, loaded);
+		assertEquals("Wrong errors", Arrays.asList("2:invalid student ID", "5:invalid course code"), errors);
+		assertEquals("Gaps are allowed", "60000 Filippo Neri", poli.student(60000));
+		assertEquals("Wrong next ID", 60001, poli.enroll("Laura", "Bianchi"));
+	}
+
+	@Test
+	public void testExpelledId() throws IOException {
+		int id = poli.enroll("Mario", "Rossi");
+		int code = poli.activate("Macro Economics", "Paul Krugman");
+		poli.register(id, code);
+		poli.exam(id, code, 27);
+		poli.expel(id);
+
+		Path f = write("S,10000,New,Guy",
+					   "S,10001,Francesca,Verdi");
+		long loaded = poli.bulkLoad((file, n, line, reason) -> errors.add(n + ":" + reason), f);
+
+		assertEquals("Wrong number of records", 1, loaded);
+		assertEquals("Wrong errors", Arrays.asList("1:duplicate student ID"), errors);
+		assertEquals("IDs of expelled students are not reused", "", poli.student(10000));
+		assertEquals("Wrong student", "10001 Francesca Verdi", poli.student(10001));
+	}
+
+	@Test
+	public void testConcurrentEnroll() throws Exception {
+		final int n = 1000;
+		StringBuilder csv = new StringBuilder();
+		Path f = Files.createTempFile("university", ".csv");
+		files.add(f);
+		for(int s=0; s<n; ++s) csv.append("S,").append(10000 + s).append(",Loaded,Student").append(s).append("\n");
+		Files.write(f, csv.toString().getBytes());
+
+		int[] ids = new int[n];
+		Thread enroller = new Thread(() -> {
+			for(int i=0; i<n; ++i) ids[i] = poli.enroll("Enrolled", "Student" + i);
+		});
+		enroller.start();
+		long loaded = poli.bulkLoad(f);
+		enroller.join();
+
+		for(int i=0; i<n; ++i) {
+			assertEquals("Enrolled student overwritten", ids[i] + " Enrolled Student" + i, poli.student(ids[i]));
+		}
+		assertEquals("Wrong number of students", 2 * n - (n - loaded), poli.enroll("Last", "Student") - 10000);
+	}
+
+	@Test
+	public void testLargeFile() throws IOException {
+		final int numStudents = 100000;
+		final int numCourses = 100;
+		Path f = Files.createTempFile("university", ".csv");
+		files.add(f);
+		try(BufferedWriter out = Files.newBufferedWriter(f)) {
+			for(int c=0; c<numCourses; ++c) out.write("C," + (10 + c) + ",Course" + c + ",Teacher" + c + "\n");
+			for(int s=0; s<numStudents; ++s) out.write("S," + (10000 + s) + ",First" + s + ",Last" + s + "\n");
+			for(int k=0; k<3; ++k) {
+				for(int s=0; s<numStudents; ++s) {
+					out.write("R," + (10000 + s) + "," + (10 + (s + k * 7) % numCourses) + "\n");
+					out.write("E," + (10000 + s) + "," + (10 + (s + k * 7) % numCourses) + "," + (18 + k) + "\n");
+				}
+			}
+		}
+		assertTrue("The file should span several chunks", Files.size(f) > 8 << 20);
+
+		long loaded = poli.bulkLoad((file, n, line, reason) -> errors.add(n + ":" + reason), f);
+
+		assertTrue("Unexpected errors " + errors, errors.isEmpty());
+		assertEquals("Wrong number of records", numCourses + numStudents * 7L, loaded);
+		assertEquals("Wrong average", "Student 10999 : 19.0", poli.studentAvg(10999));
+		int attendees = 0;
+		for(int c=10; c<10+numCourses; ++c) attendees += poli.listAttendees(c).split("\n").length;
+		assertEquals("Wrong number of registrations", numStudents * 3, attendees);
+	}
+}
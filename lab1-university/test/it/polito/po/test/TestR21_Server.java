@@ -0,0 +1,127 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.UniversityServer;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestR21_Server {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+	private UniversityServer server;
+	private HttpClient client;
+
+	@Before
+	public void setUp() throws Exception {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+		poli.activate("Macro Economics", "Paul \"Nobel\" Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10000, 11);
+		poli.register(10001, 10);
+		poli.exam(10000, 10, 30);
+		poli.exam(10001, 10, 25);
+
+		server = poli.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4);
+		client = HttpClient.newHttpClient();
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void testQueries() throws Exception {
+		assertEquals("Wrong student", "{\"id\":10001,\"first\":\"Francesca\",\"last\":\"Verdi\"}", get("/student/10001", 200));
+		assertEquals("Wrong course", "{\"code\":10,\"title\":\"Macro Economics\",\"teacher\":\"Paul \\\"Nobel\\\" Krugman\"}", get("/course/10", 200));
+		assertEquals("Wrong student average", "{\"id\":10000,\"average\":30.0}", get("/studentAvg/10000", 200));
+		assertEquals("Wrong course average", "{\"code\":10,\"average\":27.5}", get("/courseAvg/10", 200));
+		assertEquals("Expected no average", "{\"id\":10002,\"average\":null}", get("/studentAvg/10002", 200));
+	}
+
+	@Test
+	public void testLists() throws Exception {
+		String plan = get("/studyPlan/10000", 200);
+		assertTrue("Wrong study plan " + plan, plan.startsWith("[{\"code\":10,") && plan.endsWith("}]"));
+		assertContained("Wrong study plan", "Object Oriented Programming", plan);
+		assertEquals("Expected empty study plan", "[]", get("/studyPlan/10002", 200));
+
+		assertEquals("Wrong attendees", "[{\"id\":10000,\"first\":\"Mario\",\"last\":\"Rossi\"},"
+				+ "{\"id\":10001,\"first\":\"Francesca\",\"last\":\"Verdi\"}]", get("/attendees/10", 200));
+
+		String top = get("/topStudents?k=1", 200);
+		assertTrue("Wrong top students " + top, top.startsWith("[{\"id\":10000,") && top.endsWith("}]"));
+		assertContained("Wrong score", "\"score\":35.0", top);
+		assertEquals("Wrong number of top students", 2, get("/topStudents", 200).split("\"id\"").length - 1);
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		assertContained("Expected an error", "error", get("/student/99999", 404));
+		assertContained("Expected an error", "error", get("/course/9", 404));
+		assertContained("Expected an error", "error", get("/student/abc", 400));
+		assertContained("Expected an error", "error", get("/topStudents?k=x", 400));
+
+		HttpRequest post = HttpRequest.newBuilder(uri("/student/10000")).POST(HttpRequest.BodyPublishers.noBody()).build();
+		assertEquals("Only GET is allowed", 405, client.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+	}
+
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		for(int i=0; i<500; ++i) {
+			int id = poli.enroll("First" + i, "Last" + i);
+			poli.register(id, 11);
+		}
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+		for(int i=0; i<200; ++i) {
+			String path = i % 2 == 0 ? "/student/" + (10003 + i) : "/attendees/11";
+			responses.add(client.sendAsync(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString()));
+		}
+		for(int i=0; i<responses.size(); ++i) {
+			HttpResponse<String> r = responses.get(i).get();
+			assertEquals("Wrong status", 200, r.statusCode());
+			if(i % 2 == 0) {
+				assertContained("Wrong student", "\"id\":" + (10003 + i), r.body());
+			} else {
+				assertEquals("Wrong number of attendees", 501, r.body().split("\"id\"").length - 1);
+			}
+		}
+	}
+
+	private URI uri(String path) {
+		InetSocketAddress address = server.getAddress();
+		return URI.create("http://" + address.getHostString() + ":" + address.getPort() + path);
+	}
+
+	private String get(String path, int status) throws Exception {
+		HttpResponse<String> r = client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals("Wrong status for " + path, status, r.statusCode());
+		return r.body();
+	}
+}
@@ -0,0 +1,189 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.UniversitySnapshot;
+
+public class TestR22_Snapshots {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.setRector("Guido", "Saracco");
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.exam(10000, 10, 28);
+	}
+
+	@Test
+	public void testImmutable() {
+		UniversitySnapshot first = poli.snapshot();
+		assertEquals("Wrong rector", "Guido Saracco", first.getRector());
+		assertEquals("Wrong student", poli.student(10001), first.student(10001));
+		assertEquals("Wrong attendees", poli.listAttendees(10), first.listAttendees(10));
+		assertEquals("Wrong study plan", poli.studyPlan(10001), first.studyPlan(10001));
+		assertEquals("Wrong average", poli.studentAvg(10000), first.studentAvg(10000));
+		assertEquals("Wrong ranking", poli.topThreeStudents(), first.topThreeStudents());
+
+		int id = poli.enroll("Filippo", "Neri");
+		poli.register(id, 11);
+		poli.exam(10001, 11, 30);
+		poli.setRector("Stefano", "Corgnati");
+
+		assertEquals("Snapshot changed", "", first.student(id));
+		assertEquals("Snapshot changed", "10001 Francesca Verdi\n", first.listAttendees(11));
+		assertEquals("Snapshot changed", "Student 10001 hasn't taken any exams", first.studentAvg(10001));
+		assertEquals("Snapshot changed", "Guido Saracco", first.getRector());
+		assertEquals("Snapshot changed", 1, first.rankOf(10000));
+
+		UniversitySnapshot second = poli.snapshot();
+		assertTrue("Epochs must increase", second.getEpoch() > first.getEpoch());
+		assertEquals("Wrong student", poli.student(id), second.student(id));
+		assertEquals("Wrong attendees", poli.listAttendees(11), second.listAttendees(11));
+		assertEquals("Wrong study plan", poli.studyPlan(id), second.studyPlan(id));
+		assertEquals("Wrong average", poli.studentAvg(10001), second.studentAvg(10001));
+		assertEquals("Wrong average", poli.courseAvg(11), second.courseAvg(11));
+		assertEquals("Wrong ranking", poli.topThreeStudents(), second.topThreeStudents());
+		assertEquals("Wrong rank", poli.rankOf(10001), second.rankOf(10001));
+		assertEquals("Wrong rector", "Stefano Corgnati", second.getRector());
+
+		assertSame("Nothing changed, the snapshot can be reused", second, poli.snapshot());
+		assertEquals("Unknown course", "", second.course(99));
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		final int students = 2000;
+		final int courses = 20;
+		for(int c=0; c<courses; ++c) poli.activate("Course" + c, "Teacher" + c);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] writers = new Future<?>[4];
+			for(int w=0; w<writers.length; ++w) {
+				final int first = w;
+				writers[w] = pool.submit(() -> {
+					for(int i=first; i<students; i+=4) {
+						int id = poli.enroll("First" + i, "Last" + i);
+						for(int k=0; k<3; ++k) {
+							int code = 12 + (i + k * 7) % courses;
+							poli.register(id, code);
+							poli.exam(id, code, 18 + (i + k) % 13);
+						}
+					}
+				});
+			}
+			boolean done = false;
+			while(! done) {
+				done = true;
+				for(Future<?> f : writers) done &= f.isDone();
+				UniversitySnapshot s = poli.snapshot();
+				int plans = 0;
+				for(int id=10002; id<10002+students; ++id) {
+					if(s.student(id).isEmpty()) continue;
+					String plan = s.studyPlan(id);
+					plans += plan.isEmpty() ? 0 : plan.split("\n").length;
+				}
+				int attendees = 0;
+				for(int code=12; code<12+courses; ++code) {
+					String list = s.listAttendees(code);
+					attendees += list.isEmpty() ? 0 : list.split("\n").length;
+				}
+				assertEquals("Inconsistent snapshot at epoch " + s.getEpoch(), plans, attendees);
+			}
+			for(Future<?> f : writers) f.get();
+		} finally {
+			pool.shutdownNow();
+		}
+
+		UniversitySnapshot last = poli.snapshot();
+		for(int id=10002; id<10002+students; id+=37) {
+			assertEquals("Wrong study plan", poli.studyPlan(id).split("\n").length, last.studyPlan(id).split("\n").length);
+			assertEquals("Wrong average", poli.studentAvg(id), last.studentAvg(id));
+		}
+		assertEquals("Wrong ranking", poli.topStudents(10), last.topStudents(10));
+	}
+
+	@Test
+	public void testWithdrawals() {
+		for(int i=0; i<20; ++i) poli.enroll("First" + i, "Last" + i);
+		poli.snapshot();	// the following operations are journaled
+		for(int id=10002; id<10022; ++id) {
+			poli.register(id, 10);
+			poli.register(id, 11);
+		}
+		for(int id=10002; id<10022; id+=3) poli.withdraw(id, 10);
+		poli.withdraw(10001, 11);
+		poli.register(10001, 11);	// takes a slot freed by a withdrawal
+		poli.expel(10005);
+		poli.exam(10006, 11, 25);
+		poli.withdraw(10006, 10);
+
+		UniversitySnapshot s = poli.snapshot();
+		for(int code=10; code<=11; ++code) {
+			assertEquals("Wrong attendees", poli.listAttendees(code), s.listAttendees(code));
+		}
+		for(int id=10000; id<10022; ++id) {
+			assertEquals("Wrong study plan", poli.studyPlan(id), s.studyPlan(id));
+		}
+		assertEquals("Wrong ranking", poli.topThreeStudents(), s.topThreeStudents());
+	}
+
+	@Test
+	public void testLongEpoch() {
+		UniversitySnapshot first = poli.snapshot();
+		for(int i=0; i<600_000; ++i) {	// more changes than a journal holds
+			poli.register(10000, 11);
+			poli.withdraw(10000, 11);
+		}
+		poli.register(10000, 11);
+
+		UniversitySnapshot s = poli.snapshot();
+		assertTrue("Epochs must increase", s.getEpoch() > first.getEpoch());
+		assertEquals("Wrong attendees", poli.listAttendees(11), s.listAttendees(11));
+		assertEquals("Wrong study plan", poli.studyPlan(10000), s.studyPlan(10000));
+		assertEquals("Snapshot changed", "10001 Francesca Verdi\n", first.listAttendees(11));
+	}
+
+	@Test
+	public void testRegisterByOtherThread() throws Exception {
+		final int students = 2000;
+		poli.snapshot();	// the following operations are journaled
+		Thread registrar = new Thread(() -> {
+			for(int id=10002; id<10002+students; ++id) {
+				while(poli.student(id).isEmpty()) Thread.onSpinWait();	// registers as soon as the student is visible
+				poli.register(id, 11);
+			}
+		});
+		registrar.start();
+		for(int i=0; i<students; ++i) {
+			poli.enroll("First" + i, "Last" + i);
+			if(i % 100 == 0) poli.snapshot();
+		}
+		registrar.join();
+
+		UniversitySnapshot last = poli.snapshot();
+		assertEquals("Wrong attendees", poli.listAttendees(11), last.listAttendees(11));
+		assertEquals("Wrong study plan", poli.studyPlan(10000 + students), last.studyPlan(10000 + students));
+	}
+}
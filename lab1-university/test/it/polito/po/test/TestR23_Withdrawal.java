@@ -0,0 +1,257 @@
+package it.polito.po.test;
+
+import static it.polito.po.test.TestR5_Exams.assertContained;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.UniversitySnapshot;
+
+public class TestR23_Withdrawal {
+
+	static final String universityName = "Politecnico di Torino";
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+	}
+
+	private static University populate(University poli) {
+		poli.setRector("Guido", "Saracco");
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.activate("Virology", "Roberto Burioni");
+		poli.register(10000, 10);
+		poli.register(10000, 11);
+		poli.register(10000, 12);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.register(10002, 11);
+		poli.exam(10001, 10, 24);
+		return poli;
+	}
+
+	@Test
+	public void testWithdraw() {
+		checkWithdraw(populate(new University(universityName)));
+	}
+
+	@Test
+	public void testWithdrawOffHeap() {
+		checkWithdraw(populate(University.offHeap(universityName)));
+	}
+
+	private static void checkWithdraw(University poli) {
+		poli.exam(10000, 10, 30);
+		int rank = poli.rankOf(10000);
+
+		poli.withdraw(10000, 11);
+		String plan = poli.studyPlan(10000);
+		assertEquals("Wrong study plan after withdrawal", 2, plan.split("\n").length);
+		assertFalse("Course still in study plan", plan.contains("Object Oriented Programming"));
+		assertContained("Other courses must be kept", "Virology", plan);
+		assertFalse("Student still attending", poli.listAttendees(11).contains("Mario"));
+		assertEquals("Wrong attendees after withdrawal", 2, poli.listAttendees(11).split("\n").length);
+		assertTrue("Fewer courses must not lower the rank", poli.rankOf(10000) <= rank);
+
+		poli.exam(10000, 11, 30);
+		assertEquals("No exam after withdrawal", "Student 10000 : 30.0", poli.studentAvg(10000));
+
+		poli.register(10000, 11);
+		assertContained("Registration after withdrawal", "Mario", poli.listAttendees(11));
+		assertEquals("Wrong study plan", 3, poli.studyPlan(10000).split("\n").length);
+
+		poli.withdraw(10002, 10);
+		assertEquals("Not registered: nothing to withdraw", "10002 Filippo Neri\n", poli.listAttendees(11).replaceAll("(?m)^1000[01].*\n", ""));
+
+		poli.withdraw(10001, 10);
+		assertContained("Cannot withdraw after the exam", "Francesca", poli.listAttendees(10));
+		assertEquals("Wrong study plan", 2, poli.studyPlan(10001).split("\n").length);
+	}
+
+	@Test
+	public void testExpel() {
+		checkExpel(populate(new University(universityName)));
+	}
+
+	@Test
+	public void testExpelOffHeap() {
+		checkExpel(populate(University.offHeap(universityName)));
+	}
+
+	private static void checkExpel(University poli) {
+		assertEquals("Wrong rank", 1, poli.rankOf(10001));
+
+		poli.expel(10001);
+		assertEquals("Expelled student", "", poli.student(10001));
+		assertFalse("Expelled student still attending", poli.listAttendees(10).contains("Francesca"));
+		assertFalse("Expelled student still attending", poli.listAttendees(11).contains("Francesca"));
+		assertEquals("Expelled student still ranked", -1, poli.rankOf(10001));
+		assertEquals("Wrong ranking", "", poli.topThreeStudents());
+		assertTrue("Expelled student still found", poli.searchStudents("fra", 10).isEmpty());
+		assertEquals("Grades must still count for the course", "The average for the course Macro Economics is: 24.0", poli.courseAvg(10));
+
+		poli.register(10001, 11);
+		poli.expel(10001);
+		assertEquals("IDs must not be reused", 10003, poli.enroll("Laura", "Bianchi"));
+		poli.register(10003, 10);
+		assertEquals("Wrong attendees", "10000 Mario Rossi\n10003 Laura Bianchi\n", poli.listAttendees(10));
+	}
+
+	@Test
+	public void testSearchAfterExpel() {
+		University poli = new University(universityName);
+		for(int i=0; i<10; ++i) {
+			poli.enroll("Anna" + i, "Rossi");
+		}
+		for(int id=10000; id<10005; ++id) {
+			poli.expel(id);
+		}
+		List<String> found = poli.searchStudents("rossi", 5);
+		assertEquals("Expelled students must not hide the others", 5, found.size());
+		assertEquals("Wrong first match", "10005 Anna5 Rossi", found.get(0));
+	}
+
+	@Test
+	public void testSlotReuse() {
+		checkSlotReuse(new University(universityName));
+	}
+
+	@Test
+	public void testSlotReuseOffHeap() {
+		checkSlotReuse(University.offHeap(universityName));
+	}
+
+	private static void checkSlotReuse(University poli) {
+		final int n = 100;
+		int course = poli.activate("Macro Economics", "Paul Krugman");
+		for(int i=0; i<n; ++i) {
+			poli.enroll("First" + i, "Last" + i);
+			poli.register(10000 + i, course);
+		}
+		for(int round=0; round<3; ++round) {
+			for(int i=round % 2; i<n; i+=2) poli.withdraw(10000 + i, course);
+			for(int i=round % 2; i<n; i+=2) poli.register(10000 + i, course);
+		}
+		assertEquals("Wrong attendees", n, poli.listAttendees(course).split("\n").length);
+
+		for(int i=0; i<n; i+=3) poli.withdraw(10000 + i, course);
+		String attendees = poli.listAttendees(course);
+		poli.compact();
+		assertEquals("Compaction must keep the attendees in order", attendees, poli.listAttendees(course));
+
+		for(int i=0; i<n; ++i) poli.withdraw(10000 + i, course);
+		assertEquals("Withdrawals after compaction", "", poli.listAttendees(course));
+		for(int i=0; i<n; ++i) {
+			assertEquals("Wrong study plan", "", poli.studyPlan(10000 + i));
+		}
+	}
+
+	@Test
+	public void testCompactWhileReading() throws Exception {
+		checkCompactWhileReading(new University(universityName));
+	}
+
+	@Test
+	public void testCompactWhileReadingOffHeap() throws Exception {
+		checkCompactWhileReading(University.offHeap(universityName));
+	}
+
+	private static void checkCompactWhileReading(University poli) throws Exception {
+		final int n = 2000;
+		int course = poli.activate("Macro Economics", "Paul Krugman");
+		for(int i=0; i<n; ++i) {
+			poli.enroll("First" + i, "Last" + i);
+			poli.register(10000 + i, course);
+		}
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<String> error = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			while(! done.get()) {
+				Set<String> odd = new HashSet<>();
+				for(String line : poli.listAttendees(course).split("\n")) {
+					int id = Integer.parseInt(line.substring(0, 5));
+					if(id % 2 == 1 && ! odd.add(line)) error.set("Duplicate attendee " + line);
+				}
+				if(odd.size() != n / 2) error.set("Missing attendees: " + odd.size());
+			}
+		});
+		reader.start();
+		for(int round=0; round<50; ++round) {	// the students with odd IDs are moved by each compaction
+			for(int i=0; i<n; i+=2) poli.withdraw(10000 + i, course);
+			poli.compact();
+			for(int i=0; i<n; i+=2) poli.register(10000 + i, course);
+		}
+		done.set(true);
+		reader.join();
+		assertNull(error.get());
+	}
+
+	@Test
+	public void testSnapshot() {
+		University poli = populate(new University(universityName));
+		UniversitySnapshot before = poli.snapshot();
+
+		poli.withdraw(10000, 11);
+		poli.expel(10001);
+		poli.register(10002, 10);
+
+		UniversitySnapshot after = poli.snapshot();
+		assertEquals("Snapshot changed", 3, before.studyPlan(10000).split("\n").length);
+		assertContained("Snapshot changed", "Francesca", before.listAttendees(11));
+		assertEquals("Wrong study plan", poli.studyPlan(10000), after.studyPlan(10000));
+		assertEquals("Wrong student", "", after.student(10001));
+		assertEquals("Wrong attendees", poli.listAttendees(11), after.listAttendees(11));
+		assertEquals("Wrong attendees", poli.listAttendees(10), after.listAttendees(10));
+		assertEquals("Wrong average", poli.courseAvg(10), after.courseAvg(10));
+		assertEquals("Wrong ranking", poli.topThreeStudents(), after.topThreeStudents());
+	}
+
+	@Test
+	public void testPersistence() throws IOException {
+		Path dir = Files.createTempDirectory("university");
+		try {
+			try(University poli = University.open(dir, universityName)) {
+				populate(poli);
+				poli.withdraw(10000, 11);
+				poli.expel(10002);
+			}
+			try(University poli = University.open(dir, universityName)) {
+				assertEquals("Wrong study plan", 2, poli.studyPlan(10000).split("\n").length);
+				assertEquals("Wrong student", "", poli.student(10002));
+				assertEquals("Wrong attendees", "10001 Francesca Verdi\n", poli.listAttendees(11));
+				poli.checkpoint();
+			}
+			try(University poli = University.open(dir, universityName)) {
+				assertEquals("Wrong attendees", "10001 Francesca Verdi\n", poli.listAttendees(11));
+				assertEquals("Wrong average", "The average for the course Macro Economics is: 24.0", poli.courseAvg(10));
+				poli.withdraw(10001, 10);
+				assertContained("Cannot withdraw after the exam", "Francesca", poli.listAttendees(10));
+				assertEquals("IDs must not be reused", 10003, poli.enroll("Laura", "Bianchi"));
+			}
+		} finally {
+			try(Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+			}
+		}
+	}
+}
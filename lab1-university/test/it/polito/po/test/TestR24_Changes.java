@@ -0,0 +1,228 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.UniversityEvent;
+import university.UniversityEvent.Type;
+
+public class TestR24_Changes {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+	}
+
+	/**
+	 * Subscriber collecting the events in a queue
+	 */
+	static class Collector implements Flow.Subscriber<UniversityEvent> {
+		final BlockingQueue<UniversityEvent> events = new LinkedBlockingQueue<>();
+		final CountDownLatch done = new CountDownLatch(1);
+		final long initial;
+		volatile Flow.Subscription subscription;
+		volatile Throwable error;
+
+		Collector(long initial) {
+			this.initial = initial;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(initial);
+		}
+
+		@Override
+		public void onNext(UniversityEvent item) {
+			events.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			done.countDown();
+		}
+
+		List<UniversityEvent> take(int n) throws InterruptedException {
+			List<UniversityEvent> result = new ArrayList<>();
+			for(int i=0; i<n; ++i) {
+				UniversityEvent e = events.poll(5, TimeUnit.SECONDS);
+				assertNotNull("Missing event " + i, e);
+				result.add(e);
+			}
+			return result;
+		}
+	}
+
+	@Test
+	public void testEvents() throws InterruptedException {
+		poli.enroll("Mario", "Rossi");	// before subscribing: not received
+		Collector c = new Collector(Long.MAX_VALUE);
+		poli.changes().subscribe(c);
+
+		int id = poli.enroll("Francesca", "Verdi");
+		int code = poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(id, code);
+		poli.register(id, code);	// error: not published
+		poli.exam(id, code, 28);
+		poli.register(10000, code);
+		poli.withdraw(10000, code);
+		poli.expel(10000);
+
+		List<UniversityEvent> events = c.take(7);
+		assertEquals(Type.ENROLL, events.get(0).getType());
+		assertEquals(id, events.get(0).getStudentId());
+		assertEquals("Francesca", events.get(0).getFirst());
+		assertEquals(Type.ACTIVATE, events.get(1).getType());
+		assertEquals(code, events.get(1).getCourseCode());
+		assertEquals(Type.REGISTER, events.get(2).getType());
+		assertEquals(Type.EXAM, events.get(3).getType());
+		assertEquals(28, events.get(3).getGrade());
+		assertEquals(Type.REGISTER, events.get(4).getType());
+		assertEquals(Type.WITHDRAW, events.get(5).getType());
+		assertEquals(Type.EXPEL, events.get(6).getType());
+		assertEquals(10000, events.get(6).getStudentId());
+		assertNull("Unexpected event", c.events.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testBackpressure() throws InterruptedException {
+		Collector c = new Collector(2);
+		poli.changes().subscribe(c);
+		for(int i=0; i<10; ++i) poli.enroll("First" + i, "Last" + i);
+
+		c.take(2);
+		assertNull("More events than requested", c.events.poll(100, TimeUnit.MILLISECONDS));
+
+		c.subscription.request(5);
+		List<UniversityEvent> events = c.take(5);
+		assertEquals("Events must be delivered in order", 10002, events.get(0).getStudentId());
+		assertNull("More events than requested", c.events.poll(100, TimeUnit.MILLISECONDS));
+
+		c.subscription.cancel();
+		c.subscription.request(10);
+		assertNull("Events after cancel", c.events.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		final int students = 1000;
+		final int courses = 10;
+		Collector first = new Collector(Long.MAX_VALUE);
+		Collector second = new Collector(Long.MAX_VALUE);
+		poli.changes().subscribe(first);
+		poli.changes().subscribe(second);
+		for(int c=0; c<courses; ++c) poli.activate("Course" + c, "Teacher" + c);
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> writers = new ArrayList<>();
+			for(int w=0; w<4; ++w) {
+				final int start = w;
+				writers.add(pool.submit(() -> {
+					for(int i=start; i<students; i+=4) {
+						int id = poli.enroll("First" + i, "Last" + i);
+						int code = 10 + i % courses;
+						poli.register(id, code);
+						poli.exam(id, code, 18 + i % 13);
+					}
+				}));
+			}
+			for(Future<?> f : writers) f.get();
+		} finally {
+			pool.shutdownNow();
+		}
+
+		int total = courses + 3 * students;
+		for(Collector c : new Collector[] {first, second}) {
+			int[] step = new int[students];
+			for(UniversityEvent e : c.take(total)) {
+				if(e.getType() == Type.ACTIVATE) continue;
+				int s = e.getStudentId() - 10000;
+				assertEquals("Events of a student out of order", e.getType().ordinal() == 0 ? 0 : e.getType().ordinal() - 1, step[s]);
+				step[s]++;
+			}
+			assertNull("Unexpected event", c.error);
+		}
+	}
+
+	@Test
+	public void testEnrollBeforeRegister() throws Exception {
+		final int n = 2000;
+		Collector c = new Collector(Long.MAX_VALUE);
+		poli.changes().subscribe(c);
+		int code = poli.activate("Object Oriented Programming", "James Gosling");
+		Thread registrar = new Thread(() -> {
+			for(int id=10000; id<10000+n; ++id) {
+				while(poli.student(id).isEmpty()) Thread.onSpinWait();	// registers as soon as the student is visible
+				poli.register(id, code);
+			}
+		});
+		registrar.start();
+		for(int i=0; i<n; ++i) poli.enroll("First" + i, "Last" + i);
+		registrar.join();
+
+		boolean[] enrolled = new boolean[n];
+		for(UniversityEvent e : c.take(1 + 2 * n)) {
+			if(e.getType() == Type.ENROLL) enrolled[e.getStudentId() - 10000] = true;
+			if(e.getType() == Type.REGISTER) assertTrue("Registration before enrollment", enrolled[e.getStudentId() - 10000]);
+		}
+	}
+
+	@Test
+	public void testSlowSubscriber() throws InterruptedException {
+		Collector c = new Collector(1);
+		poli.changes().subscribe(c);
+		for(int i=0; i<100_000; ++i) poli.enroll("First" + i, "Last" + i);
+		c.take(1);
+
+		c.subscription.request(Long.MAX_VALUE);
+		assertTrue("Subscriber not notified", c.done.await(5, TimeUnit.SECONDS));
+		assertNotNull("Events lost without error", c.error);
+	}
+
+	@Test
+	public void testClose() throws InterruptedException, IOException {
+		Collector c = new Collector(Long.MAX_VALUE);
+		poli.changes().subscribe(c);
+		poli.enroll("Mario", "Rossi");
+		poli.close();
+
+		assertTrue("Subscription not completed", c.done.await(5, TimeUnit.SECONDS));
+		assertNull("Unexpected error", c.error);
+		assertEquals("Pending events must be delivered", 1, c.events.size());
+
+		Collector late = new Collector(1);
+		poli.changes().subscribe(late);
+		assertTrue("Subscription not completed", late.done.await(5, TimeUnit.SECONDS));
+	}
+}
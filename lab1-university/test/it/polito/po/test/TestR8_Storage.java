@@ -0,0 +1,75 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestR8_Storage {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+	}
+
+	@Test
+	public void testManyStudents() {
+		final int n = 20000;
+		int last = 0;
+		for(int i=0; i<n; ++i) {
+			last = poli.enroll("First" + i, "Last" + i);
+		}
+		assertEquals("Wrong id for last enrolled student", 10000 + n - 1, last);
+		assertEquals("Wrong student info", (10000 + n - 1) + " First" + (n-1) + " Last" + (n-1), poli.student(last));
+		assertEquals("Wrong student info", "15000 First5000 Last5000", poli.student(15000));
+		assertEquals("Student should not exist", "", poli.student(10000 + n));
+	}
+
+	@Test
+	public void testManyCourses() {
+		final int n = 500;
+		int last = 0;
+		for(int i=0; i<n; ++i) {
+			last = poli.activate("Course" + i, "Teacher" + i);
+		}
+		assertEquals("Wrong code for last activated course", 10 + n - 1, last);
+		assertEquals("Wrong course info", last + ",Course" + (n-1) + ",Teacher" + (n-1), poli.course(last));
+		assertEquals("Course should not exist", "", poli.course(10 + n));
+	}
+
+	@Test
+	public void testLargeRegistrations() {
+		final int students = 300;
+		final int courses = 60;
+		for(int i=0; i<students; ++i) {
+			poli.enroll("First" + i, "Last" + i);
+		}
+		for(int i=0; i<courses; ++i) {
+			poli.activate("Course" + i, "Teacher" + i);
+		}
+		for(int i=0; i<students; ++i) {
+			poli.register(10000 + i, 10);
+		}
+		for(int i=1; i<courses; ++i) {
+			poli.register(10000, 10 + i);
+		}
+
+		String[] attendees = poli.listAttendees(10).split("\n");
+		assertEquals("Wrong number of attendees", students, attendees.length);
+		assertEquals("Wrong last attendee", (10000 + students - 1) + " First" + (students-1) + " Last" + (students-1), attendees[students-1]);
+
+		String[] plan = poli.studyPlan(10000).split("\n");
+		assertEquals("Wrong number of courses in study plan", courses, plan.length);
+	}
+}
@@ -0,0 +1,53 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestR9_Enrollment {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.activate("Object Oriented Programming", "James Gosling");
+	}
+
+	@Test
+	public void testExamNotRegisteredSimilarId() {
+		for(int i=0; i<=90000; ++i) {
+			poli.enroll("First" + i, "Last" + i);
+		}
+		poli.register(100000, 10);	// its id contains "10000"
+
+		poli.exam(10000, 10, 30);
+		assertEquals("Student 10000 is not registered to the course",
+					"Student 10000 hasn't taken any exams", poli.studentAvg(10000));
+
+		poli.exam(100000, 10, 24);
+		assertContained("Wrong average", "24", poli.studentAvg(100000));
+	}
+
+	@Test
+	public void testRegisterTwice() {
+		int s = poli.enroll("Mario", "Rossi");
+		poli.register(s, 10);
+		poli.register(s, 10);
+
+		assertEquals("Duplicate registration", 1, poli.listAttendees(10).split("\n").length);
+		assertEquals("Duplicate registration", 1, poli.studyPlan(s).split("\n").length);
+	}
+}
@@ -0,0 +1,29 @@
+package hydraulic.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar.
+ * 
+ * Runs the benchmarks selected by the usual JMH command line options
+ * (e.g. {@code java -jar target/benchmarks.jar Simulation -p threads=4}),
+ * always adding the GC profiler, so that the allocation rate
+ * ({@code gc.alloc.rate.norm}, bytes per operation) is reported
+ * next to the time.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,87 @@
+package hydraulic.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import hydraulic.Element;
+import hydraulic.HSystem;
+import hydraulic.Multisplit;
+import hydraulic.Sink;
+import hydraulic.Source;
+import hydraulic.Split;
+import hydraulic.Tap;
+
+/**
+ * Generator of synthetic, reproducible hydraulic systems.
+ * 
+ * The system is a random forest: each new element (a sink, a split,
+ * a multi-split or, most often, a tap) is connected to a free output
+ * chosen at random among those of the elements already in the system,
+ * so that source trees have very different sizes and depths.
+ */
+final class Network {
+	private static final long SEED = 42;
+
+	final int sources;
+	final int elements;
+
+	Network(int sources, int elements) {
+		this.sources = sources;
+		this.elements = elements;
+	}
+
+	/**
+	 * Builds a new system with all the taps open
+	 * 
+	 * @return the system
+	 */
+	HSystem build() {
+		Random rnd = new Random(SEED);
+		HSystem s = new HSystem();
+		List<Element> open = new ArrayList<>();
+		List<Integer> openSlot = new ArrayList<>();
+		for(int i=0; i<sources; ++i) {
+			Source src = new Source("Src" + i);
+			src.setFlow(1 + rnd.nextInt(100));
+			s.addElement(src);
+			open.add(src);
+			openSlot.add(0);
+		}
+		for(int i=0; i<elements && ! open.isEmpty(); ++i) {
+			Element e;
+			int outputs;
+			switch(rnd.nextInt(6)) {
+			case 0: e = new Sink("Sink" + i); outputs = 0; break;
+			case 1: e = new Split("T" + i); outputs = 2; break;
+			case 2:
+				Multisplit ms = new Multisplit("Ms" + i, 3);
+				ms.setProportions(0.2, 0.3, 0.5);
+				e = ms; outputs = 3;
+				break;
+			default:
+				Tap tap = new Tap("Tap" + i);
+				tap.setOpen(true);
+				e = tap; outputs = 1;
+			}
+			e.setMaxFlow(100);
+			s.addElement(e);
+
+			int k = rnd.nextInt(open.size());
+			Element parent = open.get(k);
+			if(parent instanceof Split) parent.connect(e, openSlot.get(k));
+			else parent.connect(e);
+			int last = open.size() - 1;
+			open.set(k, open.get(last));
+			openSlot.set(k, openSlot.get(last));
+			open.remove(last);
+			openSlot.remove(last);
+
+			for(int o=0; o<outputs; ++o) {
+				open.add(e);
+				openSlot.add(o);
+			}
+		}
+		return s;
+	}
+}
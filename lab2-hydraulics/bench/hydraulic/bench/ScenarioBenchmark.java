@@ -0,0 +1,97 @@
+package hydraulic.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hydraulic.HSystem;
+import hydraulic.ScenarioBatch;
+import hydraulic.SimulationPlan;
+import hydraulic.SimulationResult;
+import hydraulic.Source;
+import hydraulic.Tap;
+
+/**
+ * Benchmarks of the evaluation of a batch of what-if scenarios,
+ * against the simulation of the same scenarios one at a time
+ * by changing the elements and running the plan again.
+ * 
+ * In every scenario each tap is closed with probability 1/10
+ * and each source gets a random flow; the reported time is
+ * for the whole batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScenarioBenchmark {
+
+	@Param({"100"})
+	int sources;
+
+	@Param({"100000"})
+	int elements;
+
+	@Param({"64", "1024"})
+	int scenarios;
+
+	private SimulationPlan plan;
+	private ScenarioBatch batch;
+	private Source[] sourceElements;
+	private Tap[] tapElements;
+	private double[][] flows;
+	private boolean[][] open;
+
+	@Setup
+	public void setUp() {
+		HSystem system = new Network(sources, elements).build();
+		plan = system.compile();
+		batch = plan.scenarios(scenarios);
+		SimulationResult r = plan.run();
+		Random rnd = new Random(7);
+		sourceElements = new Source[batch.sources().size()];
+		flows = new double[sourceElements.length][scenarios];
+		for(int i=0; i<sourceElements.length; ++i) {
+			sourceElements[i] = (Source) r.element(r.indexOf(batch.sources().get(i)));
+			for(int k=0; k<scenarios; ++k) flows[i][k] = 1 + rnd.nextInt(100);
+			batch.setFlows(i, flows[i]);
+		}
+		tapElements = new Tap[batch.taps().size()];
+		open = new boolean[tapElements.length][scenarios];
+		for(int i=0; i<tapElements.length; ++i) {
+			tapElements[i] = (Tap) r.element(r.indexOf(batch.taps().get(i)));
+			for(int k=0; k<scenarios; ++k) open[i][k] = rnd.nextInt(10) > 0;
+			batch.setOpen(i, open[i]);
+		}
+	}
+
+	@Benchmark
+	public ScenarioBatch batch() {
+		batch.evaluate();
+		return batch;
+	}
+
+	@Benchmark
+	public double sequential() {
+		double total = 0;
+		for(int k=0; k<scenarios; ++k) {
+			for(int i=0; i<sourceElements.length; ++i) sourceElements[i].setFlow(flows[i][k]);
+			for(int i=0; i<tapElements.length; ++i) tapElements[i].setOpen(open[i][k]);
+			total += plan.run().inFlow(0);
+		}
+		return total;
+	}
+}
@@ -0,0 +1,70 @@
+package hydraulic.bench;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hydraulic.HSystem;
+import hydraulic.SimulationPlan;
+import hydraulic.SimulationResult;
+
+/**
+ * Benchmarks of the simulation of a compiled {@link SimulationPlan},
+ * sequential and parallel with an increasing number of threads,
+ * to measure how the parallel simulation scales
+ * (e.g. {@code java -jar target/benchmarks.jar Simulation -p threads=1,2,4,8}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulationBenchmark {
+
+	@Param({"100", "1000"})
+	int sources;
+
+	@Param({"1000000"})
+	int elements;
+
+	@Param({"1", "2", "4"})
+	int threads;
+
+	private SimulationPlan plan;
+	private ForkJoinPool pool;
+
+	@Setup
+	public void setUp() {
+		HSystem system = new Network(sources, elements).build();
+		plan = system.compile();
+		pool = new ForkJoinPool(threads);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public SimulationResult sequential() {
+		return plan.run();
+	}
+
+	@Benchmark
+	public SimulationResult parallel() {
+		return plan.run(pool);
+	}
+}
@@ -19,6 +19,8 @@ public abstract class Element {
 	private final Element[] outputs;
 	private Element input;
 	private double maxFlow;
+	private SimulationPlan plan;	// plan to be told about changes of the parameters
+	private int position;
 
 	Element(String name){
 		this.name=name;
@@ -90,9 +92,27 @@ public abstract class Element {
 	 */
 	public void setMaxFlow(double maxFlow) {
 		this.maxFlow = maxFlow;
+		changed();
 	}
 
-	abstract void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck);
+	/**
+	 * Attaches the element to the plan that must be told about the changes
+	 * of its parameters, replacing the previous one
+	 * 
+	 * @param plan		the plan
+	 * @param position	position of the element in the plan
+	 */
+	void track(SimulationPlan plan, int position) {
+		this.plan = plan;
+		this.position = position;
+	}
+
+	/**
+	 * Marks the element as modified in its plan, to be simulated again
+	 */
+	void changed() {
+		if(plan != null) plan.changed(position);
+	}
 
 	abstract void layout(String padding, StringBuffer buffer);
 
@@ -1,6 +1,9 @@
 package hydraulic;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 //import java.util.Collection;
 //import java.util.ArrayList;
 
@@ -114,10 +117,44 @@ public class HSystem {
 	 * checks also the elements maximum flows against the input flow
 	 */
 	public void simulate(SimulationObserver observer, boolean enableMaxFlowCheck) {
-		for(Element e : elements){
-			if( e instanceof Source ){
-				e.simulate(observer,SimulationObserver.NO_FLOW,enableMaxFlowCheck);
+		plan().simulate(observer, enableMaxFlowCheck);
+	}
+
+	/**
+	 * starts the simulation of the system computing the independent parts of the system
+	 * in parallel on the given pool; the observer receives the same notifications,
+	 * in the same order, as {@link #simulate(SimulationObserver, boolean)},
+	 * all from the calling thread
+	 */
+	public void simulate(SimulationObserver observer, boolean enableMaxFlowCheck, ForkJoinPool pool) {
+		plan().simulate(observer, enableMaxFlowCheck, pool);
+	}
+
+	/**
+	 * Compiles the current topology of the system into a plan that can be
+	 * simulated repeatedly, without recursion and without allocating.
+	 * 
+	 * The plan reads the parameters of the elements (flows, taps opening,
+	 * proportions and maximum flows) at each simulation, but it must be compiled
+	 * again after the connections of the elements change.
+	 * The elements report the changes of their parameters to the plan
+	 * most recently compiled, which can then be simulated incrementally
+	 * with {@link SimulationPlan#update(SimulationObserver, boolean)}.
+	 * 
+	 * @return the plan of the elements reachable from the sources
+	 * @throws IllegalStateException if an element is reachable along more than one path
+	 */
+	public SimulationPlan compile() {
+		return plan().track();
+	}
+
+	private SimulationPlan plan() {
+		List<Source> sources = new ArrayList<>();
+		for(int i=0; i<next; ++i){
+			if( elements[i] instanceof Source ){
+				sources.add((Source) elements[i]);
 			}
 		}
+		return SimulationPlan.of(sources);
 	}
 }
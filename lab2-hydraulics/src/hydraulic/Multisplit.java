@@ -31,22 +31,10 @@ public class Multisplit extends Split {
 	 */
 	public void setProportions(double... proportions) {
 		this.proportions = proportions;
+		changed();
 	}
 
-	@Override
-	void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck) {
-		if(enableMaxFlowCheck && inFlow > getMaxFlow()){
-			observer.notifyFlowError("MultiSplit", getName(), inFlow, getMaxFlow());
-		}
-
-		double[] outFlows = new double[proportions.length];
-		for(int i=0; i<proportions.length; ++i){
-			outFlows[i] = inFlow * proportions[i];
-		}
-		observer.notifyFlow("MultiSplit", getName(), inFlow, outFlows);
-		for(int i=0; i<proportions.length; ++i){
-			getOutputs()[i].simulate(observer,outFlows[i], enableMaxFlowCheck);
-		}
+	double[] getProportions() {
+		return proportions;
 	}
-
 }
\ No newline at end of file
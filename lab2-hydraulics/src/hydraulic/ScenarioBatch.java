@@ -0,0 +1,320 @@
+package hydraulic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch of what-if scenarios evaluated together on a {@link SimulationPlan},
+ * created by {@link SimulationPlan#scenarios(int)}.
+ *
+ * Each scenario sets the flow of every source and the opening of every tap,
+ * while proportions and maximum flows are those of the elements.
+ * Sources, taps and sinks are numbered in plan order, and the inputs and outputs
+ * are stored as one row per element with one column per scenario:
+ * the value of element {@code e} in scenario {@code k} is at {@code e * scenarios() + k}.
+ * Initially every scenario has the flows and openings the elements have
+ * when the batch is created.
+ *
+ * {@link #evaluate()} visits the plan once and computes, for each element,
+ * the flows of all the scenarios in a tight loop over the scenarios.
+ * Only the flows entering the elements not visited yet are kept,
+ * in vectors that are reused as the visit proceeds.
+ * The results are the input flow of every sink and the number of elements
+ * exceeding their maximum flow in each scenario.
+ *
+ * A batch must not be used by several threads at the same time,
+ * nor at the same time as its plan.
+ */
+public final class ScenarioBatch {
+	private final SimulationPlan plan;
+	private final int scenarios;
+	private final int[] ordinal;	// position of each element among those of the same type
+	private final List<String> sourceNames = new ArrayList<>();
+	private final List<String> tapNames = new ArrayList<>();
+	private final List<String> sinkNames = new ArrayList<>();
+	private final double[] sourceFlow;
+	private final double[] tapFactor;	// 1 for an open tap, 0 for a closed one
+	private final double[] sinkFlow;
+	private final int[] violations;
+	private Map<String,Integer> sourceIndex;
+	private Map<String,Integer> tapIndex;
+	private Map<String,Integer> sinkIndex;
+
+	private final int[] slotVector;
+	private final List<double[]> vectors = new ArrayList<>();
+	private int[] free = new int[16];
+	private int freeCount;
+
+	ScenarioBatch(SimulationPlan plan, int scenarios) {
+		if(scenarios <= 0) throw new IllegalArgumentException("Invalid number of scenarios: " + scenarios);
+		this.plan = plan;
+		this.scenarios = scenarios;
+		int n = plan.elements.length;
+		ordinal = new int[n];
+		for(int i=0; i<n; ++i) {
+			Element e = plan.elements[i];
+			switch(plan.type[i]) {
+			case SimulationPlan.SOURCE:
+				ordinal[i] = sourceNames.size();
+				sourceNames.add(e.getName());
+				break;
+			case SimulationPlan.TAP:
+				ordinal[i] = tapNames.size();
+				tapNames.add(e.getName());
+				break;
+			case SimulationPlan.SINK:
+				ordinal[i] = sinkNames.size();
+				sinkNames.add(e.getName());
+				break;
+			default:
+			}
+		}
+		sourceFlow = new double[sourceNames.size() * scenarios];
+		tapFactor = new double[tapNames.size() * scenarios];
+		sinkFlow = new double[sinkNames.size() * scenarios];
+		violations = new int[scenarios];
+		slotVector = new int[plan.outFlow.length];
+		for(int i=0; i<n; ++i) {
+			int row = ordinal[i] * scenarios;
+			if(plan.type[i] == SimulationPlan.SOURCE) {
+				Arrays.fill(sourceFlow, row, row + scenarios, ((Source) plan.elements[i]).getFlow());
+			} else if(plan.type[i] == SimulationPlan.TAP) {
+				Arrays.fill(tapFactor, row, row + scenarios, ((Tap) plan.elements[i]).isOpen() ? 1.0 : 0.0);
+			}
+		}
+	}
+
+	/**
+	 * Number of scenarios in the batch
+	 *
+	 * @return number of scenarios
+	 */
+	public int scenarios() {
+		return scenarios;
+	}
+
+	/**
+	 * Names of the sources, in the order of their rows
+	 *
+	 * @return an unmodifiable list of names
+	 */
+	public List<String> sources() {
+		return Collections.unmodifiableList(sourceNames);
+	}
+
+	/**
+	 * Names of the taps, in the order of their rows
+	 *
+	 * @return an unmodifiable list of names
+	 */
+	public List<String> taps() {
+		return Collections.unmodifiableList(tapNames);
+	}
+
+	/**
+	 * Names of the sinks, in the order of their rows
+	 *
+	 * @return an unmodifiable list of names
+	 */
+	public List<String> sinks() {
+		return Collections.unmodifiableList(sinkNames);
+	}
+
+	/**
+	 * Retrieves the row of a source
+	 *
+	 * @param name	name of the source
+	 * @return the row, or {@code -1} if there is no such source in the plan
+	 */
+	public int sourceIndex(String name) {
+		if(sourceIndex == null) sourceIndex = index(sourceNames);
+		return sourceIndex.getOrDefault(name, -1);
+	}
+
+	/**
+	 * Retrieves the row of a tap
+	 *
+	 * @param name	name of the tap
+	 * @return the row, or {@code -1} if there is no such tap in the plan
+	 */
+	public int tapIndex(String name) {
+		if(tapIndex == null) tapIndex = index(tapNames);
+		return tapIndex.getOrDefault(name, -1);
+	}
+
+	/**
+	 * Retrieves the row of a sink
+	 *
+	 * @param name	name of the sink
+	 * @return the row, or {@code -1} if there is no such sink in the plan
+	 */
+	public int sinkIndex(String name) {
+		if(sinkIndex == null) sinkIndex = index(sinkNames);
+		return sinkIndex.getOrDefault(name, -1);
+	}
+
+	private static Map<String,Integer> index(List<String> names) {
+		Map<String,Integer> m = new HashMap<>();
+		for(int i=0; i<names.size(); ++i) m.put(names.get(i), i);
+		return m;
+	}
+
+	/**
+	 * Sets the flow of a source in a scenario
+	 *
+	 * @param source	row of the source
+	 * @param scenario	the scenario
+	 * @param flow		the flow
+	 */
+	public void setFlow(int source, int scenario, double flow) {
+		sourceFlow[cell(source, scenario, sourceNames)] = flow;
+	}
+
+	/**
+	 * Sets the flows of a source in all the scenarios
+	 *
+	 * @param source	row of the source
+	 * @param flows		the flow of each scenario
+	 */
+	public void setFlows(int source, double[] flows) {
+		System.arraycopy(flows, 0, sourceFlow, cell(source, 0, sourceNames), scenarios);
+	}
+
+	/**
+	 * Opens or closes a tap in a scenario
+	 *
+	 * @param tap		row of the tap
+	 * @param scenario	the scenario
+	 * @param open		{@code true} to open the tap
+	 */
+	public void setOpen(int tap, int scenario, boolean open) {
+		tapFactor[cell(tap, scenario, tapNames)] = open ? 1.0 : 0.0;
+	}
+
+	/**
+	 * Opens or closes a tap in all the scenarios
+	 *
+	 * @param tap	row of the tap
+	 * @param open	the opening of the tap in each scenario
+	 */
+	public void setOpen(int tap, boolean[] open) {
+		int row = cell(tap, 0, tapNames);
+		for(int k=0; k<scenarios; ++k) tapFactor[row + k] = open[k] ? 1.0 : 0.0;
+	}
+
+	/**
+	 * Input flow of a sink in a scenario, as computed by the last {@link #evaluate()}
+	 *
+	 * @param sink		row of the sink
+	 * @param scenario	the scenario
+	 * @return the flow
+	 */
+	public double sinkFlow(int sink, int scenario) {
+		return sinkFlow[cell(sink, scenario, sinkNames)];
+	}
+
+	/**
+	 * Input flows of all the sinks in all the scenarios, as computed by the last {@link #evaluate()}
+	 *
+	 * @param dest	array of at least {@code sinks().size() * scenarios()} elements
+	 * @return the array {@code dest}, with the flow of sink {@code s} in scenario {@code k} at {@code s * scenarios() + k}
+	 */
+	public double[] copySinkFlows(double[] dest) {
+		System.arraycopy(sinkFlow, 0, dest, 0, sinkFlow.length);
+		return dest;
+	}
+
+	/**
+	 * Number of elements whose input flow exceeds their maximum flow in a scenario,
+	 * as computed by the last {@link #evaluate()}
+	 *
+	 * @param scenario	the scenario
+	 * @return number of violations
+	 */
+	public int violations(int scenario) {
+		return violations[scenario];
+	}
+
+	private int cell(int row, int scenario, List<String> rows) {
+		if(row < 0 || row >= rows.size()) throw new IndexOutOfBoundsException("Invalid row: " + row);
+		if(scenario < 0 || scenario >= scenarios) throw new IndexOutOfBoundsException("Invalid scenario: " + scenario);
+		return row * scenarios + scenario;
+	}
+
+	/**
+	 * Evaluates all the scenarios, reading the proportions of the multi-splits
+	 * and the maximum flows from the elements
+	 */
+	public void evaluate() {
+		final int n = scenarios;
+		plan.refresh(0, plan.elements.length);
+		Arrays.fill(violations, 0);
+		for(int i=0; i<plan.elements.length; ++i) {
+			final int first = plan.firstOut[i];
+			final int last = plan.firstOut[i+1];
+			final int row = ordinal[i] * n;
+			int in;
+			if(plan.type[i] == SimulationPlan.SOURCE) {
+				in = acquire();
+				System.arraycopy(sourceFlow, row, vectors.get(in), 0, n);
+			} else {
+				in = slotVector[plan.input[i]];
+				double[] v = vectors.get(in);
+				double max = plan.maxFlow[i];
+				for(int k=0; k<n; ++k) violations[k] += v[k] > max ? 1 : 0;
+			}
+			double[] v = vectors.get(in);
+
+			switch(plan.type[i]) {
+			case SimulationPlan.SINK:
+				System.arraycopy(v, 0, sinkFlow, row, n);
+				break;
+			case SimulationPlan.TAP:
+				for(int k=0; k<n; ++k) v[k] *= tapFactor[row + k];
+				break;
+			case SimulationPlan.SPLIT:
+			case SimulationPlan.MULTISPLIT:
+				// every connected output but the last gets a new vector
+				int keep = last - 1;
+				while(keep >= first && plan.child[keep] < 0) keep--;
+				for(int s=first; s<keep; ++s) {
+					if(plan.child[s] < 0) continue;
+					int out = acquire();
+					double[] w = vectors.get(out);
+					double p = plan.proportion[s];
+					for(int k=0; k<n; ++k) w[k] = v[k] * p;
+					slotVector[s] = out;
+				}
+				if(keep >= first) {
+					double p = plan.proportion[keep];
+					for(int k=0; k<n; ++k) v[k] *= p;
+					slotVector[keep] = in;
+				} else {
+					release(in);
+				}
+				continue;
+			default:
+			}
+			if(first < last && plan.child[first] >= 0) {	// source or tap
+				slotVector[first] = in;
+			} else {
+				release(in);
+			}
+		}
+	}
+
+	private int acquire() {
+		if(freeCount > 0) return free[--freeCount];
+		vectors.add(new double[scenarios]);
+		return vectors.size() - 1;
+	}
+
+	private void release(int vector) {
+		if(freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+		free[freeCount++] = vector;
+	}
+}
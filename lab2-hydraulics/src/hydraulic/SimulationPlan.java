@@ -0,0 +1,438 @@
+package hydraulic;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compiled form of the topology of an hydraulic system, built by {@link HSystem#compile()}.
+ *
+ * The elements reachable from the sources are numbered in depth-first order,
+ * one source tree after the other, so that every element comes after the element
+ * feeding it and each subtree occupies a contiguous range of numbers.
+ * The topology is stored in primitive arrays:
+ * <ul>
+ * <li>{@code type}: the kind of each element;
+ * <li>{@code firstOut}: the outputs of element {@code i} are the slots
+ * 		from {@code firstOut[i]} to {@code firstOut[i+1]} (excluded);
+ * <li>{@code child}: the element connected to each output slot, {@code -1} if none;
+ * <li>{@code input}: the output slot feeding each element, {@code -1} for the sources;
+ * <li>{@code proportion}: the fraction of the input flow of an element sent to each
+ * 		of its outputs ({@code 1/2} for a split, {@code 1} or {@code 0} for an open
+ * 		or closed tap), or the flow of a source;
+ * <li>{@code maxFlow}: the maximum input flow of each element;
+ * <li>{@code end}: the element after the last one of the subtree rooted in each element.
+ * </ul>
+ *
+ * A simulation is a single sweep of the elements in order that computes each output
+ * flow as the input flow times the proportion, without recursion and without allocating.
+ * Since the subtrees are independent once the flow entering them is known,
+ * they can also be computed in parallel by {@link #run(ForkJoinPool)}.
+ * The parameters that can change between simulations (flows of the sources,
+ * opening of the taps, proportions of the multi-splits and maximum flows)
+ * are read again from the elements at the beginning of each simulation,
+ * while changes to the connections require a new plan.
+ *
+ * The plan returned by {@link HSystem#compile()} is also told by the elements
+ * when their parameters change, so that {@link #update(SimulationObserver, boolean)}
+ * can simulate again only the subtrees below the modified elements.
+ *
+ * A plan holds the flows of its last simulation, exposed by the
+ * {@link SimulationResult} returned by {@link #run()}, hence it must not
+ * be used by several threads at the same time.
+ */
+public final class SimulationPlan {
+	static final byte SOURCE = 0;
+	static final byte TAP = 1;
+	static final byte SPLIT = 2;
+	static final byte MULTISPLIT = 3;
+	static final byte SINK = 4;
+	/** number of elements below which a range is evaluated by a single task */
+	static final int PARALLEL_THRESHOLD = 1 << 12;
+	private static final Element[] NO_OUTPUTS = new Element[0];
+
+	final Element[] elements;
+	final byte[] type;
+	final int[] firstOut;
+	final int[] child;
+	final int[] input;
+	final int[] end;
+	final double[] proportion;
+	final double[] maxFlow;
+	final double[] inFlow;
+	final double[] outFlow;
+	private final SimulationResult result;
+
+	private boolean evaluated;
+	private final boolean[] dirty;
+	private final int[] dirtyList;
+	private int dirtyCount;
+	private final boolean[] changed;
+	private final int[] changedList;
+	private int changedCount;
+
+	private SimulationPlan(Element[] elements, byte[] type, int[] firstOut, int[] child, int[] input) {
+		this.elements = elements;
+		this.type = type;
+		this.firstOut = firstOut;
+		this.child = child;
+		this.input = input;
+		int n = elements.length;
+		end = new int[n];
+		for(int i=n-1; i>=0; --i) {	// children come after their parent
+			int last = i + 1;
+			for(int k=firstOut[i]; k<firstOut[i+1]; ++k) {
+				if(child[k] >= 0) last = Math.max(last, end[child[k]]);
+			}
+			end[i] = last;
+		}
+		int slots = firstOut[n];
+		proportion = new double[slots];
+		maxFlow = new double[n];
+		inFlow = new double[n];
+		outFlow = new double[slots];
+		result = new SimulationResult(this);
+		dirty = new boolean[n];
+		dirtyList = new int[n];
+		changed = new boolean[n];
+		changedList = new int[n];
+	}
+
+	/**
+	 * Builds the plan of the elements reachable from the given sources
+	 *
+	 * @param sources	the sources, in order of simulation
+	 * @return the plan
+	 * @throws IllegalStateException if an element is reachable along more than one path
+	 */
+	static SimulationPlan of(Iterable<Source> sources) {
+		Map<Element,Integer> number = new IdentityHashMap<>();
+		Element[] order = new Element[16];
+		int n = 0;
+		int slots = 0;
+		Deque<Element> stack = new ArrayDeque<>();
+		for(Source s : sources) {
+			stack.push(s);
+			while(! stack.isEmpty()) {
+				Element e = stack.pop();
+				if(number.putIfAbsent(e, n) != null) {
+					throw new IllegalStateException("Element " + e.getName() + " is reachable along more than one path");
+				}
+				if(n == order.length) order = Arrays.copyOf(order, n * 2);
+				order[n++] = e;
+				Element[] outputs = outputsOf(e);
+				slots += outputs.length;
+				for(int k=outputs.length-1; k>=0; --k) {
+					if(outputs[k] != null) stack.push(outputs[k]);
+				}
+			}
+		}
+
+		Element[] elements = Arrays.copyOf(order, n);
+		byte[] type = new byte[n];
+		int[] firstOut = new int[n + 1];
+		int[] child = new int[slots];
+		int[] input = new int[n];
+		Arrays.fill(input, -1);
+		int slot = 0;
+		for(int i=0; i<n; ++i) {
+			type[i] = typeOf(elements[i]);
+			firstOut[i] = slot;
+			for(Element out : outputsOf(elements[i])) {
+				if(out == null) {
+					child[slot] = -1;
+				} else {
+					child[slot] = number.get(out);
+					input[child[slot]] = slot;
+				}
+				slot++;
+			}
+		}
+		firstOut[n] = slot;
+		return new SimulationPlan(elements, type, firstOut, child, input);
+	}
+
+	/**
+	 * Attaches the elements to this plan, so that it is told about their changes
+	 * instead of the plan previously compiled
+	 *
+	 * @return this plan
+	 */
+	SimulationPlan track() {
+		for(int i=0; i<elements.length; ++i) elements[i].track(this, i);
+		return this;
+	}
+
+	/**
+	 * Marks an element whose parameters changed since the last simulation
+	 *
+	 * @param i	position of the element
+	 */
+	void changed(int i) {
+		if(! dirty[i]) {
+			dirty[i] = true;
+			dirtyList[dirtyCount++] = i;
+		}
+	}
+
+	private void clean() {
+		for(int d=0; d<dirtyCount; ++d) dirty[dirtyList[d]] = false;
+		dirtyCount = 0;
+		evaluated = true;
+	}
+
+	private static Element[] outputsOf(Element e) {
+		return e instanceof Sink ? NO_OUTPUTS : e.getOutputs();
+	}
+
+	private static byte typeOf(Element e) {
+		if(e instanceof Source) return SOURCE;
+		if(e instanceof Tap) return TAP;
+		if(e instanceof Multisplit) return MULTISPLIT;
+		if(e instanceof Split) return SPLIT;
+		return SINK;
+	}
+
+	/**
+	 * Number of elements in the plan, i.e. those reachable from the sources
+	 *
+	 * @return number of elements
+	 */
+	public int size() {
+		return elements.length;
+	}
+
+	/**
+	 * Reads the current parameters of a range of elements
+	 *
+	 * @param from	first element
+	 * @param to	element after the last one
+	 */
+	void refresh(int from, int to) {
+		for(int i=from; i<to; ++i) {
+			Element e = elements[i];
+			maxFlow[i] = e.getMaxFlow();
+			int first = firstOut[i];
+			switch(type[i]) {
+			case SOURCE:
+				proportion[first] = ((Source) e).getFlow();
+				break;
+			case TAP:
+				proportion[first] = ((Tap) e).isOpen() ? 1.0 : 0.0;
+				break;
+			case SPLIT:
+				for(int k=first; k<firstOut[i+1]; ++k) proportion[k] = 0.5;
+				break;
+			case MULTISPLIT:
+				double[] p = ((Multisplit) e).getProportions();
+				for(int k=first; k<firstOut[i+1]; ++k) {
+					proportion[k] = p != null && k - first < p.length ? p[k - first] : 0.0;
+				}
+				break;
+			default:
+			}
+		}
+	}
+
+	/**
+	 * Computes the flows of a contiguous range of elements in plan order,
+	 * whose inputs have already been computed
+	 *
+	 * @param from	first element
+	 * @param to	element after the last one
+	 */
+	void evaluate(int from, int to) {
+		for(int i=from; i<to; ++i) {
+			int in = input[i];
+			double base = in < 0 ? 1.0 : outFlow[in];	// the proportion of a source is its flow
+			inFlow[i] = in < 0 ? SimulationObserver.NO_FLOW : base;
+			for(int k=firstOut[i]; k<firstOut[i+1]; ++k) {
+				outFlow[k] = base * proportion[k];
+			}
+		}
+	}
+
+	/**
+	 * Simulates the system with the current parameters of the elements, without allocating
+	 *
+	 * @return the flows of the elements, valid until the next simulation of the plan
+	 */
+	public SimulationResult run() {
+		clean();
+		refresh(0, elements.length);
+		evaluate(0, elements.length);
+		return result;
+	}
+
+	/**
+	 * Simulates the system with the current parameters of the elements,
+	 * computing independent source trees and subtrees in parallel.
+	 *
+	 * The flows are the same as those computed by {@link #run()};
+	 * the elements must not be modified during the simulation.
+	 *
+	 * @param pool	the pool running the computation
+	 * @return the flows of the elements, valid until the next simulation of the plan
+	 */
+	public SimulationResult run(ForkJoinPool pool) {
+		clean();
+		pool.invoke(new EvaluateTask(0, elements.length));
+		return result;
+	}
+
+	/**
+	 * Simulates the system in parallel and then notifies the observer
+	 * from the calling thread, in the same order as {@link #simulate(SimulationObserver, boolean)}
+	 *
+	 * @param observer				the observer receiving the flows
+	 * @param enableMaxFlowCheck	if {@code true}, notifies the elements whose input flow exceeds the maximum
+	 * @param pool					the pool running the computation
+	 */
+	public void simulate(SimulationObserver observer, boolean enableMaxFlowCheck, ForkJoinPool pool) {
+		run(pool).replay(observer, enableMaxFlowCheck);
+	}
+
+	/**
+	 * Simulates again the subtrees below the elements whose parameters changed
+	 * since the last simulation, notifying the observer only about the elements
+	 * whose input or output flows changed, in plan order.
+	 * If {@code enableMaxFlowCheck} is {@code true}, also the modified elements whose
+	 * input flow exceeds the maximum are notified, with the error before their flows.
+	 *
+	 * Below an element whose output flows did not change nothing is simulated again,
+	 * hence the cost depends on the part of the system whose flows actually change.
+	 * The first time the whole system is simulated and notified.
+	 * Only the changes made through the elements' setters are detected, and
+	 * only by the plan most recently returned by {@link HSystem#compile()}.
+	 *
+	 * @param observer				the observer receiving the flows
+	 * @param enableMaxFlowCheck	if {@code true}, notifies the modified elements whose input flow exceeds the maximum
+	 * @return number of elements notified
+	 */
+	public int update(SimulationObserver observer, boolean enableMaxFlowCheck) {
+		if(! evaluated) {
+			simulate(observer, enableMaxFlowCheck);
+			return elements.length;
+		}
+		Arrays.sort(dirtyList, 0, dirtyCount);
+		for(int d=0; d<dirtyCount; ++d) refresh(dirtyList[d], dirtyList[d] + 1);
+		for(int d=0; d<dirtyCount; ++d) {
+			int root = dirtyList[d];
+			if(enableMaxFlowCheck && result.exceedsMaxFlow(root)) markChanged(root);
+			for(int i=root; i<end[root]; ) {
+				i = reevaluate(i) ? i + 1 : end[i];
+			}
+		}
+		clean();
+
+		Arrays.sort(changedList, 0, changedCount);
+		int notified = changedCount;
+		for(int c=0; c<changedCount; ++c) {
+			int i = changedList[c];
+			changed[i] = false;
+			result.notify(observer, enableMaxFlowCheck, i);
+		}
+		changedCount = 0;
+		return notified;
+	}
+
+	/**
+	 * Computes again the flows of an element whose input is up to date,
+	 * marking it if they changed
+	 *
+	 * @param i	position of the element
+	 * @return {@code true} if the output flows changed, hence the children must be computed again
+	 */
+	private boolean reevaluate(int i) {
+		int in = input[i];
+		double base = in < 0 ? 1.0 : outFlow[in];
+		double flow = in < 0 ? SimulationObserver.NO_FLOW : base;
+		boolean flowsChanged = ! same(inFlow[i], flow);
+		inFlow[i] = flow;
+		boolean outChanged = false;
+		for(int k=firstOut[i]; k<firstOut[i+1]; ++k) {
+			double out = base * proportion[k];
+			if(! same(outFlow[k], out)) {
+				outFlow[k] = out;
+				outChanged = true;
+			}
+		}
+		if(flowsChanged || outChanged) markChanged(i);
+		return outChanged;
+	}
+
+	private static boolean same(double a, double b) {
+		return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+	}
+
+	private void markChanged(int i) {
+		if(! changed[i]) {
+			changed[i] = true;
+			changedList[changedCount++] = i;
+		}
+	}
+
+	/**
+	 * Creates a batch of what-if scenarios to be evaluated together on this plan
+	 *
+	 * @param scenarios	number of scenarios
+	 * @return the batch, with all the scenarios set to the current flows and openings of the elements
+	 */
+	public ScenarioBatch scenarios(int scenarios) {
+		return new ScenarioBatch(this, scenarios);
+	}
+
+	/**
+	 * Evaluation of a range of whole subtrees whose input flows are known.
+	 *
+	 * A range made of several subtrees is split in two at the subtree boundary
+	 * closest to the middle; a range made of a single subtree
+	 * is entered by evaluating its root, whose outputs make the children ranges.
+	 * Each task writes only the slots of its own range.
+	 */
+	private class EvaluateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int from;
+		private final int to;
+
+		EvaluateTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			while(to - from > PARALLEL_THRESHOLD) {
+				if(end[from] == to) {	// single subtree: evaluate its root and enter it
+					refresh(from, from + 1);
+					evaluate(from, from + 1);
+					from++;
+					continue;
+				}
+				int mid = from + (to - from) / 2;
+				int r = from;
+				while(end[r] <= mid) r = end[r];
+				int split = r == from ? end[r] : r;
+				invokeAll(new EvaluateTask(from, split), new EvaluateTask(split, to));
+				return;
+			}
+			refresh(from, to);
+			evaluate(from, to);
+		}
+	}
+
+	/**
+	 * Simulates the system with the current parameters of the elements,
+	 * notifying the observer in the same order as {@link HSystem#simulate(SimulationObserver, boolean)}
+	 *
+	 * @param observer				the observer receiving the flows
+	 * @param enableMaxFlowCheck	if {@code true}, notifies the elements whose input flow exceeds the maximum
+	 */
+	public void simulate(SimulationObserver observer, boolean enableMaxFlowCheck) {
+		run().replay(observer, enableMaxFlowCheck);
+	}
+}
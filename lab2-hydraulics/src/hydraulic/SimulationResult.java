@@ -0,0 +1,211 @@
+package hydraulic;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flows computed by the last simulation of a {@link SimulationPlan},
+ * as returned by {@link SimulationPlan#run()}.
+ *
+ * The flows are kept in columns indexed by the position of the elements in the plan
+ * ({@code 0} to {@link #size()} excluded): the input flow of each element and
+ * the output flows of all the elements, where the outputs of element {@code i}
+ * are the slots from {@link #firstOutput(int) firstOutput(i)} to
+ * {@code firstOutput(i+1)} (excluded).
+ * The input flow of a source is {@link SimulationObserver#NO_FLOW} and a sink has no outputs.
+ *
+ * The result is a view of the arrays of the plan, which are overwritten by the following
+ * simulation: reading the flows does not allocate, and the flows that must outlive
+ * the next simulation have to be copied, e.g. with {@link #copyInFlows(double[])}.
+ * The flows can also be delivered to a {@link SimulationObserver} with
+ * {@link #replay(SimulationObserver, boolean)}.
+ */
+public final class SimulationResult {
+	private static final String[] TYPE_NAMES = {"Source", "Tap", "Split", "MultiSplit", "Sink"};
+
+	private final SimulationPlan plan;
+	private Map<String,Integer> index;
+
+	SimulationResult(SimulationPlan plan) {
+		this.plan = plan;
+	}
+
+	/**
+	 * Number of elements in the result
+	 *
+	 * @return number of elements
+	 */
+	public int size() {
+		return plan.elements.length;
+	}
+
+	/**
+	 * Number of output slots of all the elements
+	 *
+	 * @return number of output flows
+	 */
+	public int outputs() {
+		return plan.outFlow.length;
+	}
+
+	/**
+	 * Retrieves the position of an element
+	 *
+	 * @param name	name of the element
+	 * @return the position, or {@code -1} if there is no such element in the plan
+	 */
+	public int indexOf(String name) {
+		if(index == null) {
+			Map<String,Integer> m = new HashMap<>();
+			for(int i=0; i<plan.elements.length; ++i) m.put(plan.elements[i].getName(), i);
+			index = m;
+		}
+		return index.getOrDefault(name, -1);
+	}
+
+	/**
+	 * Retrieves the element in a given position
+	 *
+	 * @param i	position of the element
+	 * @return the element
+	 */
+	public Element element(int i) {
+		return plan.elements[i];
+	}
+
+	/**
+	 * Retrieves the class name of the element in a given position,
+	 * as notified to the {@link SimulationObserver}
+	 *
+	 * @param i	position of the element
+	 * @return the class name
+	 */
+	public String type(int i) {
+		return TYPE_NAMES[plan.type[i]];
+	}
+
+	/**
+	 * Input flow of an element
+	 *
+	 * @param i	position of the element
+	 * @return the input flow, {@link SimulationObserver#NO_FLOW} for a source
+	 */
+	public double inFlow(int i) {
+		return plan.inFlow[i];
+	}
+
+	/**
+	 * First output slot of an element
+	 *
+	 * @param i	position of the element, or {@link #size()} to get {@link #outputs()}
+	 * @return the slot of the first output
+	 */
+	public int firstOutput(int i) {
+		return plan.firstOut[i];
+	}
+
+	/**
+	 * Output flow of a given slot
+	 *
+	 * @param slot	the output slot
+	 * @return the output flow
+	 */
+	public double outFlow(int slot) {
+		return plan.outFlow[slot];
+	}
+
+	/**
+	 * Output flows of an element, copied into a new array
+	 *
+	 * @param i	position of the element
+	 * @return the output flows, an empty array for a sink
+	 */
+	public double[] outFlows(int i) {
+		return Arrays.copyOfRange(plan.outFlow, plan.firstOut[i], plan.firstOut[i+1]);
+	}
+
+	/**
+	 * Maximum flow of an element when it was simulated
+	 *
+	 * @param i	position of the element
+	 * @return the maximum flow
+	 */
+	public double maxFlow(int i) {
+		return plan.maxFlow[i];
+	}
+
+	/**
+	 * Checks whether the input flow of an element exceeds its maximum flow
+	 *
+	 * @param i	position of the element
+	 * @return {@code true} if the maximum flow is exceeded
+	 */
+	public boolean exceedsMaxFlow(int i) {
+		return plan.type[i] != SimulationPlan.SOURCE && plan.inFlow[i] > plan.maxFlow[i];
+	}
+
+	/**
+	 * Copies the input flows of all the elements
+	 *
+	 * @param dest	array of at least {@link #size()} elements
+	 * @return the array {@code dest}
+	 */
+	public double[] copyInFlows(double[] dest) {
+		System.arraycopy(plan.inFlow, 0, dest, 0, plan.inFlow.length);
+		return dest;
+	}
+
+	/**
+	 * Copies the output flows of all the elements
+	 *
+	 * @param dest	array of at least {@link #outputs()} elements
+	 * @return the array {@code dest}
+	 */
+	public double[] copyOutFlows(double[] dest) {
+		System.arraycopy(plan.outFlow, 0, dest, 0, plan.outFlow.length);
+		return dest;
+	}
+
+	/**
+	 * Notifies the flows to an observer, element by element in plan order;
+	 * if {@code enableMaxFlowCheck} is {@code true} the error of an element
+	 * exceeding its maximum flow is notified before its flows.
+	 *
+	 * Since the observer may keep the output flows, each notification
+	 * receives a new array.
+	 *
+	 * @param observer				the observer receiving the flows
+	 * @param enableMaxFlowCheck	if {@code true}, notifies the elements whose input flow exceeds the maximum
+	 */
+	public void replay(SimulationObserver observer, boolean enableMaxFlowCheck) {
+		replay(observer, enableMaxFlowCheck, 0, size());
+	}
+
+	/**
+	 * Notifies the flows of a contiguous range of elements
+	 *
+	 * @param from	first element
+	 * @param to	element after the last one
+	 */
+	void replay(SimulationObserver observer, boolean enableMaxFlowCheck, int from, int to) {
+		for(int i=from; i<to; ++i) {
+			notify(observer, enableMaxFlowCheck, i);
+		}
+	}
+
+	/**
+	 * Notifies the flows of an element
+	 */
+	void notify(SimulationObserver observer, boolean enableMaxFlowCheck, int i) {
+		String name = plan.elements[i].getName();
+		if(enableMaxFlowCheck && exceedsMaxFlow(i)) {
+			observer.notifyFlowError(type(i), name, plan.inFlow[i], plan.maxFlow[i]);
+		}
+		if(plan.type[i] == SimulationPlan.SINK) {
+			observer.notifyFlow(type(i), name, plan.inFlow[i], SimulationObserver.NO_FLOW);
+		} else {
+			observer.notifyFlow(type(i), name, plan.inFlow[i], outFlows(i));
+		}
+	}
+}
@@ -20,15 +20,6 @@ public class Sink extends Element {
 		setInput(elem);
 	}
 
-	@Override
-	void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck) {
-		if(enableMaxFlowCheck && inFlow > getMaxFlow()){
-			observer.notifyFlowError("Sink", getName(), inFlow, getMaxFlow());
-		}
-
-		observer.notifyFlow("Sink", getName(), inFlow, SimulationObserver.NO_FLOW);
-	}
-
 	@Override
 	void layout(String padding, StringBuffer buffer) {
 		buffer.append("[").append(getName()).append("]Sink");
@@ -25,12 +25,11 @@ public class Source extends Element {
 	 */
 	public void setFlow(double flow){
 		this.flow = flow;
+		changed();
 	}
 
-	@Override
-	void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck) {
-		observer.notifyFlow("Source", getName(), SimulationObserver.NO_FLOW, flow);
-		getOutput().simulate(observer,flow, enableMaxFlowCheck);
+	double getFlow(){
+		return flow;
 	}
 
 	@Override
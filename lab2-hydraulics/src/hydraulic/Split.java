@@ -21,17 +21,6 @@ public class Split extends Element {
 		super(name,numOutput);
 	}
 
-	@Override
-	void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck) {
-		if(enableMaxFlowCheck && inFlow > getMaxFlow()){
-			observer.notifyFlowError("Split", getName(), inFlow, getMaxFlow());
-		}
-		observer.notifyFlow("Split", getName(), inFlow, inFlow/2,inFlow/2);
-		for(Element e : getOutputs()){
-			e.simulate(observer,inFlow/2, enableMaxFlowCheck);
-		}
-	}
-
 	@Override
 	void layout(String padding, StringBuffer buffer) {
 		buffer.append("[").append(getName()).append("]Split ");
@@ -26,16 +26,11 @@ public class Tap extends Element {
 	 */
 	public void setOpen(boolean open){
 		this.open = open;
+		changed();
 	}
 
-	@Override
-	void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck) {
-		if(enableMaxFlowCheck && inFlow > getMaxFlow()){
-			observer.notifyFlowError("Tap", getName(), inFlow, getMaxFlow());
-		}
-		double outFlow = open?inFlow:0.0;
-		observer.notifyFlow("Tap", getName(), inFlow, outFlow);
-		getOutput().simulate(observer,outFlow, enableMaxFlowCheck);
+	boolean isOpen(){
+		return open;
 	}
 
 	@Override
@@ -0,0 +1,130 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.Test;
+
+
+public class TestR10_SimulationResult {
+
+	private static HSystem buildSystem(Source src, Tap tap, Multisplit ms, Sink... sinks) {
+		HSystem s = new HSystem();
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(ms);
+		for(Sink sink : sinks) s.addElement(sink);
+		src.connect(tap);
+		tap.connect(ms);
+		for(int i=0; i<sinks.length; ++i) ms.connect(sinks[i], i);
+		return s;
+	}
+
+	@Test
+	public void testColumns(){
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Multisplit ms = new Multisplit("Ms", 3);
+		Sink sink1 = new Sink("Sink1");
+		Sink sink2 = new Sink("Sink2");
+		Sink sink3 = new Sink("Sink3");
+		HSystem s = buildSystem(src, tap, ms, sink1, sink2, sink3);
+		src.setFlow(100.0);
+		tap.setOpen(true);
+		ms.setProportions(0.5, 0.3, 0.2);
+		sink1.setMaxFlow(50.0);
+		sink2.setMaxFlow(20.0);
+
+		SimulationResult r = s.compile().run();
+		assertEquals(6, r.size());
+		assertEquals("Sources, taps and multi-splits have one slot per output", 5, r.outputs());
+
+		int i = r.indexOf("Ms");
+		assertSame(ms, r.element(i));
+		assertEquals("MultiSplit", r.type(i));
+		assertEquals(100.0, r.inFlow(i), 0.01);
+		assertArrayEquals(new double[] {50.0, 30.0, 20.0}, r.outFlows(i), 0.01);
+		assertEquals(30.0, r.outFlow(r.firstOutput(i) + 1), 0.01);
+
+		assertTrue(Double.isNaN(r.inFlow(r.indexOf("Src"))));
+		int sink = r.indexOf("Sink2");
+		assertEquals("A sink has no outputs", r.firstOutput(sink), r.firstOutput(sink + 1));
+		assertTrue(r.exceedsMaxFlow(sink));
+		assertFalse(r.exceedsMaxFlow(r.indexOf("Sink1")));
+		assertEquals(-1, r.indexOf("Missing"));
+
+		double[] in = r.copyInFlows(new double[r.size()]);
+		assertEquals(20.0, in[r.indexOf("Sink3")], 0.01);
+		double[] out = r.copyOutFlows(new double[r.outputs()]);
+		assertEquals(100.0, out[r.firstOutput(r.indexOf("Tap"))], 0.01);
+	}
+
+	@Test
+	public void testReplay(){
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Multisplit ms = new Multisplit("Ms", 2);
+		Sink sink1 = new Sink("Sink1");
+		Sink sink2 = new Sink("Sink2");
+		HSystem s = buildSystem(src, tap, ms, sink1, sink2);
+		src.setFlow(10.0);
+		tap.setOpen(true);
+		ms.setProportions(0.6, 0.4);
+		ms.setMaxFlow(5.0);
+
+		SimulationPlan plan = s.compile();
+		StoreObserver obs = new StoreObserver();
+		plan.run().replay(obs, true);
+
+		assertEquals(4.0, obs.inFlowOf("Sink2"), 0.01);
+		assertArrayEquals(new double[] {6.0, 4.0}, obs.outFlowsOf("Ms"), 0.01);
+		assertTrue("Missing max flow error", obs.containsError("Ms"));
+		assertEquals(5.0, obs.maxFlowOf("Ms"), 0.01);
+
+		double[] kept = obs.outFlowsOf("Ms");
+		src.setFlow(20.0);
+		plan.run();
+		assertEquals("Notified flows must not change with the following simulation", 6.0, kept[0], 0.01);
+	}
+
+	@Test
+	public void testNoAllocation(){
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		final int width = 1000;
+		HSystem s = new HSystem();
+		for(int i=0; i<width; ++i){
+			Source src = new Source("Src" + i);
+			Tap tap = new Tap("Tap" + i);
+			Split t = new Split("T" + i);
+			Sink sink1 = new Sink("SinkA" + i);
+			Sink sink2 = new Sink("SinkB" + i);
+			for(Element e : new Element[] {src, tap, t, sink1, sink2}) s.addElement(e);
+			src.connect(tap);
+			tap.connect(t);
+			t.connect(sink1, 0);
+			t.connect(sink2, 1);
+			src.setFlow(i);
+			tap.setOpen(true);
+		}
+		SimulationPlan plan = s.compile();
+		double total = 0;
+		for(int k=0; k<100; ++k) total += plan.run().inFlow(4);	// warm up
+
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for(int k=0; k<100; ++k) total += plan.run().inFlow(4);
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		assertEquals(0.0, total, 0.01);
+		assertTrue("Simulation allocated " + allocated + " bytes", allocated < 1024);
+	}
+}
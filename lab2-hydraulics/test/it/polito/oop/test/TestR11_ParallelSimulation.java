@@ -0,0 +1,162 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+public class TestR11_ParallelSimulation {
+
+	private static ForkJoinPool pool;
+
+	@BeforeClass
+	public static void setUpPool(){
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public static void shutDownPool(){
+		pool.shutdown();
+	}
+
+	/**
+	 * Observer recording all the notifications, in order
+	 */
+	static class OrderObserver implements SimulationObserver {
+		final List<String> log = new ArrayList<>();
+
+		@Override
+		public void notify(Level level, String type, String name, double inFlow, double... flows) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(level).append(' ').append(type).append(' ').append(name).append(' ').append(inFlow);
+			for(double f : flows) sb.append(' ').append(f);
+			log.add(sb.toString());
+		}
+	}
+
+	/**
+	 * Builds a random forest: each new element is connected to a free output
+	 * of an element already in the system
+	 */
+	static HSystem randomSystem(int sources, int size, long seed){
+		Random rnd = new Random(seed);
+		HSystem s = new HSystem();
+		List<Element> open = new ArrayList<>();
+		List<Integer> openSlot = new ArrayList<>();
+		for(int i=0; i<sources; ++i){
+			Source src = new Source("Src" + i);
+			src.setFlow(1 + rnd.nextInt(100));
+			s.addElement(src);
+			open.add(src);
+			openSlot.add(0);
+		}
+		for(int i=0; i<size && ! open.isEmpty(); ++i){
+			Element e;
+			int outputs;
+			switch(rnd.nextInt(6)){
+			case 0: e = new Sink("Sink" + i); outputs = 0; break;
+			case 1: e = new Split("T" + i); outputs = 2; break;
+			case 2:
+				Multisplit ms = new Multisplit("Ms" + i, 3);
+				ms.setProportions(0.2, 0.3, 0.5);
+				e = ms; outputs = 3;
+				break;
+			default:
+				Tap tap = new Tap("Tap" + i);
+				tap.setOpen(rnd.nextInt(10) > 0);
+				e = tap; outputs = 1;
+			}
+			e.setMaxFlow(rnd.nextInt(50));
+			s.addElement(e);
+
+			int k = rnd.nextInt(open.size());
+			Element parent = open.get(k);
+			int slot = openSlot.get(k);
+			if(parent instanceof Split) parent.connect(e, slot);
+			else parent.connect(e);
+			open.set(k, open.get(open.size()-1));
+			openSlot.set(k, openSlot.get(openSlot.size()-1));
+			open.remove(open.size()-1);
+			openSlot.remove(openSlot.size()-1);
+
+			for(int o=0; o<outputs; ++o){
+				open.add(e);
+				openSlot.add(o);
+			}
+		}
+		return s;
+	}
+
+	@Test
+	public void testSameFlows(){
+		HSystem s = randomSystem(200, 200_000, 42);
+		SimulationPlan plan = s.compile();
+
+		SimulationResult r = plan.run();
+		double[] in = r.copyInFlows(new double[r.size()]);
+		double[] out = r.copyOutFlows(new double[r.outputs()]);
+
+		r = plan.run(pool);
+		assertArrayEquals("Different input flows", in, r.copyInFlows(new double[r.size()]), 0.0);
+		assertArrayEquals("Different output flows", out, r.copyOutFlows(new double[r.outputs()]), 0.0);
+	}
+
+	@Test
+	public void testSameNotifications(){
+		HSystem s = randomSystem(3, 50_000, 7);
+
+		OrderObserver sequential = new OrderObserver();
+		s.simulate(sequential, true);
+		OrderObserver parallel = new OrderObserver();
+		s.simulate(parallel, true, pool);
+
+		assertEquals(sequential.log.size(), parallel.log.size());
+		assertEquals("Notifications must be in the same order", sequential.log, parallel.log);
+	}
+
+	@Test
+	public void testDeepPipeline(){
+		final int depth = 100_000;
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(8.0);
+		s.addElement(src);
+		Element last = src;
+		for(int i=0; i<depth; ++i){
+			Tap tap = new Tap("Tap" + i);
+			tap.setOpen(true);
+			s.addElement(tap);
+			last.connect(tap);
+			last = tap;
+		}
+		Split t = new Split("T");
+		s.addElement(t);
+		last.connect(t);
+		for(int b=0; b<2; ++b){
+			last = t;
+			for(int i=0; i<depth; ++i){
+				Tap tap = new Tap("Tap" + b + "_" + i);
+				tap.setOpen(true);
+				s.addElement(tap);
+				if(last == t) t.connect(tap, b);
+				else last.connect(tap);
+				last = tap;
+			}
+			Sink sink = new Sink("Sink" + b);
+			s.addElement(sink);
+			last.connect(sink);
+		}
+
+		SimulationResult r = s.compile().run(pool);
+		assertEquals(4.0, r.inFlow(r.indexOf("Sink0")), 0.01);
+		assertEquals(4.0, r.inFlow(r.indexOf("Sink1")), 0.01);
+	}
+}
@@ -0,0 +1,112 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class TestR12_Scenarios {
+
+	@Test
+	public void testSmallBatch(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Multisplit ms = new Multisplit("Ms", 3);
+		Tap tap2 = new Tap("Tap2");
+		Sink sink1 = new Sink("Sink1");
+		Sink sink2 = new Sink("Sink2");
+		for(Element e : new Element[] {src, tap, ms, tap2, sink1, sink2}) s.addElement(e);
+		src.connect(tap);
+		tap.connect(ms);
+		ms.connect(tap2, 0);
+		ms.connect(sink2, 2);	// output 1 left unconnected
+		tap2.connect(sink1);
+		src.setFlow(100.0);
+		tap.setOpen(true);
+		tap2.setOpen(true);
+		ms.setProportions(0.5, 0.3, 0.2);
+		for(Element e : new Element[] {tap, ms, tap2, sink1, sink2}) e.setMaxFlow(1000.0);
+		sink2.setMaxFlow(30.0);
+
+		ScenarioBatch batch = s.compile().scenarios(4);
+		assertEquals(4, batch.scenarios());
+		assertEquals(2, batch.taps().size());
+		int source = batch.sourceIndex("Src");
+		int t2 = batch.tapIndex("Tap2");
+		int s1 = batch.sinkIndex("Sink1");
+		int s2 = batch.sinkIndex("Sink2");
+		assertEquals(-1, batch.tapIndex("Ms"));
+
+		batch.setFlows(source, new double[] {100.0, 200.0, 100.0, 300.0});
+		batch.setOpen(t2, new boolean[] {true, true, false, true});
+		batch.setOpen(batch.tapIndex("Tap"), 3, false);
+		batch.evaluate();
+
+		assertEquals(50.0, batch.sinkFlow(s1, 0), 0.01);
+		assertEquals(20.0, batch.sinkFlow(s2, 0), 0.01);
+		assertEquals(100.0, batch.sinkFlow(s1, 1), 0.01);
+		assertEquals(40.0, batch.sinkFlow(s2, 1), 0.01);
+		assertEquals(0.0, batch.sinkFlow(s1, 2), 0.01);
+		assertEquals(20.0, batch.sinkFlow(s2, 2), 0.01);
+		assertEquals(0.0, batch.sinkFlow(s2, 3), 0.01);
+
+		assertEquals(0, batch.violations(0));
+		assertEquals("Sink2 exceeds its maximum flow", 1, batch.violations(1));
+		assertEquals(0, batch.violations(3));
+		assertEquals("The elements must not be modified", 100.0, s.compile().run().inFlow(1), 0.01);
+	}
+
+	@Test
+	public void testSameAsSequential(){
+		HSystem s = TestR11_ParallelSimulation.randomSystem(20, 20_000, 3);
+		SimulationPlan plan = s.compile();
+		SimulationResult r = plan.run();
+		final int scenarios = 37;
+
+		ScenarioBatch batch = plan.scenarios(scenarios);
+		Random rnd = new Random(11);
+		double[][] flows = new double[batch.sources().size()][scenarios];
+		boolean[][] open = new boolean[batch.taps().size()][scenarios];
+		for(int i=0; i<flows.length; ++i){
+			for(int k=0; k<scenarios; ++k) flows[i][k] = rnd.nextInt(200);
+			batch.setFlows(i, flows[i]);
+		}
+		for(int i=0; i<open.length; ++i){
+			for(int k=0; k<scenarios; ++k) open[i][k] = rnd.nextInt(5) > 0;
+			batch.setOpen(i, open[i]);
+		}
+		batch.evaluate();
+
+		for(int k=0; k<scenarios; ++k){
+			for(int i=0; i<flows.length; ++i){
+				((Source) r.element(r.indexOf(batch.sources().get(i)))).setFlow(flows[i][k]);
+			}
+			for(int i=0; i<open.length; ++i){
+				((Tap) r.element(r.indexOf(batch.taps().get(i)))).setOpen(open[i][k]);
+			}
+			plan.run();
+			int violations = 0;
+			for(int i=0; i<r.size(); ++i){
+				if(r.exceedsMaxFlow(i)) violations++;
+			}
+			assertEquals("Wrong violations in scenario " + k, violations, batch.violations(k));
+			for(int i=0; i<batch.sinks().size(); ++i){
+				assertEquals("Wrong flow of sink " + i + " in scenario " + k,
+						r.inFlow(r.indexOf(batch.sinks().get(i))), batch.sinkFlow(i, k), 0.0);
+			}
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidScenario(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		s.addElement(src);
+		src.setFlow(1.0);
+		s.compile().scenarios(2).setFlow(0, 2, 1.0);
+	}
+}
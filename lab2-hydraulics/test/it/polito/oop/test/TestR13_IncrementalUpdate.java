@@ -0,0 +1,141 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class TestR13_IncrementalUpdate {
+
+	@Test
+	public void testOnlyChanges(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Split t = new Split("T");
+		Tap tap1 = new Tap("Tap1");
+		Tap tap2 = new Tap("Tap2");
+		Sink sink1 = new Sink("Sink1");
+		Sink sink2 = new Sink("Sink2");
+		for(Element e : new Element[] {src, t, tap1, tap2, sink1, sink2}) s.addElement(e);
+		src.connect(t);
+		t.connect(tap1, 0);
+		t.connect(tap2, 1);
+		tap1.connect(sink1);
+		tap2.connect(sink2);
+		src.setFlow(20.0);
+		tap1.setOpen(true);
+		tap2.setOpen(true);
+
+		SimulationPlan plan = s.compile();
+		StoreObserver obs = new StoreObserver();
+		assertEquals("The first update simulates everything", 6, plan.update(obs, false));
+		assertEquals(10.0, obs.inFlowOf("Sink1"), 0.01);
+
+		assertEquals("Nothing changed", 0, plan.update(new StoreObserver(), false));
+
+		tap1.setOpen(false);
+		obs = new StoreObserver();
+		assertEquals(2, plan.update(obs, false));
+		assertTrue(obs.contains("Tap1"));
+		assertTrue(obs.contains("Sink1"));
+		assertFalse("Tap2 did not change", obs.contains("Tap2"));
+		assertEquals(0.0, obs.inFlowOf("Sink1"), 0.01);
+
+		src.setFlow(40.0);	// the flow of tap1 does not change
+		obs = new StoreObserver();
+		assertEquals(5, plan.update(obs, false));
+		assertTrue(obs.contains("Tap1"));
+		assertFalse("Sink1 did not change", obs.contains("Sink1"));
+		assertEquals(20.0, obs.inFlowOf("Sink2"), 0.01);
+
+		tap2.setOpen(true);	// same value
+		assertEquals("Flows did not change", 0, plan.update(new StoreObserver(), false));
+
+		sink2.setMaxFlow(10.0);
+		obs = new StoreObserver();
+		assertEquals(1, plan.update(obs, true));
+		assertTrue("Missing max flow error", obs.containsError("Sink2"));
+		assertEquals(10.0, obs.maxFlowOf("Sink2"), 0.01);
+	}
+
+	@Test
+	public void testSameAsFullSimulation(){
+		HSystem s = TestR11_ParallelSimulation.randomSystem(10, 20_000, 5);
+		SimulationPlan plan = s.compile();
+		SimulationResult r = plan.run();
+		StoreObserver incremental = new StoreObserver();
+		plan.simulate(incremental, false);
+
+		Random rnd = new Random(13);
+		for(int round=0; round<50; ++round){
+			for(int c=0; c<3; ++c){
+				Element e = r.element(rnd.nextInt(r.size()));
+				if(e instanceof Tap) ((Tap) e).setOpen(rnd.nextBoolean());
+				else if(e instanceof Source) ((Source) e).setFlow(rnd.nextInt(100));
+				else if(e instanceof Multisplit) ((Multisplit) e).setProportions(0.1, 0.6, 0.3);
+			}
+			plan.update(incremental, false);
+		}
+
+		StoreObserver full = new StoreObserver();
+		s.simulate(full);
+		for(int i=0; i<r.size(); ++i){
+			String name = r.element(i).getName();
+			assertEquals("Wrong input flow of " + name, full.inFlowOf(name), incremental.inFlowOf(name), 0.0);
+			assertArrayEquals("Wrong output flows of " + name, full.outFlowsOf(name), incremental.outFlowsOf(name), 0.0);
+		}
+	}
+
+	@Test
+	public void testLocalChange(){
+		final int width = 1000;
+		HSystem s = new HSystem();
+		Tap[] taps = new Tap[width];
+		for(int i=0; i<width; ++i){
+			Source src = new Source("Src" + i);
+			Tap tap = new Tap("Tap" + i);
+			Sink sink = new Sink("Sink" + i);
+			s.addElement(src);
+			s.addElement(tap);
+			s.addElement(sink);
+			src.connect(tap);
+			tap.connect(sink);
+			src.setFlow(1.0);
+			tap.setOpen(true);
+			taps[i] = tap;
+		}
+		SimulationPlan plan = s.compile();
+		plan.run();
+
+		for(int k=0; k<2*width; ++k){
+			taps[k % width].setOpen(k >= width);	// close all the taps, then open them again
+			assertEquals("Only the tap and its sink change", 2, plan.update(new StoreObserver(), false));
+		}
+	}
+
+	@Test
+	public void testLatestPlan(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Sink sink = new Sink("Sink");
+		s.addElement(src);
+		s.addElement(sink);
+		src.connect(sink);
+		src.setFlow(5.0);
+
+		SimulationPlan old = s.compile();
+		old.run();
+		SimulationPlan plan = s.compile();
+		plan.run();
+		s.simulate(new StoreObserver());	// does not replace the plan
+
+		src.setFlow(7.0);
+		assertEquals(0, old.update(new StoreObserver(), false));
+		StoreObserver obs = new StoreObserver();
+		assertEquals(2, plan.update(obs, false));
+		assertEquals(7.0, obs.inFlowOf("Sink"), 0.01);
+	}
+}
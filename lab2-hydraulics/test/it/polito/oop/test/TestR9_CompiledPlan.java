@@ -0,0 +1,118 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+
+public class TestR9_CompiledPlan {
+
+	@Test
+	public void testDeepPipeline(){
+		final int depth = 100_000;
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		s.addElement(src);
+		Element last = src;
+		for(int i=0; i<depth; ++i){
+			Tap tap = new Tap("Tap" + i);
+			tap.setOpen(true);
+			s.addElement(tap);
+			last.connect(tap);
+			last = tap;
+		}
+		Sink sink = new Sink("Sink");
+		s.addElement(sink);
+		last.connect(sink);
+		src.setFlow(42.0);
+
+		StoreObserver obs = new StoreObserver();
+		s.simulate(obs);
+
+		assertEquals("Wrong input flow of 'Sink'", 42.0, obs.inFlowOf("Sink"), 0.01);
+		assertEquals("Wrong output flow of the last tap", 42.0, obs.outFlowOf("Tap" + (depth-1)), 0.01);
+	}
+
+	@Test
+	public void testReusePlan(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Multisplit ms = new Multisplit("Ms", 3);
+		Split t = new Split("T");
+		Sink sink1 = new Sink("Sink1");
+		Sink sink2 = new Sink("Sink2");
+		Sink sink3 = new Sink("Sink3");
+		Sink sink4 = new Sink("Sink4");
+		for(Element e : new Element[] {src, tap, ms, t, sink1, sink2, sink3, sink4}) s.addElement(e);
+
+		src.connect(tap);
+		tap.connect(ms);
+		ms.connect(t, 0);
+		ms.connect(sink3, 1);
+		ms.connect(sink4, 2);
+		t.connect(sink1, 0);
+		t.connect(sink2, 1);
+
+		src.setFlow(100.0);
+		tap.setOpen(true);
+		ms.setProportions(0.5, 0.3, 0.2);
+
+		SimulationPlan plan = s.compile();
+		assertEquals("Wrong number of elements in the plan", 8, plan.size());
+
+		StoreObserver obs = new StoreObserver();
+		plan.simulate(obs, false);
+		assertEquals("Wrong input flow of 'Sink1'", 25.0, obs.inFlowOf("Sink1"), 0.01);
+		assertEquals("Wrong input flow of 'Sink3'", 30.0, obs.inFlowOf("Sink3"), 0.01);
+		assertArrayEquals("Wrong output flows of 'Ms'", new double[] {50.0, 30.0, 20.0}, obs.outFlowsOf("Ms"), 0.01);
+		assertTrue("Missing flow of the source", Double.isNaN(obs.inFlowOf("Src")));
+
+		src.setFlow(10.0);
+		ms.setProportions(0.2, 0.2, 0.6);
+		obs = new StoreObserver();
+		plan.simulate(obs, false);
+		assertEquals("Parameters not read again", 1.0, obs.inFlowOf("Sink1"), 0.01);
+		assertEquals("Parameters not read again", 6.0, obs.inFlowOf("Sink4"), 0.01);
+
+		tap.setOpen(false);
+		t.setMaxFlow(-1.0);
+		obs = new StoreObserver();
+		plan.simulate(obs, true);
+		assertEquals("Tap closed", 0.0, obs.inFlowOf("Sink4"), 0.01);
+		assertTrue("Missing max flow error", obs.containsError("T"));
+	}
+
+	@Test
+	public void testUnconnectedOutput(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Split t = new Split("T");
+		Sink sink = new Sink("Sink");
+		s.addElement(src);
+		s.addElement(t);
+		s.addElement(sink);
+		src.connect(t);
+		t.connect(sink, 1);
+		src.setFlow(10.0);
+
+		StoreObserver obs = new StoreObserver();
+		s.simulate(obs);
+		assertEquals("Wrong input flow of 'Sink'", 5.0, obs.inFlowOf("Sink"), 0.01);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCycle(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Tap tap1 = new Tap("Tap1");
+		Tap tap2 = new Tap("Tap2");
+		s.addElement(src);
+		s.addElement(tap1);
+		s.addElement(tap2);
+		src.connect(tap1);
+		tap1.connect(tap2);
+		tap2.connect(tap1);
+		s.compile();
+	}
+}